@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.util.List;
+
+/**
+ * Optional extension of SimilarityInterface, for similarities that are faster
+ * to compute for one value against many values (for example because the
+ * first value has to be tokenized or normalized first).
+ *
+ * Builders and search algorithms detect this interface and use it when
+ * possible (see {@link Similarities}).
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of values
+ */
+public interface BatchSimilarity<T> extends SimilarityInterface<T> {
+
+    /**
+     * Compute the similarity between value and each of the values:
+     * result[i] = similarity(value, values.get(i)).
+     *
+     * @param value
+     * @param values
+     * @param result array of at least values.size() elements
+     */
+    void similarities(T value, List<T> values, double[] result);
+}
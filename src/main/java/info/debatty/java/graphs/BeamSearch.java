@@ -0,0 +1,360 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.util.IntArrayList;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Best-first beam search: the search keeps the ef best nodes found so far
+ * (the results), and always expands the most similar candidate that was not
+ * expanded yet (all its unvisited neighbors are compared to the query). A
+ * track ends when the best remaining candidate is less similar than the
+ * ef-th result. As long as the similarity budget is not exhausted, the
+ * search restarts from a random node, keeping the results found so far.
+ *
+ * Compared to the greedy search, that follows the first improving neighbor,
+ * beam search explores the neighborhood of the best nodes more thoroughly,
+ * which usually improves recall on clustered data. A larger ef improves
+ * recall but leaves less budget for restarts.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class BeamSearch<T> implements SearchStrategy<T> {
+
+    /**
+     * Default beam width.
+     */
+    public static final int DEFAULT_EF = 32;
+
+    private final int ef;
+
+    /**
+     * Beam search with default width (32).
+     */
+    public BeamSearch() {
+        this(DEFAULT_EF);
+    }
+
+    /**
+     *
+     * @param ef width of the beam (number of results kept during the
+     * search, the k best are returned)
+     */
+    public BeamSearch(final int ef) {
+        if (ef < 1) {
+            throw new InvalidParameterException("ef should be >= 1");
+        }
+        this.ef = ef;
+    }
+
+    public final int getEf() {
+        return ef;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final NeighborList search(
+            final Graph<T> graph,
+            final T query,
+            final int k,
+            final double speedup,
+            final StatisticsContainer stats,
+            final Random rand) {
+
+        if (speedup <= 1.0) {
+            throw new InvalidParameterException("Speedup should be > 1.0");
+        }
+
+        int max_similarities = (int) (graph.size() / speedup);
+        if (k >= graph.size() || max_similarities >= graph.size()) {
+            return graph.searchAll(query, k, stats);
+        }
+
+        return search(graph, query, k, max_similarities, stats, rand, null);
+    }
+
+    /**
+     * Beam search, with a similarity budget. If entries is null, the search
+     * starts from random nodes, and restarts until the budget is exhausted.
+     * Otherwise, a single track is followed, starting from the entries
+     * (hence the budget is only an upper bound).
+     *
+     * @param graph
+     * @param query
+     * @param k
+     * @param max_similarities
+     * @param stats
+     * @param rand
+     * @param entries nodes of the graph, with their similarity to query, or
+     * null
+     * @return
+     */
+    final NeighborList search(
+            final Graph<T> graph,
+            final T query,
+            final int k,
+            final int max_similarities,
+            final StatisticsContainer stats,
+            final Random rand,
+            final NeighborList entries) {
+
+        SimilarityInterface<T> similarity = graph.getSimilarity();
+        boolean batch = Similarities.isBatch(similarity)
+                && !Similarities.isBounded(similarity);
+        NodeRegistry<T> nodes = graph.getRegistry();
+        SearchScratch visited = graph.getSearchScratch();
+        visited.reset(nodes.size());
+
+        IntNeighborList results = new IntNeighborList(Math.max(ef, k));
+        CandidateHeap candidates = new CandidateHeap();
+
+        // Nodes that are not part of this graph (cross partition edges) are
+        // compared to the query, but cannot be expanded
+        HashMap<Node<T>, Double> foreign_nodes = null;
+        ArrayList<Node<T>> expand = new ArrayList<Node<T>>();
+        IntArrayList expand_ids = new IntArrayList();
+        double[] expand_similarities = new double[0];
+
+        boolean restart = true;
+        if (entries != null) {
+            for (Neighbor neighbor : entries) {
+                int id = nodes.indexOf(neighbor);
+                if (id == -1 || visited.contains(id)) {
+                    continue;
+                }
+                visited.put(id, neighbor.similarity);
+                if (results.offer(id, neighbor.similarity)) {
+                    candidates.push(id, neighbor.similarity);
+                }
+                restart = false;
+            }
+        }
+
+        while (true) {
+
+            if (candidates.isEmpty()) {
+                if (!restart
+                        || stats.getSearchSimilarities() >= max_similarities) {
+                    break;
+                }
+
+                // (Re)start from a random node
+                int start = rand.nextInt(nodes.size());
+                if (visited.contains(start)) {
+                    continue;
+                }
+
+                stats.incSearchRestarts();
+                double start_similarity = similarity.similarity(
+                        query, nodes.get(start).value);
+                stats.incSearchSimilarities();
+                visited.put(start, start_similarity);
+                if (!results.offer(start, start_similarity)) {
+                    // Start point is worse than all results
+                    continue;
+                }
+                candidates.push(start, start_similarity);
+            }
+
+            while (!candidates.isEmpty()
+                    && stats.getSearchSimilarities() < max_similarities) {
+
+                if (candidates.peekSimilarity() < results.threshold()) {
+                    // No remaining candidate can improve the results
+                    break;
+                }
+
+                NeighborList nl = graph.get(nodes.get(candidates.pop()));
+
+                // Node has no neighbor (cross partition edge) => skip it
+                if (nl == null) {
+                    stats.incSearchCrossPartitionRestarts();
+                    continue;
+                }
+
+                // Unvisited neighbors of the candidate
+                expand.clear();
+                expand_ids.clear();
+                for (Neighbor neighbor : nl) {
+                    Node<T> node = neighbor.node;
+                    int id = nodes.indexOf(neighbor);
+                    if (id != -1) {
+                        if (!visited.contains(id)) {
+                            visited.put(id, Double.NEGATIVE_INFINITY);
+                            expand.add(node);
+                            expand_ids.add(id);
+                        }
+                    } else if (foreign_nodes == null
+                            || !foreign_nodes.containsKey(node)) {
+                        expand.add(node);
+                        expand_ids.add(-1);
+                    }
+                }
+
+                if (batch) {
+                    if (expand_similarities.length < expand.size()) {
+                        expand_similarities = new double[expand.size()];
+                    }
+                    Similarities.similarities(
+                            similarity,
+                            query,
+                            Similarities.values(expand),
+                            expand_similarities);
+                    stats.incSearchSimilarities(expand.size());
+                }
+
+                for (int i = 0; i < expand.size(); i++) {
+                    Node<T> node = expand.get(i);
+                    double sim;
+                    if (batch) {
+                        sim = expand_similarities[i];
+                    } else {
+                        sim = Similarities.similarity(
+                                similarity,
+                                query,
+                                node.value,
+                                results.threshold());
+                        stats.incSearchSimilarities();
+                    }
+
+                    int id = expand_ids.get(i);
+                    if (id == -1) {
+                        if (foreign_nodes == null) {
+                            foreign_nodes = new HashMap<Node<T>, Double>();
+                        }
+                        foreign_nodes.put(node, sim);
+                        continue;
+                    }
+
+                    if (results.offer(id, sim)) {
+                        candidates.push(id, sim);
+                    }
+                }
+            }
+
+            // End of this track
+            candidates.clear();
+        }
+
+        NeighborList neighbor_list = new NeighborList(k);
+        for (int i = 0; i < results.size(); i++) {
+            neighbor_list.add(
+                    nodes.get(results.getId(i)), results.getSimilarity(i));
+        }
+
+        if (foreign_nodes != null) {
+            for (Map.Entry<Node<T>, Double> foreign
+                    : foreign_nodes.entrySet()) {
+                neighbor_list.add(foreign.getKey(), foreign.getValue());
+            }
+        }
+        return neighbor_list;
+    }
+
+    /**
+     * Binary max-heap of candidates (node ids), ordered by similarity.
+     */
+    private static class CandidateHeap {
+        private int[] ids = new int[16];
+        private double[] similarities = new double[16];
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double peekSimilarity() {
+            return similarities[0];
+        }
+
+        void push(final int id, final double similarity) {
+            if (size == ids.length) {
+                int[] new_ids = new int[2 * size];
+                double[] new_similarities = new double[2 * size];
+                System.arraycopy(ids, 0, new_ids, 0, size);
+                System.arraycopy(similarities, 0, new_similarities, 0, size);
+                ids = new_ids;
+                similarities = new_similarities;
+            }
+
+            int i = size;
+            size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (similarities[parent] >= similarity) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                similarities[i] = similarities[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            similarities[i] = similarity;
+        }
+
+        /**
+         * Remove the most similar candidate.
+         *
+         * @return its id
+         */
+        int pop() {
+            int top = ids[0];
+            size--;
+            int id = ids[size];
+            double similarity = similarities[size];
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size
+                        && similarities[child + 1] > similarities[child]) {
+                    child++;
+                }
+                if (similarities[child] <= similarity) {
+                    break;
+                }
+                ids[i] = ids[child];
+                similarities[i] = similarities[child];
+                i = child;
+            }
+            ids[i] = id;
+            similarities[i] = similarity;
+            return top;
+        }
+    }
+}
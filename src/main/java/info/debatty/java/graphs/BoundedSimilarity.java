@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+/**
+ * Optional extension of SimilarityInterface, for similarities that can stop
+ * early when the result is known to be below a threshold (for example a
+ * banded edit distance, or partial sums of an euclidean distance).
+ *
+ * Builders and search algorithms pass the similarity a candidate must
+ * exceed to be useful (usually the similarity of the current k-th
+ * neighbor), see {@link Similarities}.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of values
+ */
+public interface BoundedSimilarity<T> extends SimilarityInterface<T> {
+
+    /**
+     * Compute the similarity between value1 and value2, if it is higher than
+     * threshold. Otherwise, the computation may stop early and return any
+     * value lower than or equal to threshold.
+     *
+     * @param value1
+     * @param value2
+     * @param threshold (may be Double.NEGATIVE_INFINITY)
+     * @return the similarity, or a value &lt;= threshold
+     */
+    double similarity(T value1, T value2, double threshold);
+}
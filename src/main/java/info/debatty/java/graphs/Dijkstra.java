@@ -23,26 +23,32 @@
  */
 package info.debatty.java.graphs;
 
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Compute the shortest path (measured as the number of 'hops' from this source
  * node to every other node in the graph using Dijkstra algorithm.
  *
+ * As all edges have the same length, the computation is performed as a
+ * breadth first search over the dense ids of the nodes.
+ *
  * @author Thibault Debatty
  */
 public class Dijkstra {
 
-    private final Graph graph;
-    private final Set<Node> settled_nodes;
-    private final Set<Node> unsettled_nodes;
-    private final Map<Node, Node> predecessors;
-    private final Map<Node, Integer> distances;
+    // Used when computing the paths on a graph
+    private final NodeRegistry registry;
+    // Nodes that are not part of the graph (cross partition edges) are
+    // reachable, but are not explored further
+    private final Map<Node, Integer> foreign_predecessors;
+
+    // Used when computing the paths on a frozen graph
+    private final FrozenGraph frozen_graph;
+
+    private final int[] predecessors;
+    private final int[] distances;
 
     /**
      * Compute the shortest path from source node to every other node in the
@@ -53,22 +59,76 @@ public class Dijkstra {
      */
     public Dijkstra(final Graph graph, final Node source) {
 
-        this.graph = graph;
+        this.frozen_graph = null;
+        this.registry = graph.getRegistry();
+        this.foreign_predecessors = new HashMap<Node, Integer>();
+
+        int size = registry.size();
+        this.predecessors = new int[size];
+        this.distances = new int[size];
+        for (int id = 0; id < size; id++) {
+            distances[id] = Integer.MAX_VALUE;
+            predecessors[id] = -1;
+        }
+
+        int source_id = registry.indexOf(source);
+        if (source_id == -1) {
+            return;
+        }
 
-        settled_nodes = new HashSet<Node>();
-        unsettled_nodes = new HashSet<Node>();
-        distances = new HashMap<Node, Integer>();
-        predecessors = new HashMap<Node, Node>();
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        distances[source_id] = 0;
+        queue[tail++] = source_id;
+
+        while (head < tail) {
+            int node = queue[head++];
+            NeighborList nl = graph.get(registry.get(node));
+            if (nl == null) {
+                continue;
+            }
+
+            for (Neighbor neighbor : nl) {
+                int other = registry.indexOf(neighbor);
+                if (other == -1) {
+                    if (!foreign_predecessors.containsKey(neighbor.node)) {
+                        foreign_predecessors.put(neighbor.node, node);
+                    }
+                    continue;
+                }
+
+                if (distances[other] == Integer.MAX_VALUE) {
+                    distances[other] = distances[node] + 1;
+                    predecessors[other] = node;
+                    queue[tail++] = other;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the shortest path from source node to every other node in the
+     * frozen graph. The computation runs directly on the arrays of the frozen
+     * graph.
+     *
+     * @param graph to use for computing path
+     * @param source node from which to compute distance to every other node
+     */
+    public Dijkstra(final FrozenGraph graph, final Node source) {
+        this.registry = null;
+        this.foreign_predecessors = null;
 
-        distances.put(source, 0);
-        unsettled_nodes.add(source);
+        this.frozen_graph = graph;
+        this.predecessors = new int[graph.size()];
+        this.distances = new int[graph.size()];
 
-        while (unsettled_nodes.size() > 0) {
-            Node node = getMinimum(unsettled_nodes);
-            settled_nodes.add(node);
-            unsettled_nodes.remove(node);
-            findMinimalDistances(node);
+        int source_id = graph.indexOf(source);
+        if (source_id == -1) {
+            throw new IllegalArgumentException(
+                    "Source node is not part of the graph");
         }
+        graph.shortestPaths(source_id, distances, predecessors);
     }
 
     /**
@@ -80,18 +140,22 @@ public class Dijkstra {
      */
     public final LinkedList<Node> getPath(final Node target) throws Exception {
         LinkedList<Node> path = new LinkedList<Node>();
-        Node step = target;
-        // check if a path exists
-        if (predecessors.get(step) == null) {
+
+        int step = indexOf(target);
+        if (step == -1 && foreign_predecessors != null
+                && foreign_predecessors.containsKey(target)) {
+            path.add(target);
+            step = foreign_predecessors.get(target);
+
+        } else if (step == -1 || predecessors[step] == -1) {
+            // check if a path exists
             throw new Exception("No path found to this target");
         }
-        path.add(step);
-        while (predecessors.get(step) != null) {
-            step = predecessors.get(step);
-            path.add(step);
+
+        while (step != -1) {
+            path.addFirst(getNode(step));
+            step = predecessors[step];
         }
-        // Put it into the correct order
-        Collections.reverse(path);
         return path;
     }
 
@@ -104,50 +168,33 @@ public class Dijkstra {
      */
     public final int getLargestDistance() {
         int largest = 0;
-        for (Integer distance : distances.values()) {
-            if (distance > largest) {
+        for (int distance : distances) {
+            if (distance != Integer.MAX_VALUE && distance > largest) {
                 largest = distance;
             }
         }
-        return largest;
-    }
-
-    private void findMinimalDistances(final Node node) {
-        if (!graph.containsKey(node) || graph.get(node) == null) {
-            return;
-        }
-
-        for (Neighbor neighbor : graph.get(node)) {
-            Node target = neighbor.node;
 
-            if (getShortestDistance(target) > (getShortestDistance(node) + 1)) {
-                distances.put(target, getShortestDistance(node) + 1);
-                predecessors.put(target, node);
-                unsettled_nodes.add(target);
+        if (foreign_predecessors != null) {
+            for (int predecessor : foreign_predecessors.values()) {
+                if (distances[predecessor] + 1 > largest) {
+                    largest = distances[predecessor] + 1;
+                }
             }
         }
+        return largest;
     }
 
-    private Node getMinimum(final Set<Node> nodes) {
-        Node minimum = null;
-        for (Node node : nodes) {
-            if (minimum == null) {
-                minimum = node;
-            } else {
-                if (getShortestDistance(node) < getShortestDistance(minimum)) {
-                    minimum = node;
-                }
-            }
+    private int indexOf(final Node node) {
+        if (frozen_graph != null) {
+            return frozen_graph.indexOf(node);
         }
-        return minimum;
+        return registry.indexOf(node);
     }
 
-    private int getShortestDistance(final Node destination) {
-        Integer d = distances.get(destination);
-        if (d == null) {
-            return Integer.MAX_VALUE;
-        } else {
-            return d;
+    private Node getNode(final int id) {
+        if (frozen_graph != null) {
+            return frozen_graph.getNode(id);
         }
+        return registry.get(id);
     }
 }
@@ -0,0 +1,801 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.util.UnionFind;
+import java.io.Serializable;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Read-only k-nn graph, stored in compressed sparse row (CSR) format.
+ *
+ * Nodes are identified by a dense int id (0 .. size() - 1). The edges of node
+ * i are stored in targets[offsets[i]] .. targets[offsets[i + 1] - 1], and the
+ * corresponding similarities in the weights array. This requires a lot less
+ * memory than a Graph (no NeighborList or Neighbor objects) and traversals
+ * only scan contiguous arrays.
+ *
+ * A FrozenGraph is obtained using Graph.freeze(). Edges pointing to nodes
+ * that are not part of the graph (e.g. cross-partition edges) are dropped.
+ * Similarities are stored as float.
+ *
+ * The graphs obtained by pruning or splitting a frozen graph share the table
+ * that maps nodes to ids (see NodeLookup), so each node is only hashed in a
+ * single table of ints, whatever the number of derived graphs.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class FrozenGraph<T> implements Serializable {
+
+    private final Node<T>[] nodes;
+    private final NodeLookup lookup;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final SimilarityInterface<T> similarity;
+    private final int k;
+
+    /**
+     * Build the compressed representation of this graph.
+     *
+     * @param graph
+     */
+    FrozenGraph(final Graph<T> graph) {
+        this.k = graph.getK();
+        this.similarity = graph.getSimilarity();
+
+        // Reuse the ids assigned by the graph
+        NodeRegistry<T> registry = graph.getRegistry();
+        int n = registry.size();
+        this.nodes = new Node[n];
+        NeighborList[] neighborlists = new NeighborList[n];
+
+        for (int i = 0; i < n; i++) {
+            nodes[i] = registry.get(i);
+            neighborlists[i] = graph.get(nodes[i]);
+        }
+        this.lookup = new NodeLookup(nodes);
+
+        // First pass : count the edges
+        this.offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int degree = 0;
+            if (neighborlists[i] != null) {
+                for (Neighbor neighbor : neighborlists[i]) {
+                    if (registry.indexOf(neighbor) != -1) {
+                        degree++;
+                    }
+                }
+            }
+            offsets[i + 1] = offsets[i] + degree;
+        }
+
+        // Second pass : copy the edges
+        this.targets = new int[offsets[n]];
+        this.weights = new float[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            if (neighborlists[i] == null) {
+                continue;
+            }
+
+            int position = offsets[i];
+            for (Neighbor neighbor : neighborlists[i]) {
+                int target = registry.indexOf(neighbor);
+                if (target == -1) {
+                    continue;
+                }
+                targets[position] = target;
+                weights[position] = (float) neighbor.similarity;
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Build a graph directly from the CSR arrays.
+     */
+    private FrozenGraph(
+            final Node<T>[] nodes,
+            final NodeLookup lookup,
+            final int[] offsets,
+            final int[] targets,
+            final float[] weights,
+            final SimilarityInterface<T> similarity,
+            final int k) {
+
+        this.nodes = nodes;
+        this.lookup = lookup;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.similarity = similarity;
+        this.k = k;
+    }
+
+    /**
+     *
+     * @return the number of nodes in the graph
+     */
+    public final int size() {
+        return nodes.length;
+    }
+
+    /**
+     *
+     * @return the total number of edges in the graph
+     */
+    public final int countEdges() {
+        return targets.length;
+    }
+
+    /**
+     *
+     * @return k (the number of edges per node) of the original graph
+     */
+    public final int getK() {
+        return k;
+    }
+
+    /**
+     *
+     * @return the similarity used to build and search the graph
+     */
+    public final SimilarityInterface<T> getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Get the node corresponding to this id.
+     * @param id
+     * @return
+     */
+    public final Node<T> getNode(final int id) {
+        return nodes[id];
+    }
+
+    /**
+     * Get the id of this node.
+     * @param node
+     * @return the id of the node, or -1 if this node is not in the graph
+     */
+    public final int indexOf(final Node node) {
+        return lookup.indexOf(node);
+    }
+
+    /**
+     *
+     * @param id
+     * @return the number of edges of this node
+     */
+    public final int degree(final int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     *
+     * @param id
+     * @param i
+     * @return the id of the i-th neighbor of this node
+     */
+    public final int target(final int id, final int i) {
+        return targets[offsets[id] + i];
+    }
+
+    /**
+     *
+     * @param id
+     * @param i
+     * @return the similarity between this node and its i-th neighbor
+     */
+    public final float weight(final int id, final int i) {
+        return weights[offsets[id] + i];
+    }
+
+    /**
+     * Build the neighborlist of this node. The neighborlist is a copy:
+     * modifying it will not modify the graph.
+     *
+     * @param node
+     * @return the neighborlist of this node, or null if the node is not in
+     * the graph
+     */
+    public final NeighborList get(final Node node) {
+        int id = indexOf(node);
+        if (id == -1) {
+            return null;
+        }
+
+        NeighborList nl = new NeighborList(Math.max(k, degree(id)));
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            nl.add(new Neighbor(nodes[targets[i]], weights[i]));
+        }
+        return nl;
+    }
+
+    /**
+     * Build a new graph that does not contain the edges with a similarity
+     * lower than threshold.
+     *
+     * @param threshold
+     * @return the pruned graph
+     */
+    public final FrozenGraph<T> prune(final double threshold) {
+        int[] new_offsets = new int[nodes.length + 1];
+        int count = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] >= threshold) {
+                count++;
+            }
+        }
+
+        int[] new_targets = new int[count];
+        float[] new_weights = new float[count];
+        int position = 0;
+        for (int id = 0; id < nodes.length; id++) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (weights[i] >= threshold) {
+                    new_targets[position] = targets[i];
+                    new_weights[position] = weights[i];
+                    position++;
+                }
+            }
+            new_offsets[id + 1] = position;
+        }
+
+        return new FrozenGraph<T>(
+                nodes,
+                lookup,
+                new_offsets,
+                new_targets,
+                new_weights,
+                similarity,
+                k);
+    }
+
+    /**
+     * Split the graph in weakly connected components (usually you will first
+     * prune the graph to remove "weak" edges). Uses a union-find structure
+     * on the node ids.
+     *
+     * @return
+     */
+    public final ArrayList<FrozenGraph<T>> connectedComponents() {
+        int n = nodes.length;
+        UnionFind union_find = new UnionFind(n);
+        for (int id = 0; id < n; id++) {
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                union_find.union(id, targets[i]);
+            }
+        }
+
+        int[] components = new int[n];
+        int count = union_find.label(components);
+        return split(components, count);
+    }
+
+    /**
+     * Computes the strongly connected sub-graphs (where every node is reachable
+     * from every other node) using Tarjan's algorithm, which has computation
+     * cost O(n). Depth first search uses an explicit stack (no recursion).
+     *
+     * @return
+     */
+    public final ArrayList<FrozenGraph<T>> stronglyConnectedComponents() {
+        int n = nodes.length;
+        int[] indexes = new int[n];
+        int[] lowlinks = new int[n];
+        boolean[] onstack = new boolean[n];
+        int[] components = new int[n];
+        int count = 0;
+
+        for (int id = 0; id < n; id++) {
+            indexes[id] = -1;
+        }
+
+        // Stack of explored nodes, not yet assigned to a component
+        int[] stack = new int[n];
+        int stack_size = 0;
+
+        // Depth first search stack: node and position of the next edge
+        int[] dfs_nodes = new int[n];
+        int[] dfs_edges = new int[n];
+        int dfs_size;
+
+        int current_index = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (indexes[start] != -1) {
+                continue;
+            }
+
+            indexes[start] = current_index;
+            lowlinks[start] = current_index;
+            current_index++;
+            stack[stack_size++] = start;
+            onstack[start] = true;
+            dfs_nodes[0] = start;
+            dfs_edges[0] = offsets[start];
+            dfs_size = 1;
+
+            while (dfs_size > 0) {
+                int node = dfs_nodes[dfs_size - 1];
+                int edge = dfs_edges[dfs_size - 1];
+
+                if (edge < offsets[node + 1]) {
+                    dfs_edges[dfs_size - 1]++;
+                    int other = targets[edge];
+
+                    if (indexes[other] == -1) {
+                        indexes[other] = current_index;
+                        lowlinks[other] = current_index;
+                        current_index++;
+                        stack[stack_size++] = other;
+                        onstack[other] = true;
+                        dfs_nodes[dfs_size] = other;
+                        dfs_edges[dfs_size] = offsets[other];
+                        dfs_size++;
+
+                    } else if (onstack[other]) {
+                        lowlinks[node] = Math.min(
+                                lowlinks[node], indexes[other]);
+                    }
+                    continue;
+                }
+
+                // All edges of node are processed
+                dfs_size--;
+                if (lowlinks[node] == indexes[node]) {
+                    // node is the root of a strongly connected component
+                    int other;
+                    do {
+                        other = stack[--stack_size];
+                        onstack[other] = false;
+                        components[other] = count;
+                    } while (other != node);
+                    count++;
+                }
+
+                if (dfs_size > 0) {
+                    int parent = dfs_nodes[dfs_size - 1];
+                    lowlinks[parent] = Math.min(
+                            lowlinks[parent], lowlinks[node]);
+                }
+            }
+        }
+
+        return split(components, count);
+    }
+
+    /**
+     * Split the graph in subgraphs, according to the component number of each
+     * node. Only the edges between nodes of the same component are kept.
+     */
+    private ArrayList<FrozenGraph<T>> split(
+            final int[] components, final int count) {
+
+        int n = nodes.length;
+
+        // Count the nodes and edges in each component
+        int[] sizes = new int[count];
+        int[] edges = new int[count];
+        for (int id = 0; id < n; id++) {
+            int component = components[id];
+            sizes[component]++;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (components[targets[i]] == component) {
+                    edges[component]++;
+                }
+            }
+        }
+
+        // Id of each node inside its component
+        int[] local_ids = new int[n];
+        int[] filled = new int[count];
+        Node<T>[][] component_nodes = new Node[count][];
+        for (int c = 0; c < count; c++) {
+            component_nodes[c] = new Node[sizes[c]];
+        }
+        for (int id = 0; id < n; id++) {
+            int component = components[id];
+            local_ids[id] = filled[component];
+            component_nodes[component][filled[component]] = nodes[id];
+            filled[component]++;
+        }
+
+        int[][] component_offsets = new int[count][];
+        int[][] component_targets = new int[count][];
+        float[][] component_weights = new float[count][];
+        for (int c = 0; c < count; c++) {
+            component_offsets[c] = new int[sizes[c] + 1];
+            component_targets[c] = new int[edges[c]];
+            component_weights[c] = new float[edges[c]];
+        }
+
+        int[] positions = new int[count];
+        for (int id = 0; id < n; id++) {
+            int component = components[id];
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if (components[targets[i]] == component) {
+                    int position = positions[component];
+                    component_targets[component][position] =
+                            local_ids[targets[i]];
+                    component_weights[component][position] = weights[i];
+                    positions[component]++;
+                }
+            }
+            component_offsets[component][local_ids[id] + 1] =
+                    positions[component];
+        }
+
+        // The components share the ids translation arrays
+        ArrayList<FrozenGraph<T>> subgraphs =
+                new ArrayList<FrozenGraph<T>>(count);
+        for (int c = 0; c < count; c++) {
+            subgraphs.add(new FrozenGraph<T>(
+                    component_nodes[c],
+                    new NodeLookup(lookup, components, local_ids, c),
+                    component_offsets[c],
+                    component_targets[c],
+                    component_weights[c],
+                    similarity,
+                    k));
+        }
+        return subgraphs;
+    }
+
+    /**
+     * Compute the distance (number of hops) from source to every other node
+     * of the graph. As all edges have the same length, Dijkstra algorithm
+     * reduces to a breadth first search.
+     *
+     * @param source
+     * @param distances will contain the distance to each node, or
+     * Integer.MAX_VALUE if the node is not reachable
+     * @param predecessors will contain the id of the predecessor of each node
+     * on the shortest path, or -1
+     */
+    final void shortestPaths(
+            final int source,
+            final int[] distances,
+            final int[] predecessors) {
+
+        for (int id = 0; id < nodes.length; id++) {
+            distances[id] = Integer.MAX_VALUE;
+            predecessors[id] = -1;
+        }
+
+        int[] queue = new int[nodes.length];
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int other = targets[i];
+                if (distances[other] == Integer.MAX_VALUE) {
+                    distances[other] = distances[node] + 1;
+                    predecessors[other] = node;
+                    queue[tail++] = other;
+                }
+            }
+        }
+    }
+
+    /**
+     * Approximate fast graph based search, as published in "Fast Online k-nn
+     * Graph Building" by Debatty et al.
+     * Default speedup is 4.
+     *
+     * @see <a href="http://arxiv.org/abs/1602.06819">Fast Online k-nn Graph
+     * Building</a>
+     * @param query
+     * @param k search K neighbors
+     * @return
+     */
+    public final NeighborList fastSearch(final T query, final int k) {
+        return fastSearch(
+                query,
+                k,
+                Graph.DEFAULT_SEARCH_SPEEDUP,
+                Graph.DEFAULT_SEARCH_RANDOM_JUMPS,
+                Graph.DEFAULT_SEARCH_EXPANSION,
+                new StatisticsContainer());
+    }
+
+    /**
+     * Approximate fast graph based search, as published in "Fast Online k-nn
+     * Graph Building" by Debatty et al.
+     *
+     * @see <a href="http://arxiv.org/abs/1602.06819">Fast Online k-nn Graph
+     * Building</a>
+     * @param query query point
+     * @param k number of neighbors to find (the K from K-nn search)
+     * @param speedup (default: 4.0)
+     * @param long_jumps (default: 2)
+     * @param expansion (default: 1.2)
+     * @param stats
+     *
+     * @return
+     */
+    public final NeighborList fastSearch(
+            final T query,
+            final int k,
+            final double speedup,
+            final int long_jumps,
+            final double expansion,
+            final StatisticsContainer stats) {
+
+        if (speedup <= 1.0) {
+            throw new InvalidParameterException("Speedup should be > 1.0");
+        }
+
+        int n = nodes.length;
+        int max_similarities = (int) (n / speedup);
+        NeighborList neighbor_list = new NeighborList(k);
+
+        // Looking for more nodes than this graph contains...
+        // Or fall back to exhaustive search
+        if (k >= n || max_similarities >= n) {
+            for (int id = 0; id < n; id++) {
+                neighbor_list.add(new Neighbor(
+                        nodes[id],
+                        similarity.similarity(query, nodes[id].value)));
+                stats.incSearchSimilarities();
+            }
+            return neighbor_list;
+        }
+
+        boolean[] visited = new boolean[n];
+        double global_highest_similarity = 0;
+        Random rand = new Random();
+
+        while (true) { // Restart...
+
+            if (stats.getSearchSimilarities() >= max_similarities) {
+                break;
+            }
+
+            stats.incSearchRestarts();
+
+            // Select a random node from the graph
+            int current_node = rand.nextInt(n);
+
+            // Already been here => restart
+            if (visited[current_node]) {
+                continue;
+            }
+
+            // starting point too far (similarity too small) => restart!
+            double restart_similarity = similarity.similarity(
+                    query,
+                    nodes[current_node].value);
+            stats.incSearchSimilarities();
+            visited[current_node] = true;
+            neighbor_list.add(
+                    new Neighbor(nodes[current_node], restart_similarity));
+            if (restart_similarity < global_highest_similarity / expansion) {
+                continue;
+            }
+
+            while (stats.getSearchSimilarities() < max_similarities) {
+
+                int node_higher_similarity = -1;
+
+                for (int i = 0; i < long_jumps; i++) {
+                    // Check a random node (to simulate long jumps)
+                    int other_node = rand.nextInt(n);
+
+                    // Already been here => skip
+                    if (visited[other_node]) {
+                        continue;
+                    }
+
+                    // Compute similarity to query (with a BoundedSimilarity,
+                    // the computation may stop if the node cannot improve
+                    // the track nor enter the k best nodes)
+                    double sim = Similarities.similarity(
+                            similarity,
+                            query,
+                            nodes[other_node].value,
+                            Math.min(
+                                    restart_similarity,
+                                    threshold(neighbor_list)));
+                    stats.incSearchSimilarities();
+                    visited[other_node] = true;
+                    neighbor_list.add(new Neighbor(nodes[other_node], sim));
+
+                    // If this node provides an improved similarity, keep it
+                    if (sim > restart_similarity) {
+                        node_higher_similarity = other_node;
+                        restart_similarity = sim;
+                    }
+                }
+
+                // Check the neighbors of current_node and try to find a node
+                // with higher similarity
+                for (int i = offsets[current_node];
+                        i < offsets[current_node + 1];
+                        i++) {
+
+                    int other_node = targets[i];
+                    if (visited[other_node]) {
+                        continue;
+                    }
+
+                    // Compute similarity to query (with a BoundedSimilarity,
+                    // the computation may stop if the node cannot improve
+                    // the track nor enter the k best nodes)
+                    double sim = Similarities.similarity(
+                            similarity,
+                            query,
+                            nodes[other_node].value,
+                            Math.min(
+                                    restart_similarity,
+                                    threshold(neighbor_list)));
+                    stats.incSearchSimilarities();
+                    visited[other_node] = true;
+                    neighbor_list.add(new Neighbor(nodes[other_node], sim));
+
+                    // If this node provides an improved similarity, keep it
+                    if (sim > restart_similarity) {
+                        node_higher_similarity = other_node;
+                        restart_similarity = sim;
+
+                        // early break...
+                        break;
+                    }
+                }
+
+                // No node provides higher similarity
+                // => we reached the end of this track...
+                // => restart!
+                if (node_higher_similarity == -1) {
+
+                    if (restart_similarity > global_highest_similarity) {
+                        global_highest_similarity = restart_similarity;
+                    }
+                    break;
+                }
+
+                current_node = node_higher_similarity;
+            }
+        }
+
+        return neighbor_list;
+    }
+
+    /**
+     *
+     * @param neighbor_list
+     * @return the similarity a node must exceed to enter the neighbor list
+     */
+    private static double threshold(final NeighborList neighbor_list) {
+        if (neighbor_list.size() < neighbor_list.getCapacity()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return neighbor_list.peek().similarity;
+    }
+
+    /**
+     * Maps the nodes of a frozen graph to their id.
+     *
+     * The graph built from a Graph hashes its nodes in an open addressing
+     * table of ints (no boxed Integer, no entry object). The components of a
+     * graph reuse the lookup of this graph, followed by a translation of the
+     * ids, in arrays that are shared by all components.
+     */
+    private static final class NodeLookup implements Serializable {
+
+        // Table of the graph built from a Graph
+        private final Node[] nodes;
+        private final int[] table;
+
+        // Components : lookup of the split graph and translation of its ids
+        private final NodeLookup parent;
+        private final int[] components;
+        private final int[] local_ids;
+        private final int component;
+
+        /**
+         *
+         * @param nodes the nodes, indexed by id
+         */
+        NodeLookup(final Node[] nodes) {
+            this.nodes = nodes;
+            this.parent = null;
+            this.components = null;
+            this.local_ids = null;
+            this.component = -1;
+
+            int capacity = 2;
+            while (capacity < 2 * nodes.length) {
+                capacity <<= 1;
+            }
+
+            // Slots contain id + 1 (0 is an empty slot)
+            this.table = new int[capacity];
+            for (int id = 0; id < nodes.length; id++) {
+                int slot = slot(nodes[id]);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        /**
+         *
+         * @param parent lookup of the split graph
+         * @param components component of each node of the split graph
+         * @param local_ids id in its component of each node of the split
+         * graph
+         * @param component
+         */
+        NodeLookup(
+                final NodeLookup parent,
+                final int[] components,
+                final int[] local_ids,
+                final int component) {
+
+            this.nodes = null;
+            this.table = null;
+            this.parent = parent;
+            this.components = components;
+            this.local_ids = local_ids;
+            this.component = component;
+        }
+
+        int indexOf(final Node node) {
+            if (parent != null) {
+                int id = parent.indexOf(node);
+                if (id == -1 || components[id] != component) {
+                    return -1;
+                }
+                return local_ids[id];
+            }
+
+            int slot = slot(node);
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (nodes[id].equals(node)) {
+                    return id;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+            return -1;
+        }
+
+        private int slot(final Node node) {
+            // Spread the bits of the hash code (like HashMap does)
+            int hash = node.hashCode();
+            hash ^= hash >>> 16;
+            return hash & (table.length - 1);
+        }
+    }
+}
@@ -29,8 +29,11 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.Writer;
+import info.debatty.java.util.IntArrayList;
+import info.debatty.java.util.UnionFind;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -82,15 +85,25 @@ public class Graph<T> implements Serializable {
     private static final String NODE_SEQUENCE_KEY = "ONLINE_GRAPH_SEQUENCE";
 
 
-    private final HashMap<Node<T>, NeighborList> map;
+    private final NodeMap<T> map;
+    private final NodeRegistry<T> registry;
     private SimilarityInterface<T> similarity;
     private int k = DEFAULT_K;
     private int window_size = 0;
     private int current_sequence = 0;
+    private SearchStrategy<T> search_strategy = new GreedySearch<T>();
+
+    // Per-thread buffers used by fastSearch (lazily created)
+    private transient volatile ThreadLocal<SearchScratch> search_scratch;
 
     /**
      * Copy constructor.
      *
+     * Stateless search strategies are shared with the origin. A
+     * HierarchicalIndex holds the layers of the origin graph, and would be
+     * modified by fastAdd and fastRemove on the copy: the copy falls back
+     * to GreedySearch instead (build a new index to use one on the copy).
+     *
      * @param origin
      */
     public Graph(Graph<T> origin) {
@@ -98,10 +111,18 @@ public class Graph<T> implements Serializable {
         this.window_size = origin.window_size;
         this.current_sequence = origin.current_sequence;
         this.similarity = origin.similarity;
-        this.map = new HashMap<Node<T>, NeighborList>(origin.size());
+        if (origin.search_strategy instanceof HierarchicalIndex) {
+            this.search_strategy = new GreedySearch<T>();
+        } else {
+            this.search_strategy = origin.search_strategy;
+        }
+        this.registry = new NodeRegistry<T>(origin.size());
+        this.map = new NodeMap<T>(registry, origin.size());
 
-        for (Node node : origin.getNodes()) {
-            this.map.put(node, new NeighborList(origin.get(node)));
+        // Register the nodes in the same order, so the ids kept in the
+        // (shared) neighbors are valid for both graphs
+        for (Node<T> node : origin.getRegistry().getNodes()) {
+            this.put(node, new NeighborList(origin.get(node)));
         }
     }
 
@@ -112,14 +133,141 @@ public class Graph<T> implements Serializable {
      */
     public Graph(final int k) {
         this.k = k;
-        this.map = new HashMap<Node<T>, NeighborList>();
+        this.registry = new NodeRegistry<T>();
+        this.map = new NodeMap<T>(registry, 16);
     }
 
     /**
      * Initialize an empty graph with k = 10.
      */
     public Graph() {
-        this.map = new HashMap<Node<T>, NeighborList>();
+        this.registry = new NodeRegistry<T>();
+        this.map = new NodeMap<T>(registry, 16);
+    }
+
+    /**
+     * Get the registry that assigns a dense int id to each node of the graph.
+     * The registry is updated by every modification of the map of the graph,
+     * so this method does not modify the graph (it can be used by concurrent
+     * searches).
+     *
+     * @return
+     * @throws ConcurrentModificationException if nodes were removed using the
+     * views of the map (see getHashMap())
+     */
+    final NodeRegistry<T> getRegistry() {
+        if (registry.size() != map.size()) {
+            throw new ConcurrentModificationException(
+                    "Nodes were removed using a view of the map of the graph");
+        }
+        return registry;
+    }
+
+    /**
+     * The map of a graph, which keeps the registry of the graph up to date
+     * when nodes are added or removed (including when the map is modified
+     * directly, using getHashMap()).
+     *
+     * @param <T>
+     */
+    private static class NodeMap<T> extends HashMap<Node<T>, NeighborList> {
+
+        private final NodeRegistry<T> registry;
+
+        NodeMap(final NodeRegistry<T> registry, final int capacity) {
+            super(capacity);
+            this.registry = registry;
+        }
+
+        @Override
+        public NeighborList put(
+                final Node<T> node, final NeighborList neighborlist) {
+            int size = size();
+            NeighborList previous = super.put(node, neighborlist);
+            if (size() != size) {
+                // The node was not in the map yet
+                registry.add(node);
+            }
+            return previous;
+        }
+
+        @Override
+        public void putAll(
+                final Map<? extends Node<T>, ? extends NeighborList> other) {
+            for (Map.Entry<? extends Node<T>, ? extends NeighborList> entry
+                    : other.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public NeighborList remove(final Object node) {
+            int size = size();
+            NeighborList previous = super.remove(node);
+            if (size() != size) {
+                registry.remove((Node) node);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            registry.clear();
+        }
+    }
+
+    /**
+     * Get the search buffers of the current thread, for this graph (also
+     * used by the GraphSearchers of this graph).
+     *
+     * @return
+     */
+    final SearchScratch getSearchScratch() {
+        ThreadLocal<SearchScratch> local = search_scratch;
+        if (local == null) {
+            synchronized (this) {
+                if (search_scratch == null) {
+                    search_scratch = new ThreadLocal<SearchScratch>();
+                }
+                local = search_scratch;
+            }
+        }
+
+        SearchScratch scratch = local.get();
+        if (scratch == null) {
+            scratch = new SearchScratch();
+            local.set(scratch);
+        }
+        return scratch;
+    }
+
+    /**
+     * Get the algorithm used by fastSearch(query, k) and
+     * fastSearch(query, k, speedup).
+     *
+     * @return
+     */
+    public final SearchStrategy<T> getSearchStrategy() {
+        if (search_strategy == null) {
+            // Graph serialized before search strategies were introduced
+            search_strategy = new GreedySearch<T>();
+        }
+        return search_strategy;
+    }
+
+    /**
+     * Set the algorithm used by fastSearch(query, k) and
+     * fastSearch(query, k, speedup). Default is GreedySearch.
+     *
+     * A HierarchicalIndex is bound to this graph: it is not shared with
+     * copies created by the copy constructor.
+     *
+     * @param search_strategy
+     */
+    public final void setSearchStrategy(
+            final SearchStrategy<T> search_strategy) {
+        this.search_strategy = search_strategy;
     }
 
     /**
@@ -204,43 +352,53 @@ public class Graph<T> implements Serializable {
      */
     public final ArrayList<Graph<T>> connectedComponents() {
 
-        ArrayList<Graph<T>> subgraphs = new ArrayList<Graph<T>>();
-        ArrayList<Node<T>> nodes_to_process =
-                new ArrayList<Node<T>>(map.keySet());
+        NodeRegistry<T> nodes = getRegistry();
+        int n = nodes.size();
 
-        for (int i = 0; i < nodes_to_process.size(); i++) {
-            Node n = nodes_to_process.get(i);
-            if (n == null) {
+        // Merge the two ends of each edge using node ids
+        UnionFind union_find = new UnionFind(n);
+        for (int id = 0; id < n; id++) {
+            NeighborList nl = map.get(nodes.get(id));
+            if (nl == null) {
                 continue;
             }
-            Graph<T> subgraph = new Graph<T>();
-            subgraphs.add(subgraph);
 
-            addAndFollow(subgraph, n, nodes_to_process);
+            for (Neighbor neighbor : nl) {
+                int other = nodes.indexOf(neighbor);
+                if (other != -1) {
+                    union_find.union(id, other);
+                }
+            }
         }
 
-        return subgraphs;
-    }
-
-    private void addAndFollow(
-            final Graph<T> subgraph,
-            final Node<T> node,
-            final ArrayList<Node<T>> nodes_to_process) {
-
-        nodes_to_process.remove(node);
+        int[] components = new int[n];
+        int count = union_find.label(components);
+        ArrayList<Graph<T>> subgraphs = new ArrayList<Graph<T>>(count);
+        for (int c = 0; c < count; c++) {
+            subgraphs.add(new Graph<T>());
+        }
 
-        NeighborList neighborlist = this.get(node);
-        subgraph.put(node, neighborlist);
+        for (int id = 0; id < n; id++) {
+            Node<T> node = nodes.get(id);
+            NeighborList neighborlist = map.get(node);
+            Graph<T> subgraph = subgraphs.get(components[id]);
+            subgraph.put(node, neighborlist);
 
-        if (neighborlist == null) {
-            return;
-        }
+            if (neighborlist == null) {
+                continue;
+            }
 
-        for (Neighbor neighbor : this.get(node)) {
-            if (!subgraph.containsKey(neighbor.node)) {
-                addAndFollow(subgraph, neighbor.node, nodes_to_process);
+            // Neighbors that are not part of this graph (this can happen
+            // during distributed processing) are added without neighborlist
+            for (Neighbor neighbor : neighborlist) {
+                if (nodes.indexOf(neighbor) == -1
+                        && !subgraph.containsKey(neighbor.node)) {
+                    subgraph.put(neighbor.node, null);
+                }
             }
         }
+
+        return subgraphs;
     }
 
     /**
@@ -252,22 +410,26 @@ public class Graph<T> implements Serializable {
      */
     public final ArrayList<Graph<T>> stronglyConnectedComponents() {
 
+        NodeRegistry<T> nodes = getRegistry();
         Stack<NodeParent> explored_nodes = new Stack<NodeParent>();
         Index index = new Index();
-        HashMap<Node, NodeProperty> bookkeeping =
-                new HashMap<Node, NodeProperty>(map.size());
+        Bookkeeping bookkeeping = new Bookkeeping(nodes.size());
+        for (int id = 0; id < nodes.size(); id++) {
+            bookkeeping.neighborlists[id] = map.get(nodes.get(id));
+        }
 
         ArrayList<Graph<T>> connected_components = new ArrayList<Graph<T>>();
 
         for (Node n : map.keySet()) {
 
-            if (bookkeeping.containsKey(n)) {
+            int id = nodes.indexOf(n);
+            if (bookkeeping.processed[id]) {
                 // This node was already processed...
                 continue;
             }
 
-            ArrayList<Node> connected_component =
-                    this.strongConnect(n, explored_nodes, index, bookkeeping);
+            ArrayList<Node<T>> connected_component = this.strongConnect(
+                    id, explored_nodes, index, bookkeeping, nodes);
 
             if (connected_component == null) {
                 continue;
@@ -275,7 +437,7 @@ public class Graph<T> implements Serializable {
 
             // We found a connected component
             Graph<T> subgraph = new Graph<T>(connected_component.size());
-            for (Node node : connected_component) {
+            for (Node<T> node : connected_component) {
                 subgraph.put(node, this.get(node));
             }
             connected_components.add(subgraph);
@@ -292,13 +454,15 @@ public class Graph<T> implements Serializable {
      * connected component.
      * @param index
      * @param bookkeeping
+     * @param nodes
      * @return
      */
-    private ArrayList<Node> strongConnect(
-            final Node starting_point,
+    private ArrayList<Node<T>> strongConnect(
+            final int starting_point,
             final Stack<NodeParent> explored_nodes,
             final Index index,
-            final HashMap<Node, NodeProperty> bookkeeping) {
+            final Bookkeeping bookkeeping,
+            final NodeRegistry<T> nodes) {
 
 
         // explored_nodes stores the history of nodes explored but not yet
@@ -307,82 +471,83 @@ public class Graph<T> implements Serializable {
         // use a stack to perform depth first search (DFS) without using
         // recursion
         final Stack<NodeParent> nodes_to_process = new Stack<NodeParent>();
-        nodes_to_process.push(new NodeParent(starting_point, null));
+        nodes_to_process.push(new NodeParent(starting_point, -1));
+        bookkeeping.in_queue[starting_point] = true;
 
 
         while (!nodes_to_process.empty()) {
             NodeParent node_and_parent = nodes_to_process.pop();
-            Node node = node_and_parent.node;
+            int node = node_and_parent.node;
+            bookkeeping.in_queue[node] = false;
 
-            bookkeeping.put(
-                    node,
-                    new NodeProperty(index.value(), index.value()));
+            bookkeeping.processed[node] = true;
+            bookkeeping.indexes[node] = index.value();
+            bookkeeping.lowlinks[node] = index.value();
             index.inc();
             explored_nodes.add(node_and_parent);
 
+            NeighborList nl = bookkeeping.neighborlists[node];
+            if (nl == null) {
+                continue;
+            }
+
             // process neighbors of this node
-            for (Neighbor neighbor : this.get(node)) {
-                Node neighbor_node = neighbor.node;
+            for (Neighbor neighbor : nl) {
+                int neighbor_node = nodes.indexOf(neighbor);
 
-                if (!this.containsKey(neighbor_node)
-                        || this.get(neighbor_node) == null) {
+                if (neighbor_node == -1
+                        || bookkeeping.neighborlists[neighbor_node] == null) {
                     // neighbor_node is actually part of another subgraph
                     // (this can happen during distributed processing)
                     // => skip
                     continue;
                 }
 
-                if (bookkeeping.containsKey(neighbor_node)) {
+                if (bookkeeping.processed[neighbor_node]) {
                     // this node was already processed
                     continue;
                 }
 
-                boolean skip = false;
-                for (NodeParent node_in_queue : nodes_to_process) {
+                if (bookkeeping.in_queue[neighbor_node]) {
                     // Already in the queue for processing
-                    if (node_in_queue.node.equals(neighbor_node)) {
-                        skip = true;
-                        break;
-                    }
-                }
-                if (skip) {
                     continue;
                 }
 
                 // Perform depth first search...
                 nodes_to_process.push(new NodeParent(neighbor_node, node));
+                bookkeeping.in_queue[neighbor_node] = true;
             }
         }
 
         // Traverse the stack of explored nodes to update the lowlink value of
         // each node
         for (NodeParent node_and_parent : explored_nodes) {
-            Node node = node_and_parent.parent;
-            Node child = node_and_parent.node;
+            int node = node_and_parent.parent;
+            int child = node_and_parent.node;
 
-            if (node == null) {
+            if (node == -1) {
                 // this child is actually the starting point.
                 continue;
             }
 
-            bookkeeping.get(node).lowlink = Math.min(
-                        bookkeeping.get(node).lowlink,
-                        bookkeeping.get(child).lowlink);
+            bookkeeping.lowlinks[node] = Math.min(
+                        bookkeeping.lowlinks[node],
+                        bookkeeping.lowlinks[child]);
         }
 
         for (NodeParent node_and_parent : explored_nodes) {
-            Node node = node_and_parent.node;
-            if (bookkeeping.get(node).lowlink == bookkeeping.get(node).index) {
+            int node = node_and_parent.node;
+            if (bookkeeping.lowlinks[node] == bookkeeping.indexes[node]) {
                 // node is the root of a strongly connected component
                 // => fetch and return all nodes in this component
-                ArrayList<Node> connected_component = new ArrayList<Node>();
+                ArrayList<Node<T>> connected_component =
+                        new ArrayList<Node<T>>();
 
-                Node other_node;
+                int other_node;
                 do {
                     other_node = explored_nodes.pop().node;
-                    bookkeeping.get(other_node).onstack = false;
-                    connected_component.add(other_node);
-                } while (!starting_point.equals(other_node));
+                    connected_component.add(nodes.get(other_node));
+                } while (other_node != starting_point);
 
                 return connected_component;
             }
@@ -392,13 +557,13 @@ public class Graph<T> implements Serializable {
     }
 
     /**
-     * Store the node, and it's parent.
+     * Store the node id, and it's parent (or -1).
      */
     private static class NodeParent {
-        private Node node;
-        private Node parent;
+        private int node;
+        private int parent;
 
-        NodeParent(final Node node, final Node parent) {
+        NodeParent(final int node, final int parent) {
             this.node = node;
             this.parent = parent;
         }
@@ -421,18 +586,23 @@ public class Graph<T> implements Serializable {
     }
 
     /**
-     * Helper class to compute strongly connected components.
+     * Helper class to compute strongly connected components: properties of
+     * each node, indexed by node id.
      */
-    private static class NodeProperty {
-
-        private int index;
-        private int lowlink;
-        private boolean onstack;
-
-        NodeProperty(final int index, final int lowlink) {
-            this.index = index;
-            this.lowlink = lowlink;
-            this.onstack = true;
+    private static class Bookkeeping {
+
+        private final NeighborList[] neighborlists;
+        private final int[] indexes;
+        private final int[] lowlinks;
+        private final boolean[] processed;
+        private final boolean[] in_queue;
+
+        Bookkeeping(final int size) {
+            this.neighborlists = new NeighborList[size];
+            this.indexes = new int[size];
+            this.lowlinks = new int[size];
+            this.processed = new boolean[size];
+            this.in_queue = new boolean[size];
         }
     };
 
@@ -533,12 +703,29 @@ public class Graph<T> implements Serializable {
     /**
      * Get the underlying hash map that stores the nodes and associated
      * neighborlists.
+     *
+     * Nodes must be added and removed using put, putAll, remove or clear:
+     * removing nodes using the views of the map (keySet(), entrySet() and
+     * values()) or the default methods of Map is not supported.
+     *
      * @return
      */
     public final HashMap<Node<T>, NeighborList> getHashMap() {
         return map;
     }
 
+    /**
+     * Build a read-only copy of this graph, stored in compressed sparse row
+     * format. The frozen graph requires a lot less memory, and can be
+     * searched and processed (connected components, pruning, Dijkstra) much
+     * faster.
+     *
+     * @return a frozen copy of this graph
+     */
+    public final FrozenGraph<T> freeze() {
+        return new FrozenGraph<T>(this);
+    }
+
     /**
      * Multi-thread exhaustive search.
      * @param query
@@ -558,53 +745,76 @@ public class Graph<T> implements Serializable {
 
         int procs = Runtime.getRuntime().availableProcessors();
         ExecutorService pool = Executors.newFixedThreadPool(procs);
-        List<Future<NeighborList>> results = new ArrayList();
+        List<Future<IntNeighborList>> results = new ArrayList();
 
         for (int i = 0; i < procs; i++) {
             int start = nodes.size() / procs * i;
             int stop = Math.min(nodes.size() / procs * (i + 1), nodes.size());
+            if (i == procs - 1) {
+                stop = nodes.size();
+            }
 
-            results.add(pool.submit(new SearchTask(nodes, query, start, stop)));
+            results.add(pool.submit(
+                    new SearchTask(nodes, query, k, start, stop)));
         }
 
         // Reduce
-        NeighborList neighbors = new NeighborList(k);
-        for (Future<NeighborList> future : results) {
+        IntNeighborList neighbors = new IntNeighborList(k);
+        for (Future<IntNeighborList> future : results) {
             neighbors.addAll(future.get());
         }
         pool.shutdown();
-        return neighbors;
+        return neighbors.toNeighborList(nodes);
     }
 
     /**
      * Class used for multi-thread search.
      */
-    private class SearchTask implements Callable<NeighborList> {
+    private class SearchTask implements Callable<IntNeighborList> {
 
         private final ArrayList<Node<T>> nodes;
         private final T query;
+        private final int k;
         private final int start;
         private final int stop;
 
         SearchTask(
                 final ArrayList<Node<T>> nodes,
                 final T query,
+                final int k,
                 final int start,
                 final int stop) {
 
             this.nodes = nodes;
             this.query = query;
+            this.k = k;
             this.start = start;
             this.stop = stop;
         }
 
-        public NeighborList call() throws Exception {
-            NeighborList nl = new NeighborList(k);
+        public IntNeighborList call() throws Exception {
+            IntNeighborList nl = new IntNeighborList(k);
+
+            if (Similarities.isBounded(similarity)) {
+                for (int i = start; i < stop; i++) {
+                    nl.offer(i, Similarities.similarity(
+                            similarity,
+                            query,
+                            nodes.get(i).value,
+                            nl.threshold()));
+                }
+                return nl;
+            }
+
+            double[] similarities = new double[stop - start];
+            Similarities.similarities(
+                    similarity,
+                    query,
+                    Similarities.values(nodes).subList(start, stop),
+                    similarities);
+
             for (int i = start; i < stop; i++) {
-                Node<T> other = nodes.get(i);
-                nl.add(new Neighbor(
-                        other,
-                        similarity.similarity(query, other.value)));
+                nl.offer(i, similarities[i - start]);
             }
             return nl;
 
@@ -612,8 +822,9 @@ public class Graph<T> implements Serializable {
     }
 
     /**
-     * Approximate fast graph based search, as published in "Fast Online k-nn
-     * Graph Building" by Debatty et al.
+     * Approximate fast graph based search, using the search strategy of
+     * this graph (by default, the algorithm published in "Fast Online k-nn
+     * Graph Building" by Debatty et al.).
      * Default speedup is 4.
      *
      * @see <a href="http://arxiv.org/abs/1602.06819">Fast Online k-nn Graph
@@ -627,8 +838,9 @@ public class Graph<T> implements Serializable {
     }
 
     /**
-     * Approximate fast graph based search, as published in "Fast Online k-nn
-     * Graph Building" by Debatty et al.
+     * Approximate fast graph based search, using the search strategy of
+     * this graph (by default, the algorithm published in "Fast Online k-nn
+     * Graph Building" by Debatty et al.).
      *
      * @see <a href="http://arxiv.org/abs/1602.06819">Fast Online k-nn Graph
      * Building</a>
@@ -640,12 +852,28 @@ public class Graph<T> implements Serializable {
     public final NeighborList fastSearch(
             final T query, final int k, final double speedup) {
 
-        return this.fastSearch(
-                query,
-                k,
-                speedup,
-                DEFAULT_SEARCH_RANDOM_JUMPS,
-                DEFAULT_SEARCH_EXPANSION);
+        return fastSearch(query, k, speedup, new StatisticsContainer());
+    }
+
+    /**
+     * Approximate fast graph based search, using the search strategy of
+     * this graph. The search computes approximately size / speedup
+     * similarities.
+     *
+     * @param query
+     * @param k search k neighbors
+     * @param speedup speedup for searching (> 1, default 4)
+     * @param stats
+     * @return
+     */
+    public final NeighborList fastSearch(
+            final T query,
+            final int k,
+            final double speedup,
+            final StatisticsContainer stats) {
+
+        return getSearchStrategy().search(
+                this, query, k, speedup, stats, new Random());
     }
 
     /**
@@ -672,8 +900,8 @@ public class Graph<T> implements Serializable {
                 query,
                 k,
                 speedup,
-                DEFAULT_SEARCH_RANDOM_JUMPS,
-                DEFAULT_SEARCH_EXPANSION,
+                long_jumps,
+                expansion,
                 new StatisticsContainer());
     }
 
@@ -700,6 +928,107 @@ public class Graph<T> implements Serializable {
             final double expansion,
             final StatisticsContainer stats) {
 
+        return fastSearch(
+                query,
+                k,
+                speedup,
+                long_jumps,
+                expansion,
+                stats,
+                getRegistry(),
+                getSearchScratch(),
+                new Random());
+    }
+
+    /**
+     * Approximate fast graph based search of a batch of queries, executed
+     * in parallel (using all available processors), with default speedup.
+     *
+     * @param queries
+     * @param k
+     * @return the neighbors of each query, in the order of queries
+     * @throws InterruptedException if thread is interrupted
+     * @throws ExecutionException if a search cannot complete
+     */
+    public final List<NeighborList> fastSearchBatch(
+            final List<T> queries, final int k)
+            throws InterruptedException, ExecutionException {
+
+        int procs = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(procs);
+        try {
+            return fastSearchBatch(
+                    queries,
+                    k,
+                    DEFAULT_SEARCH_SPEEDUP,
+                    pool,
+                    new StatisticsContainer());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Approximate fast graph based search of a batch of queries, executed
+     * in parallel by the threads of executor, using the search strategy of
+     * this graph. Each thread reuses its search
+     * buffers across queries, and if the similarity is a BatchSimilarity,
+     * the neighbors of a node are compared to the query at once.
+     *
+     * The graph must not be modified while the batch is running.
+     *
+     * @param queries
+     * @param k
+     * @param speedup (default: 4.0)
+     * @param executor
+     * @param stats receives the aggregated statistics of all queries
+     * @return the neighbors of each query, in the order of queries
+     * @throws InterruptedException if thread is interrupted
+     * @throws ExecutionException if a search cannot complete
+     */
+    public final List<NeighborList> fastSearchBatch(
+            final List<T> queries,
+            final int k,
+            final double speedup,
+            final ExecutorService executor,
+            final StatisticsContainer stats)
+            throws InterruptedException, ExecutionException {
+
+        GraphSearcher<T> searcher = new GraphSearcher<T>(this);
+        searcher.setSpeedup(speedup);
+        List<NeighborList> results = searcher.search(queries, k, executor);
+        stats.add(searcher.getStatistics());
+        return results;
+    }
+
+    /**
+     * Implementation of fastSearch, with explicit search state. This method
+     * only reads the graph: it can be used concurrently by multiple threads
+     * (each with its own scratch and random generator), as long as the graph
+     * is not modified.
+     *
+     * @param query
+     * @param k
+     * @param speedup
+     * @param long_jumps
+     * @param expansion
+     * @param stats
+     * @param nodes the (up to date) registry of the graph
+     * @param scratch the visited buffers of the current thread
+     * @param rand
+     * @return
+     */
+    final NeighborList fastSearch(
+            final T query,
+            final int k,
+            final double speedup,
+            final int long_jumps,
+            final double expansion,
+            final StatisticsContainer stats,
+            final NodeRegistry<T> nodes,
+            final SearchScratch scratch,
+            final Random rand) {
+
         if (speedup <= 1.0) {
             throw new InvalidParameterException("Speedup should be > 1.0");
         }
@@ -710,25 +1039,19 @@ public class Graph<T> implements Serializable {
         // Or fall back to exhaustive search
         if (k >= map.size()
                 || max_similarities >= map.size()) {
-
-            NeighborList nl = new NeighborList(k);
-            for (Node<T> node : map.keySet()) {
-                nl.add(
-                        new Neighbor(
-                                node,
-                                similarity.similarity(
-                                        query,
-                                        node.value)));
-                stats.incSearchSimilarities();
-            }
-            return nl;
+            return searchAll(query, k, stats);
         }
 
-        // Node => Similarity with query node
-        HashMap<Node<T>, Double> visited_nodes = new HashMap<Node<T>, Double>();
+        // Node id => Similarity with query node
+        // Nodes that are not part of this graph (cross partition edges) are
+        // kept in a separate map
+        // With a BoundedSimilarity, a similarity computation may stop as
+        // soon as the node cannot improve the current track, nor enter the
+        // k best visited nodes
+        boolean bounded = Similarities.isBounded(similarity);
+        VisitedNodes visited_nodes = new VisitedNodes(
+                nodes, scratch, bounded ? k : 0);
         double global_highest_similarity = 0;
-        ArrayList<Node<T>> nodes = new ArrayList<Node<T>>(map.keySet());
-        Random rand = new Random();
 
         while (true) { // Restart...
 
@@ -739,10 +1062,11 @@ public class Graph<T> implements Serializable {
             stats.incSearchRestarts();
 
             // Select a random node from the graph
-            Node<T> current_node = nodes.get(rand.nextInt(nodes.size()));
+            int current_id = rand.nextInt(nodes.size());
+            Node<T> current_node = nodes.get(current_id);
 
             // Already been here => restart
-            if (visited_nodes.containsKey(current_node)) {
+            if (visited_nodes.contains(current_id, current_node)) {
                 continue;
             }
 
@@ -770,19 +1094,24 @@ public class Graph<T> implements Serializable {
 
                 for (int i = 0; i < long_jumps; i++) {
                     // Check a random node (to simulate long jumps)
-                    other_node = nodes.get(rand.nextInt(nodes.size()));
+                    int other_id = rand.nextInt(nodes.size());
+                    other_node = nodes.get(other_id);
 
                     // Already been here => skip
-                    if (visited_nodes.containsKey(other_node)) {
+                    if (visited_nodes.contains(other_id, other_node)) {
                         continue;
                     }
 
                     // Compute similarity to query
-                    double sim = similarity.similarity(
+                    double sim = Similarities.similarity(
+                            similarity,
                             query,
-                            other_node.value);
+                            other_node.value,
+                            Math.min(
+                                    restart_similarity,
+                                    visited_nodes.threshold()));
                     stats.incSearchSimilarities();
-                    visited_nodes.put(other_node, sim);
+                    visited_nodes.put(other_id, other_node, sim);
 
                     // If this node provides an improved similarity, keep it
                     if (sim > restart_similarity) {
@@ -792,31 +1121,77 @@ public class Graph<T> implements Serializable {
 
                 }
 
-                // Check the neighbors of current_node and try to find a node
-                // with higher similarity
-                Iterator<Neighbor> y_nl_iterator = nl.iterator();
-                while (y_nl_iterator.hasNext()) {
-
-                    other_node = y_nl_iterator.next().node;
-
-                    if (visited_nodes.containsKey(other_node)) {
-                        continue;
+                // With a batch similarity, compute the similarity between
+                // the query and all unvisited neighbors at once
+                if (Similarities.isBatch(similarity) && !bounded) {
+                    ArrayList<Node<T>> batch =
+                            new ArrayList<Node<T>>(nl.size());
+                    IntArrayList batch_ids = new IntArrayList(nl.size());
+                    for (Neighbor neighbor : nl) {
+                        int id = nodes.indexOf(neighbor);
+                        if (!visited_nodes.contains(id, neighbor.node)) {
+                            batch.add(neighbor.node);
+                            batch_ids.add(id);
+                        }
                     }
-
-                    // Compute similarity to query
-                    double sim = similarity.similarity(
+                    double[] batch_similarities = new double[batch.size()];
+                    Similarities.similarities(
+                            similarity,
                             query,
-                            other_node.value);
-                    stats.incSearchSimilarities();
-                    visited_nodes.put(other_node, sim);
-
-                    // If this node provides an improved similarity, keep it
-                    if (sim > restart_similarity) {
-                        node_higher_similarity = other_node;
-                        restart_similarity = sim;
-
-                        // early break...
-                        break;
+                            Similarities.values(batch),
+                            batch_similarities);
+                    stats.incSearchSimilarities(batch.size());
+
+                    // All similarities were computed (and counted): record
+                    // them all, then follow the first neighbor that
+                    // provides an improved similarity
+                    double improved_similarity = restart_similarity;
+                    for (int i = 0; i < batch.size(); i++) {
+                        double sim = batch_similarities[i];
+                        visited_nodes.put(batch_ids.get(i), batch.get(i), sim);
+
+                        if (node_higher_similarity == null
+                                && sim > restart_similarity) {
+                            node_higher_similarity = batch.get(i);
+                            improved_similarity = sim;
+                        }
+                    }
+                    restart_similarity = improved_similarity;
+
+                } else {
+                    // Check the neighbors of current_node and try to find a
+                    // node with higher similarity
+                    Iterator<Neighbor> y_nl_iterator = nl.iterator();
+                    while (y_nl_iterator.hasNext()) {
+
+                        Neighbor neighbor = y_nl_iterator.next();
+                        other_node = neighbor.node;
+                        int other_id = nodes.indexOf(neighbor);
+
+                        if (visited_nodes.contains(other_id, other_node)) {
+                            continue;
+                        }
+
+                        // Compute similarity to query
+                        double sim = Similarities.similarity(
+                                similarity,
+                                query,
+                                other_node.value,
+                                Math.min(
+                                        restart_similarity,
+                                        visited_nodes.threshold()));
+                        stats.incSearchSimilarities();
+                        visited_nodes.put(other_id, other_node, sim);
+
+                        // If this node provides an improved similarity, keep
+                        // it
+                        if (sim > restart_similarity) {
+                            node_higher_similarity = other_node;
+                            restart_similarity = sim;
+
+                            // early break...
+                            break;
+                        }
                     }
                 }
 
@@ -835,11 +1210,125 @@ public class Graph<T> implements Serializable {
             }
         }
 
-        NeighborList neighbor_list = new NeighborList(k);
-        for (Map.Entry<Node<T>, Double> entry : visited_nodes.entrySet()) {
-            neighbor_list.add(new Neighbor(entry.getKey(), entry.getValue()));
+        return visited_nodes.toNeighborList(k);
+    }
+
+    /**
+     * Single-thread exhaustive search, used by search strategies when the
+     * similarity budget exceeds the size of the graph.
+     *
+     * @param query
+     * @param k
+     * @param stats
+     * @return
+     */
+    final NeighborList searchAll(
+            final T query, final int k, final StatisticsContainer stats) {
+
+        NeighborList nl = new NeighborList(k);
+        for (Node<T> node : map.keySet()) {
+            nl.add(node, similarity.similarity(query, node.value));
+            stats.incSearchSimilarities();
+        }
+        return nl;
+    }
+
+    /**
+     * Nodes visited during a search, with their similarity to the query.
+     * Nodes of the graph are tracked in the (reused) arrays of a
+     * SearchScratch, indexed by their registry id, foreign nodes (cross
+     * partition edges) in a map.
+     *
+     * Optionally, the k highest similarities are also tracked, to provide a
+     * threshold to a BoundedSimilarity.
+     */
+    private static class VisitedNodes {
+
+        private final NodeRegistry nodes;
+        private final SearchScratch scratch;
+        private HashMap<Node, Double> foreign_nodes;
+        private final IntNeighborList best;
+        private int count;
+
+        /**
+         *
+         * @param nodes
+         * @param scratch
+         * @param k number of highest similarities to track (0 = none)
+         */
+        VisitedNodes(
+                final NodeRegistry nodes,
+                final SearchScratch scratch,
+                final int k) {
+            this.nodes = nodes;
+            this.scratch = scratch;
+            this.best = k > 0 ? new IntNeighborList(k) : null;
+            scratch.reset(nodes.size());
+        }
+
+        /**
+         *
+         * @return the k-th highest similarity of the visited nodes, or
+         * Double.NEGATIVE_INFINITY if less than k nodes were visited (or
+         * highest similarities are not tracked)
+         */
+        double threshold() {
+            if (best == null) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            return best.threshold();
+        }
+
+        /**
+         *
+         * @param id id of node in the registry, or -1 for a foreign node
+         * @param node
+         * @return
+         */
+        boolean contains(final int id, final Node node) {
+            if (id != -1) {
+                return scratch.contains(id);
+            }
+            return foreign_nodes != null && foreign_nodes.containsKey(node);
+        }
+
+        /**
+         *
+         * @param id id of node in the registry, or -1 for a foreign node
+         * @param node
+         * @param similarity
+         */
+        void put(final int id, final Node node, final double similarity) {
+            if (best != null) {
+                best.offer(count++, similarity);
+            }
+
+            if (id != -1) {
+                scratch.put(id, similarity);
+                return;
+            }
+
+            if (foreign_nodes == null) {
+                foreign_nodes = new HashMap<Node, Double>();
+            }
+            foreign_nodes.put(node, similarity);
+        }
+
+        NeighborList toNeighborList(final int k) {
+            NeighborList neighbor_list = new NeighborList(k);
+            IntArrayList visited_ids = scratch.visitedIds();
+            for (int i = 0; i < visited_ids.size(); i++) {
+                int id = visited_ids.get(i);
+                neighbor_list.add(nodes.get(id), scratch.similarity(id));
+            }
+
+            if (foreign_nodes != null) {
+                for (Map.Entry<Node, Double> entry : foreign_nodes.entrySet()) {
+                    neighbor_list.add(entry.getKey(), entry.getValue());
+                }
+            }
+            return neighbor_list;
         }
-        return neighbor_list;
     }
 
     /**
@@ -924,11 +1413,12 @@ public class Graph<T> implements Serializable {
         for (Node<T> other_node : getNodes()) {
             double sim = similarity.similarity(
                     new_node.value, other_node.value);
-            nl.add(new Neighbor(other_node, sim));
-            get(other_node).add(new Neighbor(new_node, sim));
+            nl.add(other_node, sim);
+            get(other_node).add(new_node, sim);
         }
 
         this.put(new_node, nl);
+        updateIndex(new_node, true, new StatisticsContainer());
         return (size() - 1);
 
     }
@@ -985,6 +1475,33 @@ public class Graph<T> implements Serializable {
                 new StatisticsContainer());
     }
 
+    /**
+     * Add a node to the online graph, using approximate online graph building
+     * algorithm presented in "Fast Online k-nn Graph Building" by Debatty
+     * et al. Uses default update depth (3).
+     *
+     * @param new_node
+     * @param speedup compared to exhaustive search
+     * @param long_jumps
+     * @param expansion
+     * @param stats
+     */
+    public final void fastAdd(
+            final Node<T> new_node,
+            final double speedup,
+            final int long_jumps,
+            final double expansion,
+            final StatisticsContainer stats) {
+
+        fastAdd(
+                new_node,
+                speedup,
+                long_jumps,
+                expansion,
+                DEFAULT_UPDATE_DEPTH,
+                stats);
+    }
+
     /**
      * Add a node to the online graph, using approximate online graph building
      * algorithm presented in "Fast Online k-nn Graph Building" by Debatty
@@ -1033,47 +1550,58 @@ public class Graph<T> implements Serializable {
         put(new_node, neighborlist);
 
         // 4. Update existing edges
-        // Nodes to analyze at this iteration
-        LinkedList<Node<T>> analyze = new LinkedList<Node<T>>();
+        // Nodes that are not part of this graph (cross partition edges) are
+        // skipped
+        // Ids of the nodes to analyze at this iteration
+        IntArrayList analyze = new IntArrayList();
 
-        // Nodes to analyze at next iteration
-        LinkedList<Node<T>> next_analyze = new LinkedList<Node<T>>();
+        // Ids of the nodes to analyze at next iteration
+        IntArrayList next_analyze = new IntArrayList();
 
-        // List of already analyzed nodes
-        HashMap<Node<T>, Boolean> visited = new HashMap<Node<T>, Boolean>();
+        // Already analyzed nodes, indexed by node id
+        NodeRegistry<T> nodes = getRegistry();
+        boolean[] visited = new boolean[nodes.size()];
 
         // Fill the list of nodes to analyze
         for (Neighbor neighbor : get(new_node)) {
-            analyze.add(neighbor.node);
+            int id = nodes.indexOf(neighbor);
+            if (id != -1) {
+                analyze.add(id);
+            }
         }
 
         for (int d = 0; d < update_depth; d++) {
-            while (!analyze.isEmpty()) {
-                Node<T> other = analyze.pop();
+            for (int i = 0; i < analyze.size(); i++) {
+                int other_id = analyze.get(i);
+                Node<T> other = nodes.get(other_id);
                 NeighborList other_neighborlist = get(other);
 
                 // Add neighbors to the list of nodes to analyze at
                 // next iteration
                 for (Neighbor other_neighbor : other_neighborlist) {
-                    if (!visited.containsKey(other_neighbor.node)) {
-                        next_analyze.add(other_neighbor.node);
+                    int id = nodes.indexOf(other_neighbor);
+                    if (id != -1 && !visited[id]) {
+                        next_analyze.add(id);
                     }
                 }
 
                 // Try to add the new node (if sufficiently similar)
                 stats.incAddSimilarities();
-                other_neighborlist.add(new Neighbor(
+                other_neighborlist.add(
                         new_node,
-                        similarity.similarity(
-                                new_node.value,
-                                other.value)));
+                        similarity.similarity(new_node.value, other.value));
 
-                visited.put(other, Boolean.TRUE);
+                visited[other_id] = true;
             }
 
+            IntArrayList swap = analyze;
             analyze = next_analyze;
-            next_analyze = new LinkedList<Node<T>>();
+            next_analyze = swap;
+            next_analyze.clear();
         }
+
+        // 5. Update the search index (if any)
+        updateIndex(new_node, true, stats);
     }
 
     /**
@@ -1132,12 +1660,38 @@ public class Graph<T> implements Serializable {
                         node_to_update.value,
                         candidate.value);
 
-                nl_to_update.add(new Neighbor(candidate, sim));
+                nl_to_update.add(candidate, sim);
             }
         }
 
         // Remove node_to_remove
         map.remove(node_to_remove);
+        updateIndex(node_to_remove, false, stats);
+    }
+
+    /**
+     * If the search strategy is a HierarchicalIndex, add (or remove) this
+     * node to (from) the layers of the index.
+     *
+     * @param node
+     * @param added
+     * @param stats
+     */
+    private void updateIndex(
+            final Node<T> node,
+            final boolean added,
+            final StatisticsContainer stats) {
+
+        if (!(search_strategy instanceof HierarchicalIndex)) {
+            return;
+        }
+
+        HierarchicalIndex<T> index = (HierarchicalIndex<T>) search_strategy;
+        if (added) {
+            index.add(this, node, stats);
+        } else {
+            index.remove(this, node, stats);
+        }
     }
 
     @Override
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Thread-safe, read-only search in a graph: a single searcher can be shared
+ * by many threads to answer queries concurrently.
+ *
+ * The searcher never modifies the graph, and each thread uses its own
+ * search buffers (shared with Graph.fastSearch on the same thread), random
+ * generator and statistics. Hence threads do not contend on any lock during
+ * the search. The statistics of all threads are
+ * only merged when getStatistics() is called.
+ *
+ * The graph must not be modified (add, fastAdd, fastRemove, put, prune...)
+ * while searches are running, and the similarity of the graph must be
+ * thread-safe.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class GraphSearcher<T> {
+
+    // Number of queries of a batch processed by a single task
+    private static final int BATCH_CHUNK_SIZE = 64;
+
+    private final Graph<T> graph;
+    private final ThreadLocal<SearchState> state;
+
+    // Statistics of all the threads that used this searcher
+    private final ArrayList<StatisticsContainer> thread_stats;
+
+    private double speedup = Graph.DEFAULT_SEARCH_SPEEDUP;
+    private SearchStrategy<T> strategy;
+
+    /**
+     * Searcher for this graph. The graph should not be modified after the
+     * searcher is created.
+     *
+     * @param graph
+     */
+    public GraphSearcher(final Graph<T> graph) {
+        this.graph = graph;
+        this.strategy = graph.getSearchStrategy();
+        // Make sure the registry is up to date before threads use it
+        graph.getRegistry();
+        this.thread_stats = new ArrayList<StatisticsContainer>();
+        this.state = new ThreadLocal<SearchState>() {
+
+            @Override
+            protected SearchState initialValue() {
+                SearchState new_state = new SearchState();
+                synchronized (thread_stats) {
+                    thread_stats.add(new_state.stats);
+                }
+                return new_state;
+            }
+        };
+    }
+
+    /**
+     *
+     * @return the graph used by this searcher
+     */
+    public final Graph<T> getGraph() {
+        return graph;
+    }
+
+    public final double getSpeedup() {
+        return speedup;
+    }
+
+    /**
+     * Speedup of the searches (> 1, default 4). Should be set before the
+     * searcher is shared between threads.
+     *
+     * @param speedup
+     */
+    public final void setSpeedup(final double speedup) {
+        if (speedup <= 1.0) {
+            throw new InvalidParameterException("Speedup should be > 1.0");
+        }
+        this.speedup = speedup;
+    }
+
+    public final SearchStrategy<T> getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Search algorithm (default: the search strategy of the graph). Should
+     * be set before the searcher is shared between threads.
+     *
+     * @param strategy
+     */
+    public final void setStrategy(final SearchStrategy<T> strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Approximate search of the k nearest neighbors of query, using the
+     * search strategy of this searcher. Can be called concurrently by
+     * multiple threads.
+     *
+     * @param query
+     * @param k
+     * @return
+     */
+    public final NeighborList search(final T query, final int k) {
+        SearchState current = state.get();
+
+        // The search budget is based on the counters of stats, hence each
+        // query uses a fresh container
+        StatisticsContainer stats = new StatisticsContainer();
+        NeighborList result = strategy.search(
+                graph, query, k, speedup, stats, current.rand);
+        current.stats.add(stats);
+        return result;
+    }
+
+    /**
+     * Search the k nearest neighbors of all queries, in parallel, using the
+     * threads of executor. Queries are split in chunks, and each thread
+     * reuses its search buffers for all the queries it processes.
+     *
+     * @param queries
+     * @param k
+     * @param executor
+     * @return the neighbors of each query, in the order of queries
+     * @throws InterruptedException if thread is interrupted
+     * @throws ExecutionException if a search cannot complete
+     */
+    public final List<NeighborList> search(
+            final List<T> queries,
+            final int k,
+            final ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+
+        final NeighborList[] results = new NeighborList[queries.size()];
+        ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int chunk_start = 0;
+                chunk_start < queries.size();
+                chunk_start += BATCH_CHUNK_SIZE) {
+
+            final int start = chunk_start;
+            final int stop = Math.min(
+                    queries.size(), chunk_start + BATCH_CHUNK_SIZE);
+            futures.add(executor.submit(new Callable<Object>() {
+
+                public Object call() {
+                    for (int i = start; i < stop; i++) {
+                        results[i] = search(queries.get(i), k);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Merge the statistics of all threads. The result is exact once the
+     * searches are completed (and their threads were joined), and
+     * approximate while searches are running.
+     *
+     * @return
+     */
+    public final StatisticsContainer getStatistics() {
+        StatisticsContainer total = new StatisticsContainer();
+        synchronized (thread_stats) {
+            for (StatisticsContainer stats : thread_stats) {
+                total.add(stats);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Search state of a thread.
+     */
+    private static class SearchState {
+        private final Random rand = new Random();
+        private final StatisticsContainer stats = new StatisticsContainer();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.util.Random;
+
+/**
+ * Greedy search with random restarts and random (long) jumps, as published
+ * in "Fast Online k-nn Graph Building" by Debatty et al. This is the default
+ * search strategy of a graph.
+ *
+ * @see <a href="http://arxiv.org/abs/1602.06819">Fast Online k-nn Graph
+ * Building</a>
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class GreedySearch<T> implements SearchStrategy<T> {
+
+    private final int long_jumps;
+    private final double expansion;
+
+    /**
+     * Greedy search with default parameters (2 long jumps, expansion 1.2).
+     */
+    public GreedySearch() {
+        this(Graph.DEFAULT_SEARCH_RANDOM_JUMPS, Graph.DEFAULT_SEARCH_EXPANSION);
+    }
+
+    /**
+     *
+     * @param long_jumps number of random nodes checked at each step
+     * @param expansion a restart is abandoned if its similarity is less than
+     * the highest similarity found so far / expansion
+     */
+    public GreedySearch(final int long_jumps, final double expansion) {
+        this.long_jumps = long_jumps;
+        this.expansion = expansion;
+    }
+
+    public final int getLongJumps() {
+        return long_jumps;
+    }
+
+    public final double getExpansion() {
+        return expansion;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final NeighborList search(
+            final Graph<T> graph,
+            final T query,
+            final int k,
+            final double speedup,
+            final StatisticsContainer stats,
+            final Random rand) {
+
+        return graph.fastSearch(
+                query,
+                k,
+                speedup,
+                long_jumps,
+                expansion,
+                stats,
+                graph.getRegistry(),
+                graph.getSearchScratch(),
+                rand);
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.GraphBuilder;
+import info.debatty.java.graphs.build.NNDescent;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Hierarchical index, in the spirit of HNSW, used to find a good entry point
+ * for the search in a graph.
+ *
+ * The nodes of the graph are sampled into sparse layers: each layer
+ * contains a fraction 1 / ratio of the nodes of the layer below, and is a
+ * k-nn graph built with the existing builders (Brute for small layers, NNDescent
+ * by default for large ones). The top layer contains at most top_size nodes.
+ *
+ * A search scans the top layer, then descends through the layers: in each
+ * layer, a single track of best-first beam search starts from the ef best
+ * nodes found in the layer above. The ef best nodes of the lowest layer are
+ * the entry points of the final beam search in the graph. Hence the cost
+ * of a search grows roughly with the logarithm of the size of the graph,
+ * and the similarity budget defined by speedup is only an upper bound.
+ *
+ * Like the layers, the graph is searched through k-nn edges only: if the
+ * data consists of well separated clusters (hence the layers are not
+ * connected), the search may not reach the cluster of the query, and a
+ * strategy with random restarts (GreedySearch or BeamSearch) should be
+ * preferred.
+ *
+ * When the index is the search strategy of the graph, fastAdd, add and
+ * fastRemove maintain the layers incrementally: a new node is inserted in
+ * each of its (randomly chosen) layers, a removed node is removed from all
+ * layers, and a new top layer is created when the top layer becomes too
+ * large.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class HierarchicalIndex<T> implements SearchStrategy<T> {
+
+    /**
+     * Default ratio between the sizes of successive layers.
+     */
+    public static final int DEFAULT_RATIO = 16;
+
+    /**
+     * Default maximum size of the top layer.
+     */
+    public static final int DEFAULT_TOP_SIZE = 64;
+
+    // Layers with less nodes are built using brute force
+    private static final int BRUTE_MAX_SIZE = 2000;
+
+    // Layers, from the densest (just above the graph) to the top layer
+    private final ArrayList<Graph<T>> layers = new ArrayList<Graph<T>>();
+    private final Random rand = new Random();
+    private final BeamSearch<T> beam;
+
+    private int ratio = DEFAULT_RATIO;
+    private int top_size = DEFAULT_TOP_SIZE;
+    private GraphBuilder<T> builder = new NNDescent<T>();
+
+    /**
+     * Index with default parameters: ratio 16, top layer size 64, and beam
+     * search of width 32 in the graph.
+     */
+    public HierarchicalIndex() {
+        this(BeamSearch.DEFAULT_EF);
+    }
+
+    /**
+     *
+     * @param ef width of the beam search in the graph
+     */
+    public HierarchicalIndex(final int ef) {
+        this.beam = new BeamSearch<T>(ef);
+    }
+
+    public final int getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Ratio between the sizes of successive layers (default 16). Must be
+     * set before the index is built.
+     *
+     * @param ratio
+     */
+    public final void setRatio(final int ratio) {
+        if (ratio < 2) {
+            throw new InvalidParameterException("ratio should be >= 2");
+        }
+        this.ratio = ratio;
+    }
+
+    public final int getTopSize() {
+        return top_size;
+    }
+
+    /**
+     * Maximum number of nodes in the top layer, which is scanned
+     * exhaustively (default 64). Must be set before the index is built.
+     *
+     * @param top_size
+     */
+    public final void setTopSize(final int top_size) {
+        if (top_size < 1) {
+            throw new InvalidParameterException("top_size should be >= 1");
+        }
+        this.top_size = top_size;
+    }
+
+    public final GraphBuilder<T> getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Builder used for the large layers (default NNDescent). k and
+     * similarity are set by the index.
+     *
+     * @param builder
+     */
+    public final void setBuilder(final GraphBuilder<T> builder) {
+        this.builder = builder;
+    }
+
+    /**
+     *
+     * @return the number of layers above the graph
+     */
+    public final int getLayerCount() {
+        return layers.size();
+    }
+
+    /**
+     *
+     * @param level 0 for the densest layer
+     * @return the k-nn graph of this layer
+     */
+    public final Graph<T> getLayer(final int level) {
+        return layers.get(level);
+    }
+
+    /**
+     * (Re)build the layers of the index, by sampling the nodes of the
+     * graph.
+     *
+     * @param graph
+     */
+    public final void build(final Graph<T> graph) {
+        layers.clear();
+        List<Node<T>> current = graph.getRegistry().getNodes();
+        while (current.size() > top_size) {
+            ArrayList<Node<T>> next = new ArrayList<Node<T>>();
+            for (Node<T> node : current) {
+                if (rand.nextInt(ratio) == 0) {
+                    next.add(node);
+                }
+            }
+
+            if (next.isEmpty()) {
+                break;
+            }
+            layers.add(buildLayer(graph, next));
+            current = next;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final NeighborList search(
+            final Graph<T> graph,
+            final T query,
+            final int k,
+            final double speedup,
+            final StatisticsContainer stats,
+            final Random rand) {
+
+        if (speedup <= 1.0) {
+            throw new InvalidParameterException("Speedup should be > 1.0");
+        }
+
+        int max_similarities = (int) (graph.size() / speedup);
+        if (k >= graph.size() || max_similarities >= graph.size()) {
+            return graph.searchAll(query, k, stats);
+        }
+
+        if (layers.isEmpty()) {
+            return beam.search(graph, query, k, speedup, stats, rand);
+        }
+
+        SimilarityInterface<T> similarity = graph.getSimilarity();
+        stats.incSearchRestarts();
+
+        // Scan the top layer
+        int ef = beam.getEf();
+        NeighborList entries = new NeighborList(ef);
+        for (Node<T> node : layers.get(layers.size() - 1).getNodes()) {
+            entries.add(node, similarity.similarity(query, node.value));
+            stats.incSearchSimilarities();
+        }
+
+        // Descent through the lower layers: the best nodes of a layer are
+        // the entry points in the layer below
+        for (int level = layers.size() - 2; level >= 0; level--) {
+            entries = beam.search(
+                    layers.get(level),
+                    query,
+                    ef,
+                    max_similarities,
+                    stats,
+                    rand,
+                    entries);
+        }
+
+        return beam.search(
+                graph, query, k, max_similarities, stats, rand, entries);
+    }
+
+    /**
+     * Insert a node that was added to the graph in its layers.
+     *
+     * @param graph
+     * @param node
+     * @param stats
+     */
+    final void add(
+            final Graph<T> graph,
+            final Node<T> node,
+            final StatisticsContainer stats) {
+
+        // Level of the new node
+        int level = 0;
+        while (level < layers.size() && rand.nextInt(ratio) == 0) {
+            level++;
+        }
+
+        for (int l = 0; l < level; l++) {
+            // Same as Graph.fastAdd, but only the neighbors of the new node
+            // are updated, and the attributes of the node are not modified
+            // The budget of the search is computed from the counters of the
+            // container: use a fresh one, as stats was already charged for
+            // the search in the graph
+            Graph<T> layer = layers.get(l);
+            StatisticsContainer layer_stats = new StatisticsContainer();
+            NeighborList neighborlist = layer.fastSearch(
+                    node.value, layer.getK(), Graph.DEFAULT_SEARCH_SPEEDUP,
+                    layer_stats);
+            stats.add(layer_stats);
+            layer.put(node, neighborlist);
+            for (Neighbor neighbor : neighborlist) {
+                layer.get(neighbor.node).add(node, neighbor.similarity);
+            }
+        }
+
+        // Add a new top layer if needed
+        Graph<T> top = layers.isEmpty() ? graph : layers.get(layers.size() - 1);
+        if (top.size() > top_size) {
+            ArrayList<Node<T>> next = new ArrayList<Node<T>>();
+            for (Node<T> top_node : top.getNodes()) {
+                if (rand.nextInt(ratio) == 0) {
+                    next.add(top_node);
+                }
+            }
+
+            if (!next.isEmpty()) {
+                layers.add(buildLayer(graph, next));
+            }
+        }
+    }
+
+    /**
+     * Remove a node that was removed from the graph from all layers.
+     *
+     * @param graph
+     * @param node
+     * @param stats
+     */
+    final void remove(
+            final Graph<T> graph,
+            final Node<T> node,
+            final StatisticsContainer stats) {
+
+        for (int l = 0; l < layers.size(); l++) {
+            Graph<T> layer = layers.get(l);
+            if (!layer.containsKey(node)) {
+                // Layers are nested
+                break;
+            }
+
+            layer.fastRemove(node, Graph.DEFAULT_UPDATE_DEPTH, stats);
+            if (layer.size() == 0) {
+                // Upper layers are empty too
+                while (layers.size() > l) {
+                    layers.remove(layers.size() - 1);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Build the k-nn graph of a layer.
+     *
+     * @param graph
+     * @param nodes
+     * @return
+     */
+    private Graph<T> buildLayer(final Graph<T> graph, final List<Node<T>> nodes) {
+        GraphBuilder<T> layer_builder = builder;
+        if (nodes.size() <= BRUTE_MAX_SIZE
+                || nodes.size() <= 2 * graph.getK()) {
+            layer_builder = new Brute<T>();
+        }
+        layer_builder.setK(graph.getK());
+        layer_builder.setSimilarity(graph.getSimilarity());
+        Graph<T> layer = layer_builder.computeGraph(nodes);
+        layer.setK(graph.getK());
+        layer.setSimilarity(graph.getSimilarity());
+        return layer;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Bounded list of neighbors, where each neighbor is identified by an int id
+ * (usually the position of the node in the list of nodes used to build the
+ * graph).
+ *
+ * Neighbors are stored in a binary min-heap backed by parallel arrays of ids
+ * and similarities. Offering a candidate first compares it to the smallest
+ * similarity of the list, and never allocates memory. Each neighbor also has
+ * a "new" flag, used by NN-Descent, stored in a bitset.
+ *
+ * @author Thibault Debatty
+ */
+public class IntNeighborList implements Serializable {
+
+    private final int[] ids;
+    private final double[] similarities;
+    private final long[] news;
+    private int size;
+
+    /**
+     * Create a new neighborlist of given capacity.
+     * @param capacity maximum number of neighbors
+     */
+    public IntNeighborList(final int capacity) {
+        this.ids = new int[capacity];
+        this.similarities = new double[capacity];
+        this.news = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     *
+     * @return the number of neighbors in the list
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the maximum number of neighbors
+     */
+    public final int capacity() {
+        return ids.length;
+    }
+
+    /**
+     *
+     * @param i position in the list (0 .. size() - 1)
+     * @return the id of the neighbor at this position
+     */
+    public final int getId(final int i) {
+        return ids[i];
+    }
+
+    /**
+     *
+     * @param i position in the list (0 .. size() - 1)
+     * @return the similarity of the neighbor at this position
+     */
+    public final double getSimilarity(final int i) {
+        return similarities[i];
+    }
+
+    /**
+     *
+     * @param i position in the list (0 .. size() - 1)
+     * @return true if the neighbor at this position is flagged as new
+     */
+    public final boolean isNew(final int i) {
+        return (news[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     *
+     * @param i position in the list (0 .. size() - 1)
+     * @param value
+     */
+    public final void setNew(final int i, final boolean value) {
+        if (value) {
+            news[i >>> 6] |= 1L << i;
+        } else {
+            news[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * The similarity a candidate must exceed to enter the list.
+     *
+     * @return the smallest similarity in the list if the list is full,
+     * Double.NEGATIVE_INFINITY otherwise
+     */
+    public final double threshold() {
+        if (size < ids.length) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return similarities[0];
+    }
+
+    /**
+     *
+     * @param id
+     * @return true if this id is in the list
+     */
+    public final boolean contains(final int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add this neighbor (flagged as new) if the list is not full, or if the
+     * similarity is higher than the smallest similarity in the list.
+     *
+     * @param id
+     * @param similarity
+     * @return true if the neighbor was added
+     */
+    public final boolean offer(final int id, final double similarity) {
+        return offer(id, similarity, true);
+    }
+
+    /**
+     * Add this neighbor if the list is not full, or if the similarity is
+     * higher than the smallest similarity in the list.
+     *
+     * @param id
+     * @param similarity
+     * @param is_new
+     * @return true if the neighbor was added
+     */
+    public final boolean offer(
+            final int id, final double similarity, final boolean is_new) {
+
+        if (size == ids.length && similarity <= similarities[0]) {
+            return false;
+        }
+
+        if (contains(id)) {
+            return false;
+        }
+
+        if (size < ids.length) {
+            ids[size] = id;
+            similarities[size] = similarity;
+            setNew(size, is_new);
+            size++;
+            siftUp(size - 1);
+            return true;
+        }
+
+        // Replace the smallest neighbor
+        ids[0] = id;
+        similarities[0] = similarity;
+        setNew(0, is_new);
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Offer all the neighbors of the other list, keeping their flag.
+     *
+     * @param other
+     * @return the number of neighbors that were added
+     */
+    public final int addAll(final IntNeighborList other) {
+        int count = 0;
+        for (int i = 0; i < other.size; i++) {
+            if (offer(other.ids[i], other.similarities[i], other.isNew(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remove all neighbors.
+     */
+    public final void clear() {
+        size = 0;
+    }
+
+    /**
+     * Build the corresponding NeighborList.
+     *
+     * @param <T> type of nodes value
+     * @param nodes the nodes, in the order used for the ids
+     * @return
+     */
+    public final <T> NeighborList toNeighborList(final List<Node<T>> nodes) {
+        NeighborList nl = new NeighborList(ids.length);
+        for (int i = 0; i < size; i++) {
+            nl.add(new Neighbor(nodes.get(ids[i]), similarities[i]));
+        }
+        return nl;
+    }
+
+    private void siftUp(final int position) {
+        int i = position;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (similarities[parent] <= similarities[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(final int position) {
+        int i = position;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < size && similarities[left] < similarities[smallest]) {
+                smallest = left;
+            }
+
+            if (right < size && similarities[right] < similarities[smallest]) {
+                smallest = right;
+            }
+
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+
+        double similarity = similarities[i];
+        similarities[i] = similarities[j];
+        similarities[j] = similarity;
+
+        boolean is_new = isNew(i);
+        setNew(i, isNew(j));
+        setNew(j, is_new);
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append("(").append(ids[i]).append(",")
+                    .append(similarities[i]).append(")");
+        }
+        return builder.append("]").toString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+/**
+ * Similarity derived from a true metric distance (that respects the triangle
+ * inequality), like the edit distance, the euclidean distance or the Jaccard
+ * distance. The similarity must be a decreasing function of the distance:
+ * similarity(a, b) == toSimilarity(distance(a, b)).
+ *
+ * Exact builders like {@link info.debatty.java.graphs.build.MetricBrute} use
+ * the triangle inequality to skip pairs that cannot be neighbors.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of values
+ */
+public interface MetricSimilarity<T> extends SimilarityInterface<T> {
+
+    /**
+     *
+     * @param value1
+     * @param value2
+     * @return the distance between value1 and value2
+     */
+    double distance(T value1, T value2);
+
+    /**
+     * Convert a distance to a similarity.
+     *
+     * @param distance
+     * @return the similarity between two values at this distance
+     */
+    double toSimilarity(double distance);
+}
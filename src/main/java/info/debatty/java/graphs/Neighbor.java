@@ -16,23 +16,29 @@ public class Neighbor implements Comparable, Serializable {
 
     protected HashMap<String, Object> attributes;
 
+    // Id of node in the registry of the graph: only a hint, checked by
+    // NodeRegistry.indexOf(Neighbor)
+    transient int registry_id = -1;
+
     public Neighbor() {
-        this.attributes = new HashMap<String, Object>();
         node = new Node();
     }
 
     public Neighbor(Node node, double similarity) {
-        this.attributes = new HashMap<String, Object>();
         this.node = node;
         this.similarity = similarity;
     }
 
     /**
+     * The map of attributes is only created when the first attribute is set.
      *
      * @param key
      * @param value
      */
     public void setAttribute(String key, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>();
+        }
         attributes.put(key, value);
     }
 
@@ -44,6 +50,9 @@ public class Neighbor implements Comparable, Serializable {
      * @return
      */
     public Object getAttribute(String key) {
+        if (attributes == null) {
+            return null;
+        }
         return attributes.get(key);
     }
 
@@ -49,6 +49,23 @@ public class NeighborList extends BoundedPriorityQueue<Neighbor>
         super(size);
     }
 
+    /**
+     * Add a neighbor for this node, if the neighborlist is not full or if the
+     * similarity is higher than the smallest similarity in the list. The
+     * Neighbor object is only created if it will be added to the list.
+     *
+     * @param node
+     * @param similarity
+     * @return true if the neighbor was added
+     */
+    public final boolean add(final Node node, final double similarity) {
+        if (size() >= getCapacity()
+                && (size() == 0 || similarity <= peek().similarity)) {
+            return false;
+        }
+        return add(new Neighbor(node, similarity));
+    }
+
     /**
      * Count the values (using node.value) that are present in both
      * neighborlists. Uses node.value.equals(other_node.value). Neighborlists
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Assigns a dense int id (0 .. size() - 1) to each registered node, so
+ * algorithms can use int-indexed arrays instead of hash maps keyed by node.
+ *
+ * The ids are kept by the registry, so a node can be registered in several
+ * registries (e.g. the graph and the layers of an index) with a different id
+ * in each. When a node is removed, the last node takes its id (ids remain
+ * contiguous).
+ *
+ * Looking up the id of a node requires hashing. When traversing the edges of
+ * a graph, use indexOf(Neighbor) instead: the id is kept in the neighbor, and
+ * only checked on the next lookups.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class NodeRegistry<T> implements Serializable {
+
+    private final ArrayList<Node<T>> nodes;
+    private final HashMap<Node<T>, Integer> ids;
+
+    /**
+     * Create an empty registry.
+     */
+    public NodeRegistry() {
+        this.nodes = new ArrayList<Node<T>>();
+        this.ids = new HashMap<Node<T>, Integer>();
+    }
+
+    /**
+     * Create an empty registry, with given initial capacity.
+     * @param capacity
+     */
+    public NodeRegistry(final int capacity) {
+        this.nodes = new ArrayList<Node<T>>(capacity);
+        this.ids = new HashMap<Node<T>, Integer>(2 * capacity);
+    }
+
+    /**
+     * Register this node (if it is not registered yet).
+     *
+     * @param node
+     * @return the id of the node
+     */
+    public final int register(final Node<T> node) {
+        int id = indexOf(node);
+        if (id != -1) {
+            return id;
+        }
+
+        return add(node);
+    }
+
+    /**
+     * Register a node that is known not to be registered yet.
+     *
+     * @param node
+     * @return the id of the node
+     */
+    final int add(final Node<T> node) {
+        int id = nodes.size();
+        nodes.add(node);
+        ids.put(node, id);
+        return id;
+    }
+
+    /**
+     *
+     * @param node
+     * @return the id of this node, or -1 if the node is not registered
+     */
+    public final int indexOf(final Node node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Id of the node of this neighbor. The id is kept in the neighbor, so the
+     * next lookups only have to check it (a neighbor list is usually only
+     * traversed in the registry of its graph). The node is only hashed if
+     * the kept id is not valid (e.g. after a node was removed).
+     *
+     * @param neighbor
+     * @return the id of the node, or -1 if the node is not registered
+     */
+    public final int indexOf(final Neighbor neighbor) {
+        Node node = neighbor.node;
+        int id = neighbor.registry_id;
+        if (id >= 0 && id < nodes.size()) {
+            Node<T> registered = nodes.get(id);
+            if (registered == node || registered.equals(node)) {
+                return id;
+            }
+        }
+
+        id = indexOf(node);
+        neighbor.registry_id = id;
+        return id;
+    }
+
+    /**
+     *
+     * @param id
+     * @return the node with this id
+     */
+    public final Node<T> get(final int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     *
+     * @return the number of registered nodes
+     */
+    public final int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Remove this node from the registry. The last node of the registry
+     * takes the id of the removed node.
+     *
+     * @param node
+     * @return the id the node had, or -1 if the node was not registered
+     */
+    public final int remove(final Node node) {
+        int id = indexOf(node);
+        if (id == -1) {
+            return -1;
+        }
+
+        Node<T> removed = nodes.get(id);
+        ids.remove(removed);
+
+        int last = nodes.size() - 1;
+        Node<T> moved = nodes.remove(last);
+        if (id != last) {
+            nodes.set(id, moved);
+            ids.put(moved, id);
+        }
+        return id;
+    }
+
+    /**
+     * Remove all nodes.
+     */
+    public final void clear() {
+        nodes.clear();
+        ids.clear();
+    }
+
+    /**
+     *
+     * @return a read-only view of the nodes, ordered by id
+     */
+    public final List<Node<T>> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+}
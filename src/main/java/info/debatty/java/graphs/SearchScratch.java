@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.util.IntArrayList;
+import java.util.Arrays;
+
+/**
+ * Reusable buffers to track the nodes visited by a search, indexed by the
+ * registry id of the nodes.
+ *
+ * Instead of clearing the arrays before each search, each search gets a new
+ * epoch: a node is visited by the current search if its stamp is equal to
+ * the current epoch. Hence starting a search does not depend on the size of
+ * the graph (except when the graph grew, and the arrays must be extended).
+ *
+ * A scratch is not thread-safe: each thread must use its own.
+ *
+ * @author Thibault Debatty
+ */
+class SearchScratch {
+
+    private int[] stamps = new int[0];
+    private double[] similarities = new double[0];
+    private final IntArrayList visited_ids = new IntArrayList();
+    private int epoch = 0;
+
+    /**
+     * Start a new search, over a graph with given number of nodes.
+     *
+     * @param size
+     */
+    final void reset(final int size) {
+        if (stamps.length < size) {
+            int capacity = Math.max(size, stamps.length + stamps.length / 2);
+            stamps = new int[capacity];
+            similarities = new double[capacity];
+        }
+
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Overflow: old stamps could collide with new epochs
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+        visited_ids.clear();
+    }
+
+    /**
+     *
+     * @param id
+     * @return true if this node was visited since the last reset
+     */
+    final boolean contains(final int id) {
+        return stamps[id] == epoch;
+    }
+
+    /**
+     * Mark this node as visited, with given similarity.
+     *
+     * @param id
+     * @param similarity
+     */
+    final void put(final int id, final double similarity) {
+        if (stamps[id] != epoch) {
+            stamps[id] = epoch;
+            visited_ids.add(id);
+        }
+        similarities[id] = similarity;
+    }
+
+    /**
+     *
+     * @param id
+     * @return the similarity of this visited node
+     */
+    final double similarity(final int id) {
+        return similarities[id];
+    }
+
+    /**
+     *
+     * @return the ids of the nodes visited since the last reset
+     */
+    final IntArrayList visitedIds() {
+        return visited_ids;
+    }
+}
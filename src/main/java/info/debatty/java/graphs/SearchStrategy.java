@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Algorithm used to search the approximate k nearest neighbors of a query
+ * in a graph (see Graph.setSearchStrategy and GraphSearcher).
+ *
+ * All strategies share the same budget: a search computes approximately
+ * graph.size() / speedup similarities (or falls back to an exhaustive search
+ * if this is more than the size of the graph), and reports the computed
+ * similarities and restarts in stats.
+ *
+ * A search must not modify the graph, nor keep state between calls: the
+ * same strategy may be used concurrently by multiple threads (each with its
+ * own stats and random generator).
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public interface SearchStrategy<T> extends Serializable {
+
+    /**
+     *
+     * @param graph
+     * @param query
+     * @param k
+     * @param speedup (> 1)
+     * @param stats
+     * @param rand
+     * @return the approximate k nearest neighbors of query
+     */
+    NeighborList search(
+            Graph<T> graph,
+            T query,
+            int k,
+            double speedup,
+            StatisticsContainer stats,
+            Random rand);
+}
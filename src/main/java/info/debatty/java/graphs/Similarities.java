@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Helper methods to compute similarities using a BatchSimilarity or a
+ * BoundedSimilarity when it is available, or the pairwise similarity
+ * otherwise.
+ *
+ * @author Thibault Debatty
+ */
+public final class Similarities {
+
+    private Similarities() {
+    }
+
+    /**
+     * Compute the similarity between value and each of the values:
+     * result[i] = similarity(value, values.get(i)).
+     *
+     * @param <T>
+     * @param similarity
+     * @param value
+     * @param values
+     * @param result array of at least values.size() elements
+     */
+    public static <T> void similarities(
+            final SimilarityInterface<T> similarity,
+            final T value,
+            final List<T> values,
+            final double[] result) {
+
+        if (similarity instanceof BatchSimilarity) {
+            ((BatchSimilarity<T>) similarity).similarities(
+                    value, values, result);
+            return;
+        }
+
+        for (int i = 0; i < values.size(); i++) {
+            result[i] = similarity.similarity(value, values.get(i));
+        }
+    }
+
+    /**
+     * Compute the similarity between value1 and value2, using a
+     * BoundedSimilarity if possible: if the similarity is lower than or equal
+     * to threshold, the result may be any value &lt;= threshold.
+     *
+     * @param <T>
+     * @param similarity
+     * @param value1
+     * @param value2
+     * @param threshold
+     * @return
+     */
+    public static <T> double similarity(
+            final SimilarityInterface<T> similarity,
+            final T value1,
+            final T value2,
+            final double threshold) {
+
+        if (similarity instanceof BoundedSimilarity) {
+            return ((BoundedSimilarity<T>) similarity).similarity(
+                    value1, value2, threshold);
+        }
+        return similarity.similarity(value1, value2);
+    }
+
+    /**
+     *
+     * @param similarity
+     * @return true if this similarity implements BoundedSimilarity
+     */
+    public static boolean isBounded(final SimilarityInterface similarity) {
+        return similarity instanceof BoundedSimilarity;
+    }
+
+    /**
+     *
+     * @param similarity
+     * @return true if this similarity implements BatchSimilarity
+     */
+    public static boolean isBatch(final SimilarityInterface similarity) {
+        return similarity instanceof BatchSimilarity;
+    }
+
+    /**
+     * A read-only view of the values of these nodes (no copy is performed).
+     *
+     * @param <T>
+     * @param nodes
+     * @return
+     */
+    public static <T> List<T> values(final List<Node<T>> nodes) {
+        return new NodeValues<T>(nodes);
+    }
+
+    /**
+     * Read-only view of the values of a list of nodes.
+     */
+    private static class NodeValues<T> extends AbstractList<T>
+            implements RandomAccess {
+
+        private final List<Node<T>> nodes;
+
+        NodeValues(final List<Node<T>> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public T get(final int index) {
+            return nodes.get(index).value;
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+    }
+}
@@ -129,6 +129,20 @@ public class StatisticsContainer implements Serializable {
         remove_similarities += value;
     }
 
+    /**
+     * Add the counters of other to the counters of this container.
+     *
+     * @param other
+     */
+    public final void add(final StatisticsContainer other) {
+        search_similarities += other.search_similarities;
+        search_restarts += other.search_restarts;
+        search_cross_partition_restarts +=
+                other.search_cross_partition_restarts;
+        add_similarities += other.add_similarities;
+        remove_similarities += other.remove_similarities;
+    }
+
     @Override
     public final String toString() {
         return String.format(
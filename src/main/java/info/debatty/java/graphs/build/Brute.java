@@ -1,9 +1,9 @@
 package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.Graph;
-import info.debatty.java.graphs.Neighbor;
-import info.debatty.java.graphs.NeighborList;
+import info.debatty.java.graphs.IntNeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.Similarities;
 import java.util.HashMap;
 import java.util.List;
 
@@ -20,31 +20,54 @@ public class Brute<T> extends GraphBuilder<T> {
         int n = nodes.size();
 
         // Initialize all NeighborLists
-        Graph<T> graph = new Graph<T>();
-        for (Node node : nodes) {
-            graph.put(node, new NeighborList(k));
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int i = 0; i < n; i++) {
+            neighborlists[i] = new IntNeighborList(k);
         }
 
         computed_similarities = 0;
         double sim;
-        Node n1;
-        Node n2;
+        T value;
         HashMap<String, Object> callback_data = new HashMap<String, Object>();
+        List<T> values = Similarities.values(nodes);
+        double[] similarities = new double[n];
+
+        boolean bounded = Similarities.isBounded(similarity);
 
         for (int i = 0; i < n; i++) {
 
-            n1 = nodes.get(i);
-            for (int j = 0; j < i; j++) {
-                n2 = nodes.get(j);
-                sim = similarity.similarity((T) n1.value, (T) n2.value);
-                computed_similarities++;
+            // Similarities between node i and nodes 0 .. i - 1
+            value = nodes.get(i).value;
+            if (bounded) {
+                // A pair is only useful if it beats the k-th neighbor of
+                // node i or node j
+                for (int j = 0; j < i; j++) {
+                    sim = Similarities.similarity(
+                            similarity,
+                            value,
+                            values.get(j),
+                            Math.min(
+                                    neighborlists[i].threshold(),
+                                    neighborlists[j].threshold()));
+                    neighborlists[i].offer(j, sim);
+                    neighborlists[j].offer(i, sim);
+                }
+                computed_similarities += i;
+
+            } else {
+                Similarities.similarities(
+                        similarity, value, values.subList(0, i), similarities);
+                computed_similarities += i;
 
-                graph.get(n1).add(new Neighbor(n2, sim));
-                graph.get(n2).add(new Neighbor(n1, sim));
+                for (int j = 0; j < i; j++) {
+                    sim = similarities[j];
+                    neighborlists[i].offer(j, sim);
+                    neighborlists[j].offer(i, sim);
+                }
             }
 
             if (callback != null) {
-                callback_data.put("node_id", n1.id);
+                callback_data.put("node_id", nodes.get(i).id);
                 callback_data.put(
                         "computed_similarities",
                         computed_similarities);
@@ -53,6 +76,6 @@ public class Brute<T> extends GraphBuilder<T> {
             }
         }
 
-        return graph;
+        return toGraph(nodes, neighborlists);
     }
 }
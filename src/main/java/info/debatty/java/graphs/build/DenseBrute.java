@@ -0,0 +1,385 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import info.debatty.java.graphs.similarity.DenseMetric;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exact (brute-force) multi-threaded graph builder for dense float[] vectors.
+ *
+ * The vectors are first packed in a single contiguous row-major float[], and
+ * their norms are precomputed. Like {@link ThreadedBrute}, the triangular
+ * similarity matrix is then split in square blocks, processed by a thread
+ * pool. Inside a block, dot products are computed for tiles of 4 x 2
+ * vectors at once (like a GEMM kernel), so each value loaded from memory is
+ * used several times. The dot products are converted to similarities by the
+ * {@link DenseMetric} and fed to the top-k of each row.
+ *
+ * The similarity must be a {@link DenseMetric} (default: cosine).
+ *
+ * @author Thibault Debatty
+ */
+public class DenseBrute extends GraphBuilder<float[]> {
+
+    /**
+     * Default number of vectors per block. For vectors of a few hundred
+     * dimensions, two blocks fit in the L2 cache.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private int block_size = DEFAULT_BLOCK_SIZE;
+
+    /**
+     * Create a builder using the cosine similarity.
+     */
+    public DenseBrute() {
+        similarity = DenseMetric.COSINE;
+    }
+
+    public int getBlockSize() {
+        return block_size;
+    }
+
+    /**
+     * Set the number of vectors per block. Default = 256.
+     *
+     * @param block_size
+     */
+    public void setBlockSize(final int block_size) {
+        if (block_size <= 0) {
+            throw new IllegalArgumentException("block_size must be > 0");
+        }
+        this.block_size = block_size;
+    }
+
+    @Override
+    protected final Graph<float[]> _computeGraph(
+            final List<Node<float[]>> nodes) {
+
+        if (!(similarity instanceof DenseMetric)) {
+            throw new IllegalArgumentException(
+                    "DenseBrute requires a DenseMetric similarity");
+        }
+        DenseMetric metric = (DenseMetric) similarity;
+
+        int n = nodes.size();
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int i = 0; i < n; i++) {
+            neighborlists[i] = new IntNeighborList(k);
+        }
+        if (n == 0) {
+            return toGraph(nodes, neighborlists);
+        }
+
+        DenseMatrix matrix = new DenseMatrix(nodes);
+
+        // Off-diagonal blocks first, then diagonal blocks (half the work)
+        ArrayList<Callable<Integer>> blocks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < n; i += block_size) {
+            for (int j = 0; j < i; j += block_size) {
+                blocks.add(new DenseBlock(
+                        matrix, neighborlists, k, metric, i, j, block_size));
+            }
+        }
+        for (int i = 0; i < n; i += block_size) {
+            blocks.add(new DenseBlock(
+                    matrix, neighborlists, k, metric, i, i, block_size));
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(cores);
+        try {
+            for (Future<Integer> future : executor.invokeAll(blocks)) {
+                computed_similarities += future.get();
+            }
+
+        } catch (InterruptedException ex) {
+            Logger.getLogger(DenseBrute.class.getName()).log(Level.SEVERE, null, ex);
+
+        } catch (ExecutionException ex) {
+            Logger.getLogger(DenseBrute.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        executor.shutdown();
+
+        return toGraph(nodes, neighborlists);
+    }
+
+    /**
+     * The similarity must be a {@link DenseMetric}.
+     *
+     * @param similarity
+     */
+    @Override
+    public void setSimilarity(final SimilarityInterface<float[]> similarity) {
+        if (!(similarity instanceof DenseMetric)) {
+            throw new IllegalArgumentException(
+                    "DenseBrute requires a DenseMetric similarity");
+        }
+        super.setSimilarity(similarity);
+    }
+}
+
+/**
+ * The vectors, packed in a row-major float[], with their norms.
+ */
+class DenseMatrix {
+
+    /**
+     * Maximum number of values in the packed array (some JVMs reserve a few
+     * header words in arrays).
+     */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    final float[] data;
+    final double[] norms;
+    final int rows;
+    final int dim;
+
+    DenseMatrix(final List<Node<float[]>> nodes) {
+        rows = nodes.size();
+        dim = nodes.get(0).value.length;
+
+        // Checked once, so row offsets (i * dim) never overflow
+        long size = (long) rows * dim;
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException(
+                    "Too many values to pack in a single array: " + rows
+                    + " vectors of dimension " + dim + " (" + size
+                    + " > " + MAX_SIZE + "). Use Brute or ThreadedBrute.");
+        }
+        data = new float[(int) size];
+        norms = new double[rows];
+
+        for (int i = 0; i < rows; i++) {
+            float[] value = nodes.get(i).value;
+            if (value.length != dim) {
+                throw new IllegalArgumentException(
+                        "All vectors must have the same dimension");
+            }
+            System.arraycopy(value, 0, data, i * dim, dim);
+
+            double norm = 0;
+            for (int d = 0; d < dim; d++) {
+                norm += (double) value[d] * value[d];
+            }
+            norms[i] = Math.sqrt(norm);
+        }
+    }
+
+    /**
+     * Dot products between rows i .. i+3 and rows j, j+1.
+     *
+     * @param i
+     * @param j
+     * @param tile receives the 8 dot products, row by row
+     */
+    void dot4x2(final int i, final int j, final double[] tile) {
+        int i0 = i * dim;
+        int i1 = i0 + dim;
+        int i2 = i1 + dim;
+        int i3 = i2 + dim;
+        int j0 = j * dim;
+        int j1 = j0 + dim;
+
+        double s00 = 0, s01 = 0, s10 = 0, s11 = 0;
+        double s20 = 0, s21 = 0, s30 = 0, s31 = 0;
+        for (int d = 0; d < dim; d++) {
+            double b0 = data[j0 + d];
+            double b1 = data[j1 + d];
+            double a = data[i0 + d];
+            s00 += a * b0;
+            s01 += a * b1;
+            a = data[i1 + d];
+            s10 += a * b0;
+            s11 += a * b1;
+            a = data[i2 + d];
+            s20 += a * b0;
+            s21 += a * b1;
+            a = data[i3 + d];
+            s30 += a * b0;
+            s31 += a * b1;
+        }
+        tile[0] = s00;
+        tile[1] = s01;
+        tile[2] = s10;
+        tile[3] = s11;
+        tile[4] = s20;
+        tile[5] = s21;
+        tile[6] = s30;
+        tile[7] = s31;
+    }
+
+    /**
+     * Dot product between rows i and j.
+     *
+     * @param i
+     * @param j
+     * @return
+     */
+    double dot(final int i, final int j) {
+        int offset_i = i * dim;
+        int offset_j = j * dim;
+        double s = 0;
+        for (int d = 0; d < dim; d++) {
+            s += (double) data[offset_i + d] * data[offset_j + d];
+        }
+        return s;
+    }
+}
+
+/**
+ * Computes the similarities between the vectors of block i and block j,
+ * and merges the results in the shared neighborlists.
+ */
+class DenseBlock implements Callable<Integer> {
+
+    private static final int TILE_ROWS = 4;
+    private static final int TILE_COLS = 2;
+
+    private final DenseMatrix matrix;
+    private final IntNeighborList[] neighborlists;
+    private final int k;
+    private final DenseMetric metric;
+    private final int i_start;
+    private final int j_start;
+    private final int size;
+
+    DenseBlock(
+            final DenseMatrix matrix,
+            final IntNeighborList[] neighborlists,
+            final int k,
+            final DenseMetric metric,
+            final int i_start,
+            final int j_start,
+            final int size) {
+
+        this.matrix = matrix;
+        this.neighborlists = neighborlists;
+        this.k = k;
+        this.metric = metric;
+        this.i_start = i_start;
+        this.j_start = j_start;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of computed similarities
+     */
+    public Integer call() {
+        int n = matrix.rows;
+        int i_end = Math.min(i_start + size, n);
+        int j_end = Math.min(j_start + size, n);
+        boolean diagonal = i_start == j_start;
+
+        IntNeighborList[] i_neighborlists = new IntNeighborList[i_end - i_start];
+        for (int i = 0; i < i_neighborlists.length; i++) {
+            i_neighborlists[i] = new IntNeighborList(k);
+        }
+
+        IntNeighborList[] j_neighborlists = i_neighborlists;
+        if (!diagonal) {
+            j_neighborlists = new IntNeighborList[j_end - j_start];
+            for (int j = 0; j < j_neighborlists.length; j++) {
+                j_neighborlists[j] = new IntNeighborList(k);
+            }
+        }
+
+        double[] norms = matrix.norms;
+        double[] tile = new double[TILE_ROWS * TILE_COLS];
+        int computed_similarities = 0;
+
+        for (int i = i_start; i < i_end; i += TILE_ROWS) {
+            int rows = Math.min(TILE_ROWS, i_end - i);
+
+            // On the diagonal, only compare to the vectors before row i
+            int last = j_end;
+            if (diagonal) {
+                last = Math.min(j_end, i + rows - 1);
+            }
+
+            for (int j = j_start; j < last; j += TILE_COLS) {
+                int cols = Math.min(TILE_COLS, last - j);
+
+                if (rows == TILE_ROWS && cols == TILE_COLS) {
+                    matrix.dot4x2(i, j, tile);
+                } else {
+                    for (int r = 0; r < rows; r++) {
+                        for (int c = 0; c < cols; c++) {
+                            tile[r * TILE_COLS + c] = matrix.dot(i + r, j + c);
+                        }
+                    }
+                }
+
+                for (int r = 0; r < rows; r++) {
+                    int row = i + r;
+                    IntNeighborList nl = i_neighborlists[row - i_start];
+                    for (int c = 0; c < cols; c++) {
+                        int col = j + c;
+                        if (diagonal && col >= row) {
+                            break;
+                        }
+                        double sim = metric.fromDot(
+                                tile[r * TILE_COLS + c],
+                                norms[row],
+                                norms[col]);
+                        nl.offer(col, sim);
+                        j_neighborlists[col - j_start].offer(row, sim);
+                        computed_similarities++;
+                    }
+                }
+            }
+        }
+
+        merge(i_neighborlists, i_start);
+        if (j_neighborlists != i_neighborlists) {
+            merge(j_neighborlists, j_start);
+        }
+
+        return computed_similarities;
+    }
+
+    private void merge(
+            final IntNeighborList[] block_neighborlists, final int start) {
+
+        for (int i = 0; i < block_neighborlists.length; i++) {
+            IntNeighborList nl = neighborlists[start + i];
+            synchronized (nl) {
+                nl.addAll(block_neighborlists[i]);
+            }
+        }
+    }
+}
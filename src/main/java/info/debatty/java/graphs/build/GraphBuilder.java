@@ -2,7 +2,11 @@ package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.CallbackInterface;
 import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Neighbor;
+import info.debatty.java.graphs.NeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.Similarities;
 import info.debatty.java.graphs.SimilarityInterface;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -11,6 +15,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,6 +31,9 @@ public abstract class GraphBuilder<T> implements Cloneable, Serializable {
     protected SimilarityInterface<T> similarity;
     protected CallbackInterface callback = null;
     protected int computed_similarities = 0;
+    protected SimilarityInterface<T> filter_similarity = null;
+    protected int candidates_multiplier = 4;
+    protected int computed_filter_similarities = 0;
 
     public int getK() {
         return k;
@@ -59,22 +67,162 @@ public abstract class GraphBuilder<T> implements Cloneable, Serializable {
         this.callback = callback;
     }
 
+    /**
+     * Get the number of similarities computed during the last build. When
+     * a filter similarity is used, this is the number of (expensive)
+     * similarities computed to rerank the candidates.
+     *
+     * @return
+     */
     public int getComputedSimilarities() {
         return computed_similarities;
     }
 
+    /**
+     * Get the number of filter similarities computed during the last build.
+     *
+     * @return
+     */
+    public int getComputedFilterSimilarities() {
+        return computed_filter_similarities;
+    }
+
+    public SimilarityInterface<T> getFilterSimilarity() {
+        return filter_similarity;
+    }
+
+    /**
+     * Set a cheap similarity (for example MinHash or a low dimensional
+     * projection) used to build the graph with candidates_multiplier * k
+     * candidates per node. The candidates are then reranked with the
+     * (expensive) similarity, to keep the k best. Default is null: the graph
+     * is built with the similarity only.
+     *
+     * @param filter_similarity
+     */
+    public void setFilterSimilarity(SimilarityInterface<T> filter_similarity) {
+        this.filter_similarity = filter_similarity;
+    }
+
+    public int getCandidatesMultiplier() {
+        return candidates_multiplier;
+    }
+
+    /**
+     * Number of candidates per node (as a multiple of k) kept using the
+     * filter similarity. Default is 4.
+     *
+     * @param candidates_multiplier
+     */
+    public void setCandidatesMultiplier(int candidates_multiplier) {
+        if (candidates_multiplier < 1) {
+            throw new InvalidParameterException(
+                    "candidates_multiplier must be >= 1");
+        }
+        this.candidates_multiplier = candidates_multiplier;
+    }
+
     public Graph<T> computeGraph(List<Node<T>> nodes) {
 
         if (similarity == null) {
             throw new InvalidParameterException("Similarity is not defined");
         }
         computed_similarities = 0;
-        Graph<T> graph = _computeGraph(nodes);
+        computed_filter_similarities = 0;
+
+        Graph<T> graph;
+        if (filter_similarity == null) {
+            graph = _computeGraph(nodes);
+        } else {
+            graph = computeFilteredGraph(nodes);
+        }
         graph.setK(k);
         graph.setSimilarity(similarity);
         return graph;
     }
 
+    /**
+     * Build the graph of candidates using the filter similarity, then
+     * rerank the candidates of each node using the similarity.
+     *
+     * The candidates are built by a copy of this builder, configured with
+     * the filter similarity, so this builder is never modified. The callback
+     * receives the data of the filter pass with a "phase" key set to
+     * "filter", and the number of similarities reported as
+     * computed_filter_similarities.
+     *
+     * @param nodes
+     * @return
+     */
+    private Graph<T> computeFilteredGraph(List<Node<T>> nodes) {
+        GraphBuilder<T> filter_builder = copy();
+        filter_builder.similarity = filter_similarity;
+        filter_builder.filter_similarity = null;
+        filter_builder.k = k * candidates_multiplier;
+        if (callback != null) {
+            filter_builder.callback = new FilterCallback(callback);
+        }
+
+        Graph<T> candidates = filter_builder._computeGraph(nodes);
+        computed_filter_similarities = filter_builder.computed_similarities;
+
+        Graph<T> graph = new Graph<T>(k);
+        ArrayList<Node<T>> candidate_nodes = new ArrayList<Node<T>>();
+        double[] similarities = new double[0];
+        for (Node<T> node : nodes) {
+            candidate_nodes.clear();
+            for (Neighbor neighbor : candidates.get(node)) {
+                candidate_nodes.add(neighbor.node);
+            }
+            if (similarities.length < candidate_nodes.size()) {
+                similarities = new double[candidate_nodes.size()];
+            }
+
+            Similarities.similarities(
+                    similarity,
+                    node.value,
+                    Similarities.values(candidate_nodes),
+                    similarities);
+            computed_similarities += candidate_nodes.size();
+
+            NeighborList nl = new NeighborList(k);
+            for (int i = 0; i < candidate_nodes.size(); i++) {
+                nl.add(candidate_nodes.get(i), similarities[i]);
+            }
+            graph.put(node, nl);
+        }
+        return graph;
+    }
+
+    /**
+     * Forwards the callbacks of the filter pass, with the number of
+     * similarities reported as computed_filter_similarities.
+     */
+    private static class FilterCallback implements CallbackInterface {
+
+        private final CallbackInterface callback;
+
+        FilterCallback(final CallbackInterface callback) {
+            this.callback = callback;
+        }
+
+        public void call(final HashMap<String, Object> data) {
+            HashMap<String, Object> filter_data =
+                    new HashMap<String, Object>(data);
+            filter_data.put("phase", "filter");
+
+            // Keys used by the different builders
+            for (String key : new String[] {
+                "computed_similarities", "computed-similarities"}) {
+                Object computed = filter_data.remove(key);
+                if (computed != null) {
+                    filter_data.put("computed_filter_similarities", computed);
+                }
+            }
+            callback.call(filter_data);
+        }
+    }
+
     /**
      * Build the approximate graph, then use brute-force to build the exact
      * graph and compare the results
@@ -143,5 +291,40 @@ public abstract class GraphBuilder<T> implements Cloneable, Serializable {
         return super.clone();
     }
 
+    /**
+     * Shallow copy of this builder (see clone()), used to build with other
+     * parameters without modifying this builder.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    final GraphBuilder<T> copy() {
+        try {
+            return (GraphBuilder<T>) clone();
+        } catch (CloneNotSupportedException ex) {
+            // GraphBuilder implements Cloneable
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Build the graph corresponding to these neighborlists. The ids used in
+     * the neighborlists are the positions of the nodes in the list.
+     *
+     * @param nodes
+     * @param neighborlists
+     * @return
+     */
+    protected final Graph<T> toGraph(
+            final List<Node<T>> nodes,
+            final IntNeighborList[] neighborlists) {
+
+        Graph<T> graph = new Graph<T>(k);
+        for (int i = 0; i < nodes.size(); i++) {
+            graph.put(nodes.get(i), neighborlists[i].toNeighborList(nodes));
+        }
+        return graph;
+    }
+
     protected abstract Graph<T> _computeGraph(List<Node<T>> nodes);
 }
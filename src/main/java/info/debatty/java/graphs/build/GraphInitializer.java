@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Computes a first approximation of the k-nn graph, used as a starting point
+ * by iterative algorithms like NNDescent.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public interface GraphInitializer<T> extends Serializable {
+
+    /**
+     * Offer some candidate neighbors to each node. Nodes are identified by
+     * their position in the list. The neighborlists are empty when this
+     * method is called, and do not have to be full when it returns (the
+     * builder completes them with random neighbors).
+     *
+     * @param nodes
+     * @param similarity
+     * @param neighborlists
+     * @return the number of computed similarities
+     */
+    int initialize(
+            List<Node<T>> nodes,
+            SimilarityInterface<T> similarity,
+            IntNeighborList[] neighborlists);
+}
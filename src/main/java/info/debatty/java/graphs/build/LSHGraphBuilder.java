@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Node;
+import info.debatty.java.util.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the k-nn graph by partitioning the dataset using Locality Sensitive
+ * Hashing with banding, for any type of values: MinHash for sets (of tokens
+ * or shingles), SimHash (random hyperplanes) for vectors, or any other
+ * {@link SignatureFunction}.
+ *
+ * The signature of each value is split in oversampling bands of consecutive
+ * elements. For each band, the value is put in one of n_partitions buckets,
+ * according to the hash of the band. Hence each node belongs to oversampling
+ * (overlapping) buckets, and similar nodes are likely to share at least one
+ * bucket. The graph is then built inside each bucket, using the internal
+ * builder.
+ *
+ * Oversized buckets are split in chunks of max_partition_size nodes
+ * (default 1000 for this builder), which bounds the cost of each bucket.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class LSHGraphBuilder<T> extends PartitioningGraphBuilder<T> {
+
+    private SignatureFunction<T> signature_function;
+
+    /**
+     * Default: 8 bands, 1000 buckets per band, and at most 1000 nodes per
+     * bucket.
+     */
+    public LSHGraphBuilder() {
+        oversampling = 8;
+        n_partitions = 1000;
+        max_partition_size = 1000;
+    }
+
+    public SignatureFunction<T> getSignatureFunction() {
+        return signature_function;
+    }
+
+    /**
+     * Set the signature function. The length of the signatures should be a
+     * multiple of the number of bands (oversampling): longer bands produce
+     * buckets of more similar nodes.
+     *
+     * @param signature_function
+     */
+    public void setSignatureFunction(
+            final SignatureFunction<T> signature_function) {
+        this.signature_function = signature_function;
+    }
+
+    @Override
+    protected final List<Node<T>>[] _partition(final List<Node<T>> nodes) {
+
+        if (signature_function == null) {
+            throw new IllegalStateException(
+                    "Signature function is not defined");
+        }
+
+        int[][] signatures = signatures(nodes);
+
+        // Buckets contain the index of the nodes
+        // Bucket of band b is in [b * n_partitions, (b + 1) * n_partitions[
+        IntArrayList[] buckets = new IntArrayList[oversampling * n_partitions];
+
+        for (int i = 0; i < nodes.size(); i++) {
+            int[] signature = signatures[i];
+            int rows = signature.length / oversampling;
+            if (rows == 0) {
+                throw new IllegalStateException(
+                        "Signatures are shorter than the number of bands");
+            }
+
+            for (int band = 0; band < oversampling; band++) {
+                int bucket = band * n_partitions
+                        + hashBand(signature, band, rows) % n_partitions;
+
+                if (buckets[bucket] == null) {
+                    buckets[bucket] = new IntArrayList();
+                }
+                buckets[bucket].add(i);
+            }
+        }
+
+        List<Node<T>>[] partitioning = toPartitions(nodes, buckets);
+        report(partitioning);
+        return partitioning;
+    }
+
+    /**
+     *
+     * @return a positive hash of the rows of this band
+     */
+    private static int hashBand(
+            final int[] signature, final int band, final int rows) {
+
+        int hash = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            hash = 31 * hash + signature[i];
+        }
+
+        // Spread the bits (finalizer of MurmurHash3)
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Compute the signature of all values, in parallel.
+     *
+     * @param nodes
+     * @return
+     */
+    private int[][] signatures(final List<Node<T>> nodes) {
+        final int[][] signatures = new int[nodes.size()][];
+        final int threads = Runtime.getRuntime().availableProcessors();
+
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < threads; t++) {
+            final int start = (int) ((long) t * nodes.size() / threads);
+            final int end = (int) ((long) (t + 1) * nodes.size() / threads);
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    for (int i = start; i < end; i++) {
+                        signatures[i] = signature_function.signature(
+                                nodes.get(i).value);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService pool = executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        try {
+            for (Future<Object> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(LSHGraphBuilder.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } catch (ExecutionException ex) {
+            Logger.getLogger(LSHGraphBuilder.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } finally {
+            if (executor == null) {
+                pool.shutdown();
+            }
+        }
+
+        return signatures;
+    }
+
+    @Override
+    public double estimatedSpeedup() {
+        return (double) n_partitions / oversampling;
+    }
+}
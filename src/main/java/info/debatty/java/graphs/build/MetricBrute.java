@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.MetricSimilarity;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Exact graph builder for similarities derived from a metric distance (see
+ * {@link MetricSimilarity}), that uses the triangle inequality to skip most
+ * pairs.
+ *
+ * A set of pivots is selected (farthest-first), and the distance between
+ * each node and each pivot is stored in a table. For any pair (i, j),
+ * max_p |d(i, p) - d(j, p)| is a lower bound of d(i, j). The nodes are
+ * sorted by distance to the first pivot, and each node i scans the other
+ * nodes by increasing lower bound, until the bound cannot beat the k-th
+ * neighbor of i. Pairs whose lower bound cannot beat the k-th neighbor of
+ * i nor the k-th neighbor of j are skipped.
+ *
+ * The result is the same as Brute (up to ties), and
+ * getComputedSimilarities() (which includes the distances to the pivots)
+ * gives the actual cost of the build, to be compared to n(n-1)/2.
+ *
+ * @author Thibault Debatty
+ * @param <T>
+ */
+public class MetricBrute<T> extends GraphBuilder<T> {
+
+    /**
+     * Default number of pivots.
+     */
+    public static final int DEFAULT_PIVOTS = 8;
+
+    private int pivots = DEFAULT_PIVOTS;
+
+    public int getPivots() {
+        return pivots;
+    }
+
+    /**
+     * Set the number of pivots. More pivots give tighter bounds, but each
+     * pivot costs n distance computations. Default = 8.
+     *
+     * @param pivots
+     */
+    public void setPivots(final int pivots) {
+        if (pivots <= 0) {
+            throw new IllegalArgumentException("pivots must be > 0");
+        }
+        this.pivots = pivots;
+    }
+
+    /**
+     * The similarity must be a {@link MetricSimilarity}.
+     *
+     * @param similarity
+     */
+    @Override
+    public void setSimilarity(final SimilarityInterface<T> similarity) {
+        if (!(similarity instanceof MetricSimilarity)) {
+            throw new IllegalArgumentException(
+                    "MetricBrute requires a MetricSimilarity");
+        }
+        super.setSimilarity(similarity);
+    }
+
+    @Override
+    protected final Graph<T> _computeGraph(final List<Node<T>> nodes) {
+
+        if (!(similarity instanceof MetricSimilarity)) {
+            throw new IllegalArgumentException(
+                    "MetricBrute requires a MetricSimilarity");
+        }
+        MetricSimilarity<T> metric = (MetricSimilarity<T>) similarity;
+
+        int n = nodes.size();
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int i = 0; i < n; i++) {
+            neighborlists[i] = new IntNeighborList(k);
+        }
+        if (n == 0) {
+            return toGraph(nodes, neighborlists);
+        }
+
+        int p = Math.min(pivots, n);
+        double[] table = PivotTable(nodes, metric, p);
+
+        // Sort the nodes by distance to the first pivot
+        final double[] keys = new double[n];
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = table[i * p];
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+
+            public int compare(final Integer i1, final Integer i2) {
+                return Double.compare(keys[i1], keys[i2]);
+            }
+        });
+        int[] order = new int[n];
+        for (int r = 0; r < n; r++) {
+            order[r] = sorted[r];
+        }
+
+        // Positions [first[i], last[i]] (in sorted order) that were handled
+        // by the scan of node i: the pairs were either computed, or cannot
+        // beat the k-th neighbor of both nodes
+        int[] first = new int[n];
+        int[] last = new int[n];
+        boolean[] scanned = new boolean[n];
+        HashMap<String, Object> callback_data = new HashMap<String, Object>();
+
+        for (int r = 0; r < n; r++) {
+            int i = order[r];
+            T value = nodes.get(i).value;
+            IntNeighborList nl = neighborlists[i];
+            double key = keys[i];
+            int left = r - 1;
+            int right = r + 1;
+
+            while (left >= 0 || right < n) {
+                // Next position, by increasing distance to the first pivot
+                double left_bound = Double.POSITIVE_INFINITY;
+                double right_bound = Double.POSITIVE_INFINITY;
+                if (left >= 0) {
+                    left_bound = key - keys[order[left]];
+                }
+                if (right < n) {
+                    right_bound = keys[order[right]] - key;
+                }
+
+                double bound = Math.min(left_bound, right_bound);
+                if (metric.toSimilarity(bound) <= nl.threshold()) {
+                    // Remaining nodes cannot beat the k-th neighbor of i
+                    break;
+                }
+
+                int j;
+                if (left_bound <= right_bound) {
+                    j = order[left];
+                    left--;
+                } else {
+                    j = order[right];
+                    right++;
+                }
+
+                if (scanned[j] && first[j] <= r && r <= last[j]) {
+                    // Already handled by the scan of j
+                    continue;
+                }
+
+                double max_similarity = metric.toSimilarity(
+                        LowerBound(table, i, j, p));
+                if (max_similarity <= nl.threshold()
+                        && max_similarity <= neighborlists[j].threshold()) {
+                    continue;
+                }
+
+                double sim = metric.toSimilarity(
+                        metric.distance(value, nodes.get(j).value));
+                computed_similarities++;
+                nl.offer(j, sim);
+                neighborlists[j].offer(i, sim);
+            }
+
+            first[i] = left + 1;
+            last[i] = right - 1;
+            scanned[i] = true;
+
+            if (callback != null) {
+                callback_data.put("node_id", nodes.get(i).id);
+                callback_data.put(
+                        "computed_similarities",
+                        computed_similarities);
+                callback.call(callback_data);
+            }
+        }
+
+        return toGraph(nodes, neighborlists);
+    }
+
+    /**
+     * Select p pivots (farthest-first: each pivot is the node that is the
+     * farthest from the previous pivots), and compute the distance between
+     * each node and each pivot.
+     *
+     * @param nodes
+     * @param metric
+     * @param p number of pivots
+     * @return the distances, as a row-major n x p table
+     */
+    private double[] PivotTable(
+            final List<Node<T>> nodes,
+            final MetricSimilarity<T> metric,
+            final int p) {
+
+        int n = nodes.size();
+        double[] table = new double[n * p];
+        double[] min_distances = new double[n];
+        Arrays.fill(min_distances, Double.POSITIVE_INFINITY);
+
+        int pivot = new Random().nextInt(n);
+        for (int q = 0; q < p; q++) {
+            T pivot_value = nodes.get(pivot).value;
+            int farthest = pivot;
+            double farthest_distance = -1;
+
+            for (int i = 0; i < n; i++) {
+                double distance = 0;
+                if (i != pivot) {
+                    distance = metric.distance(nodes.get(i).value, pivot_value);
+                    computed_similarities++;
+                }
+                table[i * p + q] = distance;
+
+                min_distances[i] = Math.min(min_distances[i], distance);
+                if (min_distances[i] > farthest_distance) {
+                    farthest_distance = min_distances[i];
+                    farthest = i;
+                }
+            }
+            pivot = farthest;
+        }
+        return table;
+    }
+
+    /**
+     *
+     * @return max_q |d(i, q) - d(j, q)| (a lower bound of d(i, j))
+     */
+    private static double LowerBound(
+            final double[] table, final int i, final int j, final int p) {
+
+        int offset_i = i * p;
+        int offset_j = j * p;
+        double bound = 0;
+        for (int q = 0; q < p; q++) {
+            double delta = Math.abs(table[offset_i + q] - table[offset_j + q]);
+            if (delta > bound) {
+                bound = delta;
+            }
+        }
+        return bound;
+    }
+}
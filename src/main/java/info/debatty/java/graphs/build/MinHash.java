@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * MinHash signature of a set (of tokens, shingles, ...). For each of the
+ * hash functions h_i(x) = (a_i * x + b_i) mod p, the signature contains the
+ * minimum over the elements of the set. The probability that two sets have
+ * the same signature element is their Jaccard similarity.
+ *
+ * Elements are identified by their hashCode().
+ *
+ * @author Thibault Debatty
+ * @param <E> The type of elements in the sets
+ */
+public class MinHash<E> implements SignatureFunction<Set<E>> {
+
+    // Mersenne prime 2^31 - 1
+    private static final long PRIME = 2147483647L;
+
+    private final long[] a;
+    private final long[] b;
+
+    /**
+     *
+     * @param size number of hash functions (length of the signatures)
+     * @param seed
+     */
+    public MinHash(final int size, final long seed) {
+        Random rand = new Random(seed);
+        a = new long[size];
+        b = new long[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = 1 + rand.nextInt((int) PRIME - 1);
+            b[i] = rand.nextInt((int) PRIME);
+        }
+    }
+
+    /**
+     *
+     * @param size number of hash functions (length of the signatures)
+     */
+    public MinHash(final int size) {
+        this(size, System.nanoTime());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final int[] signature(final Set<E> value) {
+        int[] signature = new int[a.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        for (E element : value) {
+            long x = element.hashCode() & 0xFFFFFFFFL;
+            for (int i = 0; i < a.length; i++) {
+                int h = (int) ((a[i] * x + b[i]) % PRIME);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+}
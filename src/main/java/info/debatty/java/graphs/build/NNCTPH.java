@@ -25,13 +25,27 @@ package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.Node;
 import info.debatty.java.spamsum.ESSum;
+import info.debatty.java.util.IntArrayList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Builds the k-nn graph by partitioning the graph using Context Triggered
  * Piecewize Hashing. This graph builder is meant for string node values.
  *
+ * The strings are hashed in parallel (ESSum is not thread-safe, hence each
+ * thread uses its own instance). If max_partition_size is defined, oversized
+ * buckets are split according to the complete signature of the strings, so
+ * similar strings remain in the same sub-bucket.
+ *
  * @author Thibault Debatty
  */
 public class NNCTPH extends PartitioningGraphBuilder<String> {
@@ -39,27 +53,146 @@ public class NNCTPH extends PartitioningGraphBuilder<String> {
     @Override
     protected final List<Node<String>>[] _partition(
             final List<Node<String>> nodes) {
-        ESSum ess = new ESSum(oversampling, n_partitions, 1);
 
-        ArrayList<Node<String>>[] buckets = new ArrayList[n_partitions];
+        int[][] hashes = hash(nodes);
+
+        // Buckets contain the index of the nodes
+        IntArrayList[] buckets = new IntArrayList[n_partitions];
 
-        for (Node<String> node : nodes) {
-            int[] hash = ess.HashString(node.value);
+        for (int i = 0; i < nodes.size(); i++) {
+            int[] hash = hashes[i];
 
             for (int stage = 0; stage < oversampling; stage++) {
                 int partition = hash[stage];
 
                 if (buckets[partition] == null) {
-                    buckets[partition] = new ArrayList<Node<String>>();
+                    buckets[partition] = new IntArrayList();
                 }
 
-                // !! this is not efficient !!!!
-                if (!buckets[partition].contains(node)) {
-                    buckets[partition].add(node);
+                // The node is already in this bucket if the same partition
+                // was found at a previous stage
+                if (!contains(hash, stage, partition)) {
+                    buckets[partition].add(i);
                 }
             }
         }
 
-        return buckets;
+        List<Node<String>>[] partitioning = toPartitions(
+                nodes, split(hashes, buckets));
+        report(partitioning);
+        return partitioning;
+    }
+
+    /**
+     * Compute the ESSum signature of all strings, in parallel.
+     *
+     * @param nodes
+     * @return
+     */
+    private int[][] hash(final List<Node<String>> nodes) {
+        final int[][] hashes = new int[nodes.size()][];
+        final int threads = Runtime.getRuntime().availableProcessors();
+
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < threads; t++) {
+            final int start = (int) ((long) t * nodes.size() / threads);
+            final int end = (int) ((long) (t + 1) * nodes.size() / threads);
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    ESSum ess = new ESSum(oversampling, n_partitions, 1);
+                    for (int i = start; i < end; i++) {
+                        hashes[i] = ess.HashString(nodes.get(i).value);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService pool = executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        try {
+            for (Future<Object> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(NNCTPH.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } catch (ExecutionException ex) {
+            Logger.getLogger(NNCTPH.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } finally {
+            if (executor == null) {
+                pool.shutdown();
+            }
+        }
+
+        return hashes;
+    }
+
+    /**
+     * Split the buckets that contain more than max_partition_size nodes,
+     * using the complete signature of each node: nodes with the same
+     * signature are kept in the same sub-bucket.
+     *
+     * @param hashes
+     * @param buckets
+     * @return
+     */
+    private IntArrayList[] split(
+            final int[][] hashes,
+            final IntArrayList[] buckets) {
+
+        if (max_partition_size <= 0) {
+            return buckets;
+        }
+
+        ArrayList<IntArrayList> partitions = new ArrayList<IntArrayList>();
+        for (IntArrayList bucket : buckets) {
+            if (bucket == null || bucket.size() <= max_partition_size) {
+                partitions.add(bucket);
+                continue;
+            }
+
+            int count = 2 * (bucket.size() / max_partition_size + 1);
+            IntArrayList[] sub_buckets = new IntArrayList[count];
+            for (int i = 0; i < bucket.size(); i++) {
+                int node = bucket.get(i);
+                int sub_bucket = (Arrays.hashCode(hashes[node])
+                        & Integer.MAX_VALUE) % count;
+                if (sub_buckets[sub_bucket] == null) {
+                    sub_buckets[sub_bucket] = new IntArrayList();
+                }
+                sub_buckets[sub_bucket].add(node);
+            }
+
+            for (IntArrayList sub_bucket : sub_buckets) {
+                if (sub_bucket != null) {
+                    partitions.add(sub_bucket);
+                }
+            }
+        }
+
+        return partitions.toArray(new IntArrayList[partitions.size()]);
+    }
+
+    /**
+     *
+     * @param hash
+     * @param stages
+     * @param partition
+     * @return true if partition is in the first stages of hash
+     */
+    private static boolean contains(
+            final int[] hash, final int stages, final int partition) {
+        for (int stage = 0; stage < stages; stage++) {
+            if (hash[stage] == partition) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -1,14 +1,22 @@
 package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
 import info.debatty.java.graphs.Neighbor;
 import info.debatty.java.graphs.NeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.NodeRegistry;
+import info.debatty.java.graphs.Similarities;
+import info.debatty.java.util.BoundedIntLists;
+import info.debatty.java.util.IntArrayList;
+import info.debatty.java.util.PairCache;
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.RandomAccess;
 
 /**
  * Implementation of NN-Descent k-nn graph building algorithm. Based on the
@@ -18,6 +26,12 @@ import java.util.Random;
  * NN-Descent works by iteratively exploring the neighbors of neighbors... It is
  * not suitable for small datasets (less than 500 items)!
  *
+ * With a BatchSimilarity, each local join compares a node to all its
+ * candidates in a single call. This batch path is only used without pair
+ * cache and with a similarity that is not a BoundedSimilarity: it would
+ * bypass the cache and the early-abandon threshold, so in these cases the
+ * similarity is used pair by pair.
+ *
  * @author Thibault Debatty
  * @param <T> The type of nodes value
  */
@@ -29,8 +43,9 @@ public class NNDescent<T> extends GraphBuilder<T> {
 
     protected int iterations = 0;
     protected int c;
-
-    protected static final String IS_PROCESSED = "NNDescent_IS_PROCESSED_KEY";
+    protected GraphInitializer<T> initializer = null;
+    protected int pair_cache_size = 0;
+    protected transient PairCache pair_cache;
 
     /**
      * Get the number of edges modified at the last iteration
@@ -101,6 +116,46 @@ public class NNDescent<T> extends GraphBuilder<T> {
         this.max_iterations = max_iterations;
     }
 
+    public GraphInitializer<T> getInitializer() {
+        return initializer;
+    }
+
+    /**
+     * Set the algorithm used to compute the initial neighborlists (for
+     * example RandomProjectionForest for double[] values, or
+     * PartitioningInitializer). Default is null: each node starts with k
+     * random neighbors.
+     *
+     * @param initializer
+     */
+    public void setInitializer(GraphInitializer<T> initializer) {
+        this.initializer = initializer;
+    }
+
+    public int getPairCacheSize() {
+        return pair_cache_size;
+    }
+
+    /**
+     * Cache the similarities computed during the local joins, as the same
+     * pairs are often compared again (at the next iterations, or by
+     * neighbors with overlapping lists). Useful for expensive similarities.
+     * Cache hits are not counted as computed similarities, and the hits,
+     * misses and evictions are sent to the callback (cache_hits, cache_misses
+     * and cache_evictions). Default is 0 = no cache.
+     *
+     * When the cache is enabled, a BatchSimilarity is used pair by pair.
+     *
+     * @param pair_cache_size maximum number of pairs in the cache
+     */
+    public void setPairCacheSize(int pair_cache_size) {
+        if (pair_cache_size < 0) {
+            throw new InvalidParameterException(
+                    "pair_cache_size should be positive!");
+        }
+        this.pair_cache_size = pair_cache_size;
+    }
+
     @Override
     protected Graph<T> _computeGraph(List<Node<T>> nodes) {
 
@@ -110,81 +165,154 @@ public class NNDescent<T> extends GraphBuilder<T> {
             return MakeFullyLinked(nodes);
         }
 
-        Graph<T> neighborlists = new Graph<T>(nodes.size());
-        HashMap<Node<T>, ArrayList> old_lists, new_lists, old_lists_2, new_lists_2;
+        // B[v]←− Sample(V,K)×{?∞, true?} ∀v ∈ V
+        return Descent(
+                nodes, InitialNeighborLists(nodes), delta * nodes.size() * k);
+    }
+
+    /**
+     * Update an existing graph after some nodes were added and removed,
+     * instead of building the graph from scratch.
+     *
+     * The neighborlists of the existing graph are used as starting point,
+     * and their edges are flagged as old. Only the edges that replace a
+     * removed neighbor, and the (random) neighbors of the added nodes, are
+     * flagged as new. As the local join only compares new neighbors to other
+     * neighbors, the number of computed similarities is roughly proportional
+     * to the number of added and removed nodes. The filter similarity (if
+     * any) is not used.
+     *
+     * @param graph the existing graph (not modified)
+     * @param added nodes to add to the graph
+     * @param removed nodes to remove from the graph
+     * @return the updated graph
+     */
+    public Graph<T> refineGraph(
+            Graph<T> graph, List<Node<T>> added, List<Node<T>> removed) {
 
-        old_lists = new HashMap<Node<T>, ArrayList>(nodes.size());
-        new_lists = new HashMap<Node<T>, ArrayList>(nodes.size());
+        if (similarity == null) {
+            throw new InvalidParameterException("Similarity is not defined");
+        }
+        computed_similarities = 0;
+        iterations = 0;
 
-        HashMap<String, Object> data = new HashMap<String, Object>();
+        HashSet<Node<T>> removed_nodes = new HashSet<Node<T>>(removed);
+        NodeRegistry<T> registry =
+                new NodeRegistry<T>(graph.size() + added.size());
+        for (Node<T> node : graph.getNodes()) {
+            if (!removed_nodes.contains(node)) {
+                registry.register(node);
+            }
+        }
+        for (Node<T> node : added) {
+            registry.register(node);
+        }
 
-        // B[v]←− Sample(V,K)×{?∞, true?} ∀v ∈ V
-        // For each node, create a random neighborlist
-        for (Node v : nodes) {
-            neighborlists.put(v, RandomNeighborList(nodes, v));
+        List<Node<T>> nodes = registry.getNodes();
+        Graph<T> refined_graph;
+        if (nodes.size() <= (k + 1)) {
+            refined_graph = MakeFullyLinked(nodes);
+
+        } else {
+            int n = nodes.size();
+            int affected_nodes = 0;
+            IntNeighborList[] neighborlists = new IntNeighborList[n];
+            for (int v = 0; v < n; v++) {
+                neighborlists[v] = new IntNeighborList(k);
+
+                // Keep the edges of the existing graph (as old edges)
+                NeighborList existing = graph.get(nodes.get(v));
+                if (existing != null) {
+                    for (Neighbor neighbor : existing) {
+                        int u = registry.indexOf(neighbor);
+                        if (u != -1 && u != v) {
+                            neighborlists[v].offer(
+                                    u, neighbor.similarity, false);
+                        }
+                    }
+
+                    // This node lost some neighbors: flag the remaining ones
+                    // as new, so they are compared to the replacements
+                    if (neighborlists[v].size() < existing.size()) {
+                        for (int i = 0; i < neighborlists[v].size(); i++) {
+                            neighborlists[v].setNew(i, true);
+                        }
+                    }
+                }
+
+                // Added nodes, and nodes that lost some neighbors, get new
+                // random neighbors
+                if (neighborlists[v].size() < k) {
+                    affected_nodes++;
+                    FillRandomly(nodes, neighborlists[v], v);
+                }
+            }
+
+            // Convergence is relative to the number of affected nodes
+            refined_graph = Descent(
+                    nodes, neighborlists, delta * affected_nodes * k);
         }
 
+        refined_graph.setK(k);
+        refined_graph.setSimilarity(similarity);
+        return refined_graph;
+    }
+
+    /**
+     * Iterate NN-Descent, starting from these neighborlists, until the
+     * algorithm converges.
+     *
+     * @param nodes
+     * @param neighborlists initial neighborlists, indexed by the position of
+     * the nodes in the list
+     * @param threshold stop when the number of modified edges during an
+     * iteration is less than this threshold
+     * @return
+     */
+    protected Graph<T> Descent(
+            List<Node<T>> nodes,
+            IntNeighborList[] neighborlists,
+            double threshold) {
+
+        // Nodes are identified by their position in the list
+        // Candidate lists are allocated once, and reused at every iteration
+        int n = nodes.size();
+        BoundedIntLists old_lists = new BoundedIntLists(n, k + SampleSize());
+        BoundedIntLists new_lists = new BoundedIntLists(n, k + SampleSize());
+        BoundedIntLists old_lists_2 = new BoundedIntLists(n, SampleSize());
+        BoundedIntLists new_lists_2 = new BoundedIntLists(n, SampleSize());
+
+        HashMap<String, Object> data = new HashMap<String, Object>();
+        pair_cache = NewPairCache();
+
         // loop
         while (true) {
             iterations++;
-            c = 0;
+            LocalJoinStats stats = new LocalJoinStats();
 
             // for v ∈ V do
             // old[v]←− all items in B[v] with a false flag
             // new[v]←− ρK items in B[v] with a true flag
             // Mark sampled items in B[v] as false;
-            for (int i = 0; i < nodes.size(); i++) {
-                Node v = nodes.get(i);
-                old_lists.put(v, PickFalses(neighborlists.get(v)));
-                new_lists.put(v, PickTruesAndMark(neighborlists.get(v)));
-
-            }
+            SampleLists(neighborlists, old_lists, new_lists);
 
             // old′ ←Reverse(old)
             // new′ ←Reverse(new)
-            old_lists_2 = Reverse(nodes, old_lists);
-            new_lists_2 = Reverse(nodes, new_lists);
+            // (reversed lists are directly sampled to ρK items)
+            Reverse(old_lists, old_lists_2);
+            Reverse(new_lists, new_lists_2);
 
             // for v ∈ V do
-            for (int i = 0; i < nodes.size(); i++) {
-                Node v = nodes.get(i);
+            for (int v = 0; v < n; v++) {
                 // old[v]←− old[v] ∪ Sample(old′[v], ρK)
                 // new[v]←− new[v] ∪ Sample(new′[v], ρK)
-                old_lists.put(v, Union(old_lists.get(v), Sample(old_lists_2.get(v), (int) (rho * k))));
-                new_lists.put(v, Union(new_lists.get(v), Sample(new_lists_2.get(v), (int) (rho * k))));
-
-                // for u1,u2 ∈ new[v], u1 < u2 do
-                for (int j = 0; j < new_lists.get(v).size(); j++) {
-                    Node u1 = (Node) new_lists.get(v).get(j);
-
-                    //int u1_i = Find(u1); // position of u1 in nodes
-                    for (int l = j + 1; l < new_lists.get(u1).size(); l++) {
-                        Node u2 = (Node) new_lists.get(u1).get(l);
-                            //int u2_i = Find(u2);
-
-                        // l←− σ(u1,u2)
-                        // c←− c+UpdateNN(B[u1], u2, l, true)
-                        // c←− c+UpdateNN(B[u2], u1, l, true)
-                        double s = Similarity(u1, u2);
-                        c += UpdateNL(neighborlists.get(u1), u2, s);
-                        c += UpdateNL(neighborlists.get(u2), u1, s);
-                    }
-
-                    // or u1 ∈ new[v], u2 ∈ old[v] do
-                    for (int l = 0; l < old_lists.get(v).size(); l++) {
-                        Node u2 = (Node) old_lists.get(v).get(l);
-
-                        if (u1.equals(u2)) {
-                            continue;
-                        }
+                Union(old_lists, old_lists_2, v);
+                Union(new_lists, new_lists_2, v);
 
-                        //int u2_i = Find(u2);
-                        double s = Similarity(u1, u2);
-                        c += UpdateNL(neighborlists.get(u1), u2, s);
-                        c += UpdateNL(neighborlists.get(u2), u1, s);
-                    }
-                }
+                LocalJoin(nodes, neighborlists, old_lists, new_lists, v, stats);
             }
+            c = stats.modified_edges;
+            computed_similarities += stats.similarities;
 
             //System.out.println("C : " + c);
             if (callback != null) {
@@ -193,11 +321,12 @@ public class NNDescent<T> extends GraphBuilder<T> {
                 data.put("computed_similarities_ratio",
                         (double) computed_similarities / (nodes.size() * (nodes.size() - 1) / 2));
                 data.put("iterations", iterations);
+                PutCacheCounters(data);
 
                 callback.call(data);
             }
 
-            if (c <= (delta * nodes.size() * k)) {
+            if (c <= threshold) {
                 break;
             }
 
@@ -206,112 +335,483 @@ public class NNDescent<T> extends GraphBuilder<T> {
             }
         }
 
-        return neighborlists;
+        pair_cache = null;
+        return toGraph(nodes, neighborlists);
     }
 
-    protected ArrayList<Node> Union(ArrayList<Node> l1, ArrayList<Node> l2) {
-        ArrayList<Node> r = new ArrayList<Node>();
-        for (Node n : l1) {
-            if (!r.contains(n)) {
-                r.add(n);
-            }
+    /**
+     * Local join: compare the new neighbors of node v to each other, and to
+     * the old neighbors of v.
+     *
+     * The number of modified edges and computed similarities are added to
+     * stats, so each thread can use its own counters.
+     *
+     * @param nodes
+     * @param neighborlists
+     * @param old_lists
+     * @param new_lists
+     * @param v
+     * @param stats
+     */
+    protected void LocalJoin(
+            List<Node<T>> nodes,
+            IntNeighborList[] neighborlists,
+            BoundedIntLists old_lists,
+            BoundedIntLists new_lists,
+            int v,
+            LocalJoinStats stats) {
+
+        if (pair_cache == null
+                && Similarities.isBatch(similarity)
+                && !Similarities.isBounded(similarity)) {
+            BatchLocalJoin(
+                    nodes, neighborlists, old_lists, new_lists, v, stats);
+            return;
         }
 
-        for (Node n : l2) {
-            if (!r.contains(n)) {
-                r.add(n);
+        int new_size = new_lists.size(v);
+        int old_size = old_lists.size(v);
+        boolean bounded = Similarities.isBounded(similarity);
+
+        // for u1,u2 ∈ new[v], u1 < u2 do
+        for (int j = 0; j < new_size; j++) {
+            int u1 = new_lists.get(v, j);
+
+            for (int l = j + 1; l < new_size; l++) {
+                int u2 = new_lists.get(v, l);
+
+                // l←− σ(u1,u2)
+                // c←− c+UpdateNN(B[u1], u2, l, true)
+                // c←− c+UpdateNN(B[u2], u1, l, true)
+                double s = Similarity(
+                        nodes, neighborlists, u1, u2, bounded, stats);
+                stats.modified_edges += UpdateNL(neighborlists, u1, u2, s);
+                stats.modified_edges += UpdateNL(neighborlists, u2, u1, s);
+            }
+
+            // or u1 ∈ new[v], u2 ∈ old[v] do
+            for (int l = 0; l < old_size; l++) {
+                int u2 = old_lists.get(v, l);
+
+                if (u1 == u2) {
+                    continue;
+                }
+
+                double s = Similarity(
+                        nodes, neighborlists, u1, u2, bounded, stats);
+                stats.modified_edges += UpdateNL(neighborlists, u1, u2, s);
+                stats.modified_edges += UpdateNL(neighborlists, u2, u1, s);
             }
         }
+    }
 
-        return r;
+    /**
+     * Local join using a BatchSimilarity: each new neighbor u1 is compared
+     * in a single call to the following new neighbors and to the old
+     * neighbors.
+     *
+     * @param nodes
+     * @param neighborlists
+     * @param old_lists
+     * @param new_lists
+     * @param v
+     * @param stats
+     */
+    protected void BatchLocalJoin(
+            List<Node<T>> nodes,
+            IntNeighborList[] neighborlists,
+            BoundedIntLists old_lists,
+            BoundedIntLists new_lists,
+            int v,
+            LocalJoinStats stats) {
+
+        int new_size = new_lists.size(v);
+        int old_size = old_lists.size(v);
+        CandidateValues<T> candidates = stats.candidates(
+                nodes, old_lists, new_lists, v);
+        double[] sims = stats.buffer(new_size + old_size);
+
+        for (int j = 0; j < new_size; j++) {
+            int u1 = new_lists.get(v, j);
+
+            // u2 ∈ new[v] after u1, then u2 ∈ old[v] (except u1 itself)
+            candidates.select(j);
+            Similarities.similarities(
+                    similarity, nodes.get(u1).value, candidates, sims);
+            stats.similarities += candidates.size();
+
+            for (int l = 0; l < candidates.size(); l++) {
+                int u2 = candidates.getId(l);
+                stats.modified_edges +=
+                        UpdateNL(neighborlists, u1, u2, sims[l]);
+                stats.modified_edges +=
+                        UpdateNL(neighborlists, u2, u1, sims[l]);
+            }
+        }
     }
 
-    protected NeighborList RandomNeighborList(List<Node<T>> nodes, Node for_node) {
-        //System.out.println("Random NL for node " + for_node);
-        NeighborList nl = new NeighborList(k);
-        Random r = new Random();
+    /**
+     * Counters of a local join. Each thread uses its own instance, the
+     * counters are summed at the end of each iteration. The instance also
+     * holds the buffers used by the thread for batch similarities.
+     */
+    protected static class LocalJoinStats {
+        int modified_edges;
+        int similarities;
 
-        while (nl.size() < k) {
-            Node node = nodes.get(r.nextInt(nodes.size()));
-            if (!node.equals(for_node)) {
-                double s = Similarity(node, for_node);
-                nl.add(new Neighbor(node, s));
+        private double[] buffer = new double[0];
+        private CandidateValues candidates;
+
+        void add(LocalJoinStats other) {
+            modified_edges += other.modified_edges;
+            similarities += other.similarities;
+        }
+
+        double[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = new double[size];
             }
+            return buffer;
         }
 
-        return nl;
+        <T> CandidateValues<T> candidates(
+                List<Node<T>> nodes,
+                BoundedIntLists old_lists,
+                BoundedIntLists new_lists,
+                int v) {
+
+            if (candidates == null) {
+                candidates = new CandidateValues<T>();
+            }
+            candidates.reset(nodes, old_lists, new_lists, v);
+            return candidates;
+        }
     }
 
-    protected ArrayList<Node> PickFalses(NeighborList neighborList) {
-        ArrayList<Node> falses = new ArrayList<Node>();
-        for (Neighbor n : neighborList) {
-            if (n.getAttribute(IS_PROCESSED) != null) { // !n.is_new
-                falses.add(n.node);
+    /**
+     * Read-only view of the values of the candidates of the j-th new
+     * neighbor u1 of node v: the following new neighbors, then the old
+     * neighbors that are not u1.
+     */
+    protected static class CandidateValues<T> extends AbstractList<T>
+            implements RandomAccess {
+
+        private List<Node<T>> nodes;
+        private BoundedIntLists old_lists;
+        private BoundedIntLists new_lists;
+        private int v;
+        private int[] ids = new int[0];
+        private int size;
+
+        void reset(
+                List<Node<T>> nodes,
+                BoundedIntLists old_lists,
+                BoundedIntLists new_lists,
+                int v) {
+            this.nodes = nodes;
+            this.old_lists = old_lists;
+            this.new_lists = new_lists;
+            this.v = v;
+            this.size = 0;
+            int capacity = new_lists.size(v) + old_lists.size(v);
+            if (ids.length < capacity) {
+                ids = new int[capacity];
+            }
+        }
+
+        void select(int j) {
+            int u1 = new_lists.get(v, j);
+            size = 0;
+            for (int l = j + 1; l < new_lists.size(v); l++) {
+                ids[size++] = new_lists.get(v, l);
+            }
+            for (int l = 0; l < old_lists.size(v); l++) {
+                int u2 = old_lists.get(v, l);
+                if (u2 != u1) {
+                    ids[size++] = u2;
+                }
             }
         }
 
-        return falses;
+        int getId(int index) {
+            return ids[index];
+        }
+
+        @Override
+        public T get(int index) {
+            return nodes.get(ids[index]).value;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
     /**
-     * pick new neighbors with a probability of rho, and mark them as false
      *
-     * @param neighborList
+     * @return the number of reverse neighbors sampled for each node (ρK)
+     */
+    protected int SampleSize() {
+        return (int) (rho * k);
+    }
+
+    protected IntArrayList[] NewLists(int n) {
+        IntArrayList[] lists = new IntArrayList[n];
+        for (int i = 0; i < n; i++) {
+            lists[i] = new IntArrayList();
+        }
+        return lists;
+    }
+
+    /**
+     * Add the elements of l2[v] to l1[v] (if l1[v] does not contain them
+     * already).
+     *
+     * @param l1
+     * @param l2
+     * @param v
+     */
+    protected void Union(BoundedIntLists l1, BoundedIntLists l2, int v) {
+        for (int i = 0; i < l2.size(v); i++) {
+            l1.addIfAbsent(v, l2.get(v, i));
+        }
+    }
+
+    /**
+     * Compute the initial neighborlists, using the initializer (if any).
+     * Lists that are not full are completed with random neighbors.
+     *
+     * @param nodes
      * @return
      */
-    protected ArrayList<Node> PickTruesAndMark(NeighborList neighborList) {
-        ArrayList<Node> r = new ArrayList<Node>();
-        for (Neighbor n : neighborList) {
-            if (n.getAttribute(IS_PROCESSED) == null && Math.random() < rho) { // n.is_new
-                n.setAttribute(IS_PROCESSED, true); // n.is_new = false;
-                r.add(n.node);
-            }
+    protected IntNeighborList[] InitialNeighborLists(List<Node<T>> nodes) {
+        int n = nodes.size();
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int v = 0; v < n; v++) {
+            neighborlists[v] = new IntNeighborList(k);
+        }
+
+        if (initializer != null) {
+            computed_similarities += initializer.initialize(
+                    nodes, similarity, neighborlists);
         }
 
-        return r;
+        for (int v = 0; v < n; v++) {
+            FillRandomly(nodes, neighborlists[v], v);
+        }
+        return neighborlists;
     }
 
-    protected HashMap<Node<T>, ArrayList> Reverse(List<Node<T>> nodes, HashMap<Node<T>, ArrayList> lists) {
+    /**
+     * Add random neighbors to nl, until it is full.
+     *
+     * @param nodes
+     * @param nl
+     * @param for_node
+     */
+    protected void FillRandomly(
+            List<Node<T>> nodes, IntNeighborList nl, int for_node) {
+
+        Random r = new Random();
 
-        HashMap<Node<T>, ArrayList> R = new HashMap<Node<T>, ArrayList>(nodes.size());
+        while (nl.size() < k) {
+            int node = r.nextInt(nodes.size());
+            if (node != for_node && !nl.contains(node)) {
+                double s = Similarity(nodes.get(node), nodes.get(for_node));
+                nl.offer(node, s);
+            }
+        }
+    }
 
-        // Create all arraylists
-        for (Node n : nodes) {
-            R.put(n, new ArrayList<Node>());
+    /**
+     * Sampling phase of an iteration: for each node v, put in old_lists[v]
+     * all the neighbors with a false flag, and in new_lists[v] a sample of
+     * the neighbors with a true flag (which are then marked as false).
+     *
+     * @param neighborlists
+     * @param old_lists
+     * @param new_lists
+     */
+    protected void SampleLists(
+            IntNeighborList[] neighborlists,
+            BoundedIntLists old_lists,
+            BoundedIntLists new_lists) {
+
+        Random rand = new Random();
+        for (int v = 0; v < neighborlists.length; v++) {
+            PickFalses(neighborlists[v], old_lists, v);
+            PickTruesAndMark(neighborlists[v], new_lists, v, rand);
         }
+    }
 
-        // For each node and corresponding arraylist
-        for (Node node : nodes) {
-            ArrayList<Node> list = lists.get(node);
-            for (Node other_node : list) {
-                R.get(other_node).add(node);
+    /**
+     * Put in falses[v] all the neighbors that are not flagged as new.
+     *
+     * @param neighborList
+     * @param falses
+     * @param v
+     */
+    protected void PickFalses(
+            IntNeighborList neighborList, BoundedIntLists falses, int v) {
+
+        falses.clear(v);
+        for (int i = 0; i < neighborList.size(); i++) {
+            if (!neighborList.isNew(i)) {
+                falses.add(v, neighborList.getId(i));
             }
         }
+    }
 
-        return R;
+    /**
+     * pick new neighbors with a probability of rho, put them in trues[v], and
+     * mark them as false
+     *
+     * @param neighborList
+     * @param trues
+     * @param v
+     * @param rand
+     */
+    protected void PickTruesAndMark(
+            IntNeighborList neighborList,
+            BoundedIntLists trues,
+            int v,
+            Random rand) {
+
+        trues.clear(v);
+        for (int i = 0; i < neighborList.size(); i++) {
+            if (neighborList.isNew(i) && rand.nextDouble() < rho) {
+                neighborList.setNew(i, false);
+                trues.add(v, neighborList.getId(i));
+            }
+        }
     }
 
     /**
      * Reverse NN array R[v] is the list of elements (u) for which v is a
-     * neighbor (v is in B[u])
+     * neighbor (v is in B[u]). As reversed lists are bounded, each R[v] is a
+     * uniform (reservoir) sample of the reverse neighbors of v.
+     *
+     * @param lists
+     * @param reversed
+     */
+    protected void Reverse(BoundedIntLists lists, BoundedIntLists reversed) {
+
+        for (int node = 0; node < reversed.count(); node++) {
+            reversed.clear(node);
+        }
+
+        Random rand = new Random();
+
+        // For each node and corresponding list
+        for (int node = 0; node < lists.count(); node++) {
+            for (int i = 0; i < lists.size(node); i++) {
+                reversed.offer(lists.get(node, i), node, rand);
+            }
+        }
+    }
+
+    /**
+     * Try to add node to the neighborlist of owner.
+     *
+     * @param neighborlists
+     * @param owner
+     * @param node
+     * @param similarity
+     * @return 1 if the neighborlist was modified, 0 otherwise
+     */
+    protected int UpdateNL(
+            IntNeighborList[] neighborlists,
+            int owner,
+            int node,
+            double similarity) {
+        return neighborlists[owner].offer(node, similarity) ? 1 : 0;
+    }
+
+    /**
+     * Similarity between nodes u1 and u2 of the local join, using the pair
+     * cache if it is enabled.
+     *
+     * With a BoundedSimilarity, the computation may stop as soon as the
+     * similarity cannot beat the k-th neighbor of u1 nor the k-th neighbor
+     * of u2 (such results are not cached).
      *
      * @param nodes
-     * @param count
+     * @param neighborlists
+     * @param u1
+     * @param u2
+     * @param bounded true if the similarity is a BoundedSimilarity
+     * @param stats
      * @return
      */
-    protected ArrayList<Node> Sample(ArrayList<Node> nodes, int count) {
-        Random r = new Random();
-        while (nodes.size() > count) {
-            nodes.remove(r.nextInt(nodes.size()));
+    protected double Similarity(
+            List<Node<T>> nodes,
+            IntNeighborList[] neighborlists,
+            int u1,
+            int u2,
+            boolean bounded,
+            LocalJoinStats stats) {
+
+        if (pair_cache != null) {
+            double s = pair_cache.get(u1, u2);
+            if (!Double.isNaN(s)) {
+                return s;
+            }
         }
 
-        return nodes;
+        double threshold = Double.NEGATIVE_INFINITY;
+        if (bounded) {
+            threshold = Math.min(
+                    Threshold(neighborlists, u1),
+                    Threshold(neighborlists, u2));
+        }
+
+        double s = Similarities.similarity(
+                similarity,
+                nodes.get(u1).value,
+                nodes.get(u2).value,
+                threshold);
+        stats.similarities++;
+
+        if (pair_cache != null && s > threshold) {
+            pair_cache.put(u1, u2, s);
+        }
+        return s;
+    }
+
+    /**
+     *
+     * @param neighborlists
+     * @param owner
+     * @return the similarity a candidate must exceed to enter the
+     * neighborlist of owner
+     */
+    protected double Threshold(IntNeighborList[] neighborlists, int owner) {
+        return neighborlists[owner].threshold();
+    }
 
+    /**
+     *
+     * @return a new pair cache, or null if the cache is disabled
+     */
+    protected PairCache NewPairCache() {
+        if (pair_cache_size == 0) {
+            return null;
+        }
+        return new PairCache(pair_cache_size);
     }
 
-    protected int UpdateNL(NeighborList nl, Node n, double similarity) {
-        Neighbor neighbor = new Neighbor(n, similarity);
-        return nl.add(neighbor) ? 1 : 0;
+    /**
+     * Add the counters of the pair cache (if enabled) to the callback data.
+     *
+     * @param data
+     */
+    protected void PutCacheCounters(HashMap<String, Object> data) {
+        if (pair_cache != null) {
+            data.put("cache_hits", pair_cache.getHits());
+            data.put("cache_misses", pair_cache.getMisses());
+            data.put("cache_evictions", pair_cache.getEvictions());
+        }
     }
 
     protected double Similarity(Node n1, Node n2) {
@@ -26,9 +26,19 @@ package info.debatty.java.graphs.build;
 import info.debatty.java.graphs.Graph;
 import info.debatty.java.graphs.NeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.util.IntArrayList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Abstract class for graph building algorithms that split the dataset into
@@ -53,7 +63,12 @@ public abstract class PartitioningGraphBuilder<T> extends GraphBuilder<T> {
 
     protected int oversampling = 2;
     protected int n_partitions = 4;
-    protected GraphBuilder internal_builder = new Brute();
+    protected GraphBuilder<T> internal_builder = new Brute<T>();
+    protected GraphBuilder<T> large_partition_builder = null;
+    protected int large_partition_size = 10000;
+    protected int batch_size = 1000;
+    protected int max_partition_size = 0;
+    protected transient ExecutorService executor = null;
 
     public int getOversampling() {
         return oversampling;
@@ -88,7 +103,7 @@ public abstract class PartitioningGraphBuilder<T> extends GraphBuilder<T> {
         this.n_partitions = n_partitions;
     }
 
-    public GraphBuilder getInternalBuilder() {
+    public GraphBuilder<T> getInternalBuilder() {
         return internal_builder;
     }
 
@@ -97,50 +112,345 @@ public abstract class PartitioningGraphBuilder<T> extends GraphBuilder<T> {
      *
      * @param internal_builder
      */
-    public void setInternalBuilder(GraphBuilder internal_builder) {
+    public void setInternalBuilder(GraphBuilder<T> internal_builder) {
         this.internal_builder = internal_builder;
     }
 
+    public GraphBuilder<T> getLargePartitionBuilder() {
+        return large_partition_builder;
+    }
+
+    /**
+     * Builder used for partitions larger than large_partition_size (for
+     * example a multi-threaded builder like ThreadedBrute). Large partitions
+     * are processed one at a time. Default = null = use the internal builder
+     *
+     * @param large_partition_builder
+     */
+    public void setLargePartitionBuilder(
+            GraphBuilder<T> large_partition_builder) {
+        this.large_partition_builder = large_partition_builder;
+    }
+
+    public int getLargePartitionSize() {
+        return large_partition_size;
+    }
+
+    /**
+     * Partitions with more than this number of nodes are considered as large.
+     * Default = 10000
+     *
+     * @param large_partition_size
+     */
+    public void setLargePartitionSize(int large_partition_size) {
+        this.large_partition_size = large_partition_size;
+    }
+
+    public int getMaxPartitionSize() {
+        return max_partition_size;
+    }
+
+    /**
+     * Partitions with more than this number of nodes are split in smaller
+     * partitions, so a single oversized partition does not dominate the
+     * computation time. Default = 0 = no limit
+     *
+     * @param max_partition_size
+     */
+    public void setMaxPartitionSize(int max_partition_size) {
+        this.max_partition_size = max_partition_size;
+    }
+
+    public int getBatchSize() {
+        return batch_size;
+    }
+
+    /**
+     * Small partitions are grouped in batches of (at least) this number of
+     * nodes, and each batch is processed by a single task. Default = 1000
+     *
+     * @param batch_size
+     */
+    public void setBatchSize(int batch_size) {
+        this.batch_size = batch_size;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Executor used to process the partitions in parallel. The executor is
+     * not shut down by the builder. Default = null = use a new thread pool
+     * with one thread per available processor.
+     *
+     * Each task uses its own copy of the internal builder, but the callback
+     * of the internal builder (if any) may be called concurrently.
+     *
+     * @param executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
     @Override
     protected Graph<T> _computeGraph(List<Node<T>> nodes) {
         // Create $n_stages$ x $n_partitions$ partitions
-        List<Node<T>>[] partitioning = _partition(nodes);
-        HashMap<String, Object> feedback_data = new HashMap<String, Object>();
+        List<Node<T>>[] partitioning = splitPartitions(_partition(nodes));
 
         // Initialize the graph
         Graph<T> neighborlists = new Graph<T>(nodes.size());
-        for (Node node : nodes) {
+        for (Node<T> node : nodes) {
             neighborlists.put(node, new NeighborList(k));
         }
 
-        internal_builder.setK(k);
-        internal_builder.setSimilarity(similarity);
+        // Large partitions are processed one at a time (the builder may use
+        // multiple threads), small partitions are grouped in batches
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        ArrayList<Integer> batch = new ArrayList<Integer>();
+        int batch_nodes = 0;
 
-        // Loop over all partitions to compute the subgraphs
-        // Could be executed in parallel...
-        for (int p = 0; p < n_partitions; p++) {
+        for (int p = 0; p < partitioning.length; p++) {
+            if (partitioning[p] == null || partitioning[p].isEmpty()) {
+                continue;
+            }
 
-            if (partitioning[p] != null && !partitioning[p].isEmpty()) {
+            if (partitioning[p].size() > large_partition_size) {
+                GraphBuilder<T> builder = large_partition_builder;
+                if (builder == null) {
+                    builder = internal_builder;
+                }
+                new PartitionTask(
+                        neighborlists, partitioning, builder, p).call();
+                continue;
+            }
 
-                Graph<T> subgraph = internal_builder.computeGraph(partitioning[p]);
-                computed_similarities += internal_builder.getComputedSimilarities();
+            batch.add(p);
+            batch_nodes += partitioning[p].size();
+            if (batch_nodes >= batch_size) {
+                tasks.add(new PartitionTask(
+                        neighborlists, partitioning, internal_builder, batch));
+                batch = new ArrayList<Integer>();
+                batch_nodes = 0;
+            }
+        }
 
-                // Add to current neighborlists
-                for (Entry<Node<T>, NeighborList> e : subgraph.entrySet()) {
-                    neighborlists.get(e.getKey()).addAll(e.getValue());
-                }
+        if (!batch.isEmpty()) {
+            tasks.add(new PartitionTask(
+                    neighborlists, partitioning, internal_builder, batch));
+        }
+
+        ExecutorService pool = executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors());
+        }
+
+        try {
+            for (Future<Object> future : pool.invokeAll(tasks)) {
+                future.get();
             }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(PartitioningGraphBuilder.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } catch (ExecutionException ex) {
+            Logger.getLogger(PartitioningGraphBuilder.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } finally {
+            if (executor == null) {
+                pool.shutdown();
+            }
+        }
+
+        return neighborlists;
+
+    }
+
+    /**
+     * Split the partitions that contain more than max_partition_size nodes
+     * into chunks of consecutive nodes.
+     *
+     * @param partitioning
+     * @return
+     */
+    protected List<Node<T>>[] splitPartitions(List<Node<T>>[] partitioning) {
+        if (max_partition_size <= 0) {
+            return partitioning;
+        }
+
+        ArrayList<List<Node<T>>> partitions = new ArrayList<List<Node<T>>>();
+        for (List<Node<T>> partition : partitioning) {
+            if (partition == null || partition.size() <= max_partition_size) {
+                partitions.add(partition);
+                continue;
+            }
+
+            for (int start = 0; start < partition.size();
+                    start += max_partition_size) {
+                int end = Math.min(
+                        partition.size(), start + max_partition_size);
+                partitions.add(partition.subList(start, end));
+            }
+        }
+
+        if (partitions.size() == partitioning.length) {
+            return partitioning;
+        }
+        List<Node<T>>[] array = newPartitioning(partitions.size());
+        return partitions.toArray(array);
+    }
+
+    /**
+     * Merge the subgraph of a partition into the neighborlists, and report
+     * progress. Called concurrently by the partition tasks.
+     *
+     * @param neighborlists
+     * @param subgraph
+     * @param partition
+     * @param similarities computed to build the subgraph
+     */
+    private void merge(
+            Graph<T> neighborlists,
+            Graph<T> subgraph,
+            int partition,
+            int similarities) {
+
+        // Add to current neighborlists
+        for (Entry<Node<T>, NeighborList> e : subgraph.entrySet()) {
+            NeighborList nl = neighborlists.get(e.getKey());
+            synchronized (nl) {
+                nl.addAll(e.getValue());
+            }
+        }
+
+        synchronized (this) {
+            computed_similarities += similarities;
 
             if (callback != null) {
+                HashMap<String, Object> feedback_data =
+                        new HashMap<String, Object>();
                 feedback_data.put("step", "Building graph inside partition");
-                feedback_data.put("partition", p);
+                feedback_data.put("partition", partition);
                 feedback_data.put("computed-similarities", computed_similarities);
                 callback.call(feedback_data);
             }
         }
+    }
 
-        return neighborlists;
+    /**
+     * Build the subgraph of one or multiple partitions, using a copy of the
+     * builder (so the builder can be used concurrently).
+     */
+    private class PartitionTask implements Callable<Object> {
+
+        private final Graph<T> neighborlists;
+        private final List<Node<T>>[] partitioning;
+        private final GraphBuilder<T> builder;
+        private final List<Integer> partitions;
+
+        PartitionTask(
+                Graph<T> neighborlists,
+                List<Node<T>>[] partitioning,
+                GraphBuilder<T> builder,
+                List<Integer> partitions) {
+
+            this.neighborlists = neighborlists;
+            this.partitioning = partitioning;
+            this.partitions = partitions;
+
+            this.builder = builder.copy();
+            this.builder.setK(k);
+            this.builder.setSimilarity(similarity);
+        }
+
+        PartitionTask(
+                Graph<T> neighborlists,
+                List<Node<T>>[] partitioning,
+                GraphBuilder<T> builder,
+                int partition) {
+
+            this(neighborlists, partitioning, builder,
+                    Collections.singletonList(partition));
+        }
+
+        public Object call() {
+            for (int p : partitions) {
+                Graph<T> subgraph = builder.computeGraph(partitioning[p]);
+                merge(neighborlists, subgraph, p,
+                        builder.getComputedSimilarities());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Build the lists of nodes corresponding to the buckets (which contain
+     * the index of the nodes). Null buckets give null partitions.
+     *
+     * @param nodes
+     * @param buckets
+     * @return
+     */
+    protected final List<Node<T>>[] toPartitions(
+            final List<Node<T>> nodes,
+            final IntArrayList[] buckets) {
 
+        List<Node<T>>[] partitions = newPartitioning(buckets.length);
+        for (int p = 0; p < buckets.length; p++) {
+            if (buckets[p] == null) {
+                continue;
+            }
+
+            partitions[p] = new ArrayList<Node<T>>(buckets[p].size());
+            for (int i = 0; i < buckets[p].size(); i++) {
+                partitions[p].add(nodes.get(buckets[p].get(i)));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Create an empty array of partitions.
+     *
+     * @param size
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> List<Node<T>>[] newPartitioning(final int size) {
+        // Arrays of a generic type can only be created unchecked
+        return (List<Node<T>>[]) new List<?>[size];
+    }
+
+    /**
+     * Report the size of the buckets, using the callback (if any).
+     *
+     * @param partitioning
+     */
+    protected final void report(final List<Node<T>>[] partitioning) {
+        if (callback == null) {
+            return;
+        }
+
+        int empty = 0;
+        int largest = 0;
+        long total = 0;
+        for (List<Node<T>> partition : partitioning) {
+            if (partition == null || partition.isEmpty()) {
+                empty++;
+                continue;
+            }
+            largest = Math.max(largest, partition.size());
+            total += partition.size();
+        }
+
+        HashMap<String, Object> feedback_data = new HashMap<String, Object>();
+        feedback_data.put("step", "Partitioning");
+        feedback_data.put("partitions", partitioning.length);
+        feedback_data.put("empty-partitions", empty);
+        feedback_data.put("largest-partition", largest);
+        feedback_data.put("average-partition",
+                (double) total / Math.max(1, partitioning.length - empty));
+        callback.call(feedback_data);
     }
 
     @Override
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Initialize the graph using the partitions (buckets) of a
+ * PartitioningGraphBuilder, like NNCTPH. This initializer can be used for any
+ * type of node value supported by the partitioning builder.
+ *
+ * Inside each partition, the nodes are shuffled, and each node is compared
+ * to the k nodes that follow it. Hence the cost of the initialization is
+ * linear in the size of the partitions.
+ *
+ * @author Thibault Debatty
+ * @param <T> The type of nodes value
+ */
+public class PartitioningInitializer<T> implements GraphInitializer<T> {
+
+    private final PartitioningGraphBuilder<T> builder;
+
+    /**
+     *
+     * @param builder the builder used to partition the nodes (for example a
+     * configured instance of NNCTPH)
+     */
+    public PartitioningInitializer(final PartitioningGraphBuilder<T> builder) {
+        this.builder = builder;
+    }
+
+    @Override
+    public final int initialize(
+            final List<Node<T>> nodes,
+            final SimilarityInterface<T> similarity,
+            final IntNeighborList[] neighborlists) {
+
+        int k = neighborlists[0].capacity();
+
+        // Position of each node in the list
+        IdentityHashMap<Node<T>, Integer> positions =
+                new IdentityHashMap<Node<T>, Integer>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            positions.put(nodes.get(i), i);
+        }
+
+        int computed_similarities = 0;
+        for (List<Node<T>> partition : builder._partition(nodes)) {
+            if (partition == null) {
+                continue;
+            }
+
+            ArrayList<Node<T>> shuffled = new ArrayList<Node<T>>(partition);
+            Collections.shuffle(shuffled);
+
+            for (int i = 0; i < shuffled.size(); i++) {
+                int u1 = positions.get(shuffled.get(i));
+                int last = Math.min(shuffled.size(), i + k + 1);
+                for (int j = i + 1; j < last; j++) {
+                    int u2 = positions.get(shuffled.get(j));
+                    if (u1 == u2 || neighborlists[u1].contains(u2)) {
+                        continue;
+                    }
+
+                    double sim = similarity.similarity(
+                            shuffled.get(i).value, shuffled.get(j).value);
+                    computed_similarities++;
+                    neighborlists[u1].offer(u2, sim);
+                    neighborlists[u2].offer(u1, sim);
+                }
+            }
+        }
+
+        return computed_similarities;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import java.security.InvalidParameterException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Initialize the graph using a forest of random projection trees. This
+ * initializer is meant for vector (double[]) node values.
+ *
+ * Each tree recursively splits the nodes with a random hyperplane (the
+ * hyperplane that is equidistant to two randomly selected nodes), until each
+ * leaf contains at most leaf_size nodes. Then the nodes of each leaf are
+ * compared to each other.
+ *
+ * @author Thibault Debatty
+ */
+public class RandomProjectionForest implements GraphInitializer<double[]> {
+
+    private int trees = 4;
+    private int leaf_size = 0;
+
+    /**
+     *
+     * @return the number of trees
+     */
+    public final int getTrees() {
+        return trees;
+    }
+
+    /**
+     * Set the number of trees to build. Default = 4
+     *
+     * @param trees
+     */
+    public final void setTrees(final int trees) {
+        if (trees <= 0) {
+            throw new InvalidParameterException("trees must be > 0");
+        }
+        this.trees = trees;
+    }
+
+    /**
+     *
+     * @return the maximum number of nodes in a leaf
+     */
+    public final int getLeafSize() {
+        return leaf_size;
+    }
+
+    /**
+     * Set the maximum number of nodes in a leaf. Default = 0 = 2 * (k + 1).
+     * The leaf size is always at least k + 1.
+     *
+     * @param leaf_size
+     */
+    public final void setLeafSize(final int leaf_size) {
+        if (leaf_size < 0) {
+            throw new InvalidParameterException("leaf_size must be >= 0");
+        }
+        this.leaf_size = leaf_size;
+    }
+
+    @Override
+    public final int initialize(
+            final List<Node<double[]>> nodes,
+            final SimilarityInterface<double[]> similarity,
+            final IntNeighborList[] neighborlists) {
+
+        int n = nodes.size();
+        int k = neighborlists[0].capacity();
+        int max_leaf_size = Math.max(k + 1, leaf_size);
+        if (leaf_size == 0) {
+            max_leaf_size = 2 * (k + 1);
+        }
+
+        Random rand = new Random();
+        int computed_similarities = 0;
+
+        // Positions of the nodes, reordered while the tree is built:
+        // each node of the tree is a range of this array
+        int[] positions = new int[n];
+        int[] stack = new int[2 * n];
+
+        for (int tree = 0; tree < trees; tree++) {
+            for (int i = 0; i < n; i++) {
+                positions[i] = i;
+            }
+
+            int stack_size = 0;
+            stack[stack_size++] = 0;
+            stack[stack_size++] = n;
+
+            while (stack_size > 0) {
+                int end = stack[--stack_size];
+                int start = stack[--stack_size];
+
+                if (end - start <= max_leaf_size) {
+                    computed_similarities += joinLeaf(
+                            nodes, similarity, neighborlists,
+                            positions, start, end);
+                    continue;
+                }
+
+                int middle = split(nodes, positions, start, end, rand);
+                stack[stack_size++] = start;
+                stack[stack_size++] = middle;
+                stack[stack_size++] = middle;
+                stack[stack_size++] = end;
+            }
+        }
+
+        return computed_similarities;
+    }
+
+    /**
+     * Reorder positions[start .. end[ according to a random hyperplane.
+     *
+     * @return the position of the first node on the other side of the
+     * hyperplane
+     */
+    private int split(
+            final List<Node<double[]>> nodes,
+            final int[] positions,
+            final int start,
+            final int end,
+            final Random rand) {
+
+        int size = end - start;
+        double[] a = nodes.get(positions[start + rand.nextInt(size)]).value;
+        double[] b = nodes.get(positions[start + rand.nextInt(size)]).value;
+
+        // Hyperplane equidistant to a and b
+        double[] normal = new double[a.length];
+        double offset = 0;
+        for (int d = 0; d < a.length; d++) {
+            normal[d] = a[d] - b[d];
+            offset += normal[d] * (a[d] + b[d]) / 2;
+        }
+
+        int left = start;
+        int right = end - 1;
+        while (left <= right) {
+            double[] value = nodes.get(positions[left]).value;
+            double margin = -offset;
+            for (int d = 0; d < value.length; d++) {
+                margin += normal[d] * value[d];
+            }
+
+            if (margin > 0 || (margin == 0 && rand.nextBoolean())) {
+                left++;
+            } else {
+                int tmp = positions[left];
+                positions[left] = positions[right];
+                positions[right] = tmp;
+                right--;
+            }
+        }
+
+        // All nodes are on the same side (for example identical nodes)
+        // => split in the middle
+        if (left == start || left == end) {
+            return start + size / 2;
+        }
+        return left;
+    }
+
+    /**
+     * Compare all nodes of the leaf to each other.
+     *
+     * @return the number of computed similarities
+     */
+    private int joinLeaf(
+            final List<Node<double[]>> nodes,
+            final SimilarityInterface<double[]> similarity,
+            final IntNeighborList[] neighborlists,
+            final int[] positions,
+            final int start,
+            final int end) {
+
+        int computed_similarities = 0;
+        for (int i = start; i < end; i++) {
+            int u1 = positions[i];
+            for (int j = i + 1; j < end; j++) {
+                int u2 = positions[j];
+
+                // This pair was already found in a previous tree
+                if (neighborlists[u1].contains(u2)) {
+                    continue;
+                }
+
+                double sim = similarity.similarity(
+                        nodes.get(u1).value, nodes.get(u2).value);
+                computed_similarities++;
+                neighborlists[u1].offer(u2, sim);
+                neighborlists[u2].offer(u1, sim);
+            }
+        }
+        return computed_similarities;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import java.util.Random;
+
+/**
+ * Random hyperplanes signature (SimHash) of a double[] vector: each element
+ * of the signature is 1 if the vector is on the positive side of a random
+ * hyperplane, 0 otherwise. The probability that two vectors have the same
+ * signature element is 1 - angle / pi (related to the cosine similarity).
+ *
+ * @author Thibault Debatty
+ */
+public class SimHash implements SignatureFunction<double[]> {
+
+    // Normal vectors of the hyperplanes, row-major
+    private final double[] hyperplanes;
+    private final int dimension;
+    private final int size;
+
+    /**
+     *
+     * @param size number of hyperplanes (length of the signatures)
+     * @param dimension dimension of the vectors
+     * @param seed
+     */
+    public SimHash(final int size, final int dimension, final long seed) {
+        Random rand = new Random(seed);
+        this.size = size;
+        this.dimension = dimension;
+        this.hyperplanes = new double[size * dimension];
+        for (int i = 0; i < hyperplanes.length; i++) {
+            hyperplanes[i] = rand.nextGaussian();
+        }
+    }
+
+    /**
+     *
+     * @param size number of hyperplanes (length of the signatures)
+     * @param dimension dimension of the vectors
+     */
+    public SimHash(final int size, final int dimension) {
+        this(size, dimension, System.nanoTime());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final int[] signature(final double[] value) {
+        if (value.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Vectors must have dimension " + dimension);
+        }
+
+        int[] signature = new int[size];
+        for (int i = 0; i < size; i++) {
+            int offset = i * dimension;
+            double dot = 0;
+            for (int d = 0; d < dimension; d++) {
+                dot += hyperplanes[offset + d] * value[d];
+            }
+            signature[i] = dot >= 0 ? 1 : 0;
+        }
+        return signature;
+    }
+}
@@ -25,13 +25,12 @@
 package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.Graph;
-import info.debatty.java.graphs.Neighbor;
-import info.debatty.java.graphs.NeighborList;
+import info.debatty.java.graphs.IntNeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.Similarities;
 import info.debatty.java.graphs.SimilarityInterface;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -41,118 +40,237 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Multi-threaded brute-force graph builder.
+ *
+ * The (triangular) similarity matrix is split in square blocks. All blocks
+ * are queued on a thread pool, so idle threads pick the next block, and
+ * diagonal blocks (which contain half the work) are queued last. When a block
+ * is finished, its neighborlists are immediately merged into the shared
+ * neighborlists (locking one neighborlist at a time), then discarded. Hence
+ * the memory used by the blocks is bounded by the number of threads.
  *
  * @author Thibault Debatty
  * @param <T>
  */
 public class ThreadedBrute<T> extends GraphBuilder<T> {
 
+    /**
+     * @deprecated the block size is now computed automatically (see
+     * {@link #setBlockSize(int)})
+     */
+    @Deprecated
     public static final int NODES_PER_BLOCK = 1000;
 
+    // Bounds of the automatic block size
+    private static final int MIN_BLOCK_SIZE = 64;
+    private static final int MAX_BLOCK_SIZE = 2048;
+
+    // Number of blocks per thread, for load balancing
+    private static final int BLOCKS_PER_THREAD = 16;
+
+    private int block_size = 0;
+
+    public int getBlockSize() {
+        return block_size;
+    }
+
+    /**
+     * Set the number of nodes per block. Default = 0 = automatic (depending
+     * on the number of nodes and available processors).
+     *
+     * @param block_size
+     */
+    public void setBlockSize(final int block_size) {
+        this.block_size = block_size;
+    }
+
     @Override
     protected final Graph<T> _computeGraph(final List<Node<T>> nodes) {
 
-        // Start all blocks
         int n = nodes.size();
         int cores = Runtime.getRuntime().availableProcessors();
-        ExecutorService executor = Executors.newFixedThreadPool(cores);
-        ArrayList<Future<Graph<T>>> results = new ArrayList<Future<Graph<T>>>();
-
-        for (int i = 0; i < n; i += NODES_PER_BLOCK) {
-            for (int j = 0; j <= i; j += NODES_PER_BLOCK) {
-                results.add(executor.submit(
-                        new BruteBlock(nodes, k, similarity, i, j)));
-            }
+        int size = block_size;
+        if (size <= 0) {
+            size = BlockSize(n, cores);
         }
 
         // Initialize all NeighborLists
-        Graph<T> graph = new Graph<T>();
-        for (Node node : nodes) {
-            graph.put(node, new NeighborList(k));
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int i = 0; i < n; i++) {
+            neighborlists[i] = new IntNeighborList(k);
         }
 
-        // Aggregate all subgraphs
-        for (Future<Graph<T>> future : results) {
-            Graph<T> subgraph;
-            try {
-                subgraph = future.get();
-                for (Map.Entry<Node<T>, NeighborList> entry : subgraph.entrySet()) {
-                    graph.get(entry.getKey()).addAll(entry.getValue());
-                }
-
-            } catch (InterruptedException ex) {
-                Logger.getLogger(ThreadedBrute.class.getName()).log(Level.SEVERE, null, ex);
+        // Off-diagonal blocks first, then diagonal blocks (half the work)
+        ArrayList<Callable<Integer>> blocks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < n; i += size) {
+            for (int j = 0; j < i; j += size) {
+                blocks.add(new BruteBlock<T>(
+                        nodes, neighborlists, k, similarity, i, j, size));
+            }
+        }
+        for (int i = 0; i < n; i += size) {
+            blocks.add(new BruteBlock<T>(
+                    nodes, neighborlists, k, similarity, i, i, size));
+        }
 
-            } catch (ExecutionException ex) {
-                Logger.getLogger(ThreadedBrute.class.getName()).log(Level.SEVERE, null, ex);
+        ExecutorService executor = Executors.newFixedThreadPool(cores);
+        try {
+            for (Future<Integer> future : executor.invokeAll(blocks)) {
+                computed_similarities += future.get();
             }
+
+        } catch (InterruptedException ex) {
+            Logger.getLogger(ThreadedBrute.class.getName()).log(Level.SEVERE, null, ex);
+
+        } catch (ExecutionException ex) {
+            Logger.getLogger(ThreadedBrute.class.getName()).log(Level.SEVERE, null, ex);
         }
+        executor.shutdown();
 
-        return graph;
+        return toGraph(nodes, neighborlists);
+    }
+
+    /**
+     * Compute a block size such that each thread processes several blocks.
+     *
+     * @param n number of nodes
+     * @param threads
+     * @return
+     */
+    static int BlockSize(final int n, final int threads) {
+        // n² / 2 / size² = threads * BLOCKS_PER_THREAD
+        int size = (int) (n / Math.sqrt(2.0 * threads * BLOCKS_PER_THREAD));
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
     }
 }
 
 /**
+ * Computes the similarities between the nodes of block i and block j, and
+ * merges the results in the shared neighborlists.
  *
  * @author Thibault Debatty
  * @param <T>
  */
-class BruteBlock<T> implements Callable<Graph<T>> {
+class BruteBlock<T> implements Callable<Integer> {
     private final int i_start;
     private final List<Node<T>> nodes;
+    private final IntNeighborList[] neighborlists;
     private final SimilarityInterface<T> similarity;
     private final int k;
     private final int j_start;
+    private final int size;
 
     BruteBlock(
             final List<Node<T>> nodes,
+            final IntNeighborList[] neighborlists,
             final int k,
             final SimilarityInterface<T> similarity,
             final int i_start,
-            final int j_start) {
+            final int j_start,
+            final int size) {
 
         this.nodes = nodes;
+        this.neighborlists = neighborlists;
         this.k = k;
         this.similarity = similarity;
         this.i_start = i_start;
         this.j_start = j_start;
+        this.size = size;
     }
 
-    public Graph<T> call() throws Exception {
+    /**
+     * @return the number of computed similarities
+     */
+    public Integer call() {
 
         int n = nodes.size();
-        int i_end = Math.min(i_start + ThreadedBrute.NODES_PER_BLOCK, n);
-        int j_end = Math.min(j_start + ThreadedBrute.NODES_PER_BLOCK, n);
+        int i_end = Math.min(i_start + size, n);
+        int j_end = Math.min(j_start + size, n);
+        int computed_similarities = 0;
 
         // Initialize neighborlists
-        Graph<T> graph = new Graph<T>();
-        for (int i = i_start; i < i_end; i++) {
-            Node node = nodes.get(i);
-            graph.put(node, new NeighborList(k));
+        // (on the diagonal, both blocks share the same neighborlists)
+        IntNeighborList[] i_neighborlists = new IntNeighborList[i_end - i_start];
+        for (int i = 0; i < i_neighborlists.length; i++) {
+            i_neighborlists[i] = new IntNeighborList(k);
         }
 
-        for (int j = j_start; j < j_end; j++) {
-            Node node = nodes.get(j);
-            graph.put(node, new NeighborList(k));
+        IntNeighborList[] j_neighborlists = i_neighborlists;
+        if (i_start != j_start) {
+            j_neighborlists = new IntNeighborList[j_end - j_start];
+            for (int j = 0; j < j_neighborlists.length; j++) {
+                j_neighborlists[j] = new IntNeighborList(k);
+            }
         }
 
+        List<T> values = Similarities.values(nodes);
+        double[] similarities = new double[j_end - j_start];
+        boolean bounded = Similarities.isBounded(similarity);
+
         for (int i = i_start; i < i_end; i++) {
-            Node n1 = nodes.get(i);
+            T value = nodes.get(i).value;
+            IntNeighborList nl = i_neighborlists[i - i_start];
+
+            // On the diagonal, only compare to the nodes before i
+            int last = Math.min(j_end, i);
+            if (last <= j_start) {
+                continue;
+            }
 
-            for (int j = j_start; j < j_end; j++) {
+            computed_similarities += last - j_start;
 
-                if (i == j) {
-                    break;
+            if (bounded) {
+                // The thresholds of the block neighborlists are lower than
+                // (or equal to) the thresholds of the shared neighborlists
+                for (int j = j_start; j < last; j++) {
+                    IntNeighborList j_nl = j_neighborlists[j - j_start];
+                    double sim = Similarities.similarity(
+                            similarity,
+                            value,
+                            values.get(j),
+                            Math.min(nl.threshold(), j_nl.threshold()));
+                    nl.offer(j, sim);
+                    j_nl.offer(i, sim);
                 }
+                continue;
+            }
 
-                Node n2 = nodes.get(j);
-                double sim = similarity.similarity((T) n1.value, (T) n2.value);
+            Similarities.similarities(
+                    similarity,
+                    value,
+                    values.subList(j_start, last),
+                    similarities);
 
-                graph.get(n1).add(new Neighbor(n2, sim));
-                graph.get(n2).add(new Neighbor(n1, sim));
+            for (int j = j_start; j < last; j++) {
+                double sim = similarities[j - j_start];
+                nl.offer(j, sim);
+                j_neighborlists[j - j_start].offer(i, sim);
             }
         }
 
-        return graph;
+        merge(i_neighborlists, i_start);
+        if (j_neighborlists != i_neighborlists) {
+            merge(j_neighborlists, j_start);
+        }
+
+        return computed_similarities;
+    }
+
+    /**
+     * Merge the neighborlists computed by this block into the shared
+     * neighborlists.
+     *
+     * @param block_neighborlists
+     * @param start
+     */
+    private void merge(
+            final IntNeighborList[] block_neighborlists, final int start) {
+
+        for (int i = 0; i < block_neighborlists.length; i++) {
+            IntNeighborList nl = neighborlists[start + i];
+            synchronized (nl) {
+                nl.addAll(block_neighborlists[i]);
+            }
+        }
     }
 }
@@ -1,91 +1,112 @@
 package info.debatty.java.graphs.build;
 
 import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
 import info.debatty.java.graphs.Node;
+import info.debatty.java.util.BoundedIntLists;
+import info.debatty.java.util.IntArrayList;
+import info.debatty.java.util.PairCache;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * Multi-threaded implementation of NN-Descent. Every phase of an iteration
+ * (sampling, reverse and local join) is split between threads, each thread
+ * processing a contiguous slice of the nodes.
+ *
+ * Neighborlists are shared between threads during the local join and
+ * protected by a fixed pool of striped locks. Each thread counts modified
+ * edges and computed similarities locally, and the counters are summed once
+ * all threads have finished the iteration. The optional pair cache is also
+ * shared between threads (see {@link PairCache}).
  *
  * @author Thibault Debatty
  * @param <T>
  */
 public class ThreadedNNDescent<T> extends NNDescent<T> {
 
+    // Number of locks per thread, to reduce contention
+    private static final int LOCKS_PER_THREAD = 64;
+
     // Internal state, used by worker objects
     private int cores;
+    private ExecutorService executor;
+    private Object[] locks;
+    private int locks_mask;
     private List<Node<T>> nodes;
-    private Graph<T> neighborlists;
-    private HashMap<Node<T>, ArrayList> old_lists, new_lists, old_lists_2,
-            new_lists_2;
+    private IntNeighborList[] neighborlists;
+    private BoundedIntLists old_lists, new_lists, old_lists_2, new_lists_2;
+
+    // Reverse phase: buckets[t][p] contains the (target, source) pairs found
+    // by thread t, for the targets of partition p
+    private IntArrayList[][] buckets;
 
     @Override
-    protected final Graph<T> _computeGraph(final List<Node<T>> nodes) {
+    protected final Graph<T> Descent(
+            final List<Node<T>> nodes,
+            final IntNeighborList[] neighborlists,
+            final double threshold) {
+
         // Create worker threads
         cores = Runtime.getRuntime().availableProcessors();
-        ExecutorService executor = Executors.newFixedThreadPool(cores);
-
-        iterations = 0;
-
-        if (nodes.size() <= (k + 1)) {
-            return MakeFullyLinked(nodes);
-        }
+        executor = Executors.newFixedThreadPool(cores);
 
         // Initialize state...
+        int n = nodes.size();
         this.nodes = nodes;
-        this.neighborlists = new Graph<T>(nodes.size());
-        this.old_lists = new HashMap<Node<T>, ArrayList>(nodes.size());
-        this.new_lists = new HashMap<Node<T>, ArrayList>(nodes.size());
+        this.neighborlists = neighborlists;
+        this.old_lists = new BoundedIntLists(n, k + SampleSize());
+        this.new_lists = new BoundedIntLists(n, k + SampleSize());
+        this.old_lists_2 = new BoundedIntLists(n, SampleSize());
+        this.new_lists_2 = new BoundedIntLists(n, SampleSize());
+        this.locks = NewLocks(cores * LOCKS_PER_THREAD);
+        this.locks_mask = locks.length - 1;
+        this.buckets = new IntArrayList[cores][];
+        for (int t = 0; t < cores; t++) {
+            buckets[t] = NewLists(cores);
+        }
 
         HashMap<String, Object> data = new HashMap<String, Object>();
-
-        // B[v]←− Sample(V,K)×{?∞, true?} ∀v ∈ V
-        // For each node, create a random neighborlist
-        for (Node v : nodes) {
-            neighborlists.put(v, RandomNeighborList(nodes, v));
-        }
+        pair_cache = NewPairCache();
 
         // loop
         while (true) {
             iterations++;
-            c = 0;
 
             // for v ∈ V do
             // old[v]←− all items in B[v] with a false flag
             // new[v]←− ρK items in B[v] with a true flag
             // Mark sampled items in B[v] as false;
-            for (int i = 0; i < nodes.size(); i++) {
-                Node v = nodes.get(i);
-                old_lists.put(v, PickFalses(neighborlists.get(v)));
-                new_lists.put(v, PickTruesAndMark(neighborlists.get(v)));
-
-            }
+            SampleLists(neighborlists, old_lists, new_lists);
 
             // old′ ←Reverse(old)
             // new′ ←Reverse(new)
-            old_lists_2 = Reverse(nodes, old_lists);
-            new_lists_2 = Reverse(nodes, new_lists);
+            // (reversed lists are directly sampled to ρK items)
+            Reverse(old_lists, old_lists_2);
+            Reverse(new_lists, new_lists_2);
 
-            ArrayList<Future<Integer>> list = new ArrayList<Future<Integer>>();
-            // Start threads...
+            ArrayList<Callable<LocalJoinStats>> tasks =
+                    new ArrayList<Callable<LocalJoinStats>>();
             for (int t = 0; t < cores; t++) {
-                list.add(executor.submit(new ThreadedNNDescent.NNThread(t)));
-
+                tasks.add(new NNThread(t));
             }
 
-            for (Future<Integer> future : list) {
-                try {
-                    c += future.get();
-                } catch (InterruptedException e) {
-                } catch (ExecutionException e) {
-                }
+            // Merge the counters (in the same order at every iteration)
+            LocalJoinStats stats = new LocalJoinStats();
+            for (LocalJoinStats thread_stats : InvokeAll(tasks)) {
+                stats.add(thread_stats);
             }
+            c = stats.modified_edges;
+            computed_similarities += stats.similarities;
 
             //System.out.println("C : " + c);
             if (callback != null) {
@@ -95,10 +116,11 @@ public class ThreadedNNDescent<T> extends NNDescent<T> {
                 data.put("computed_similarities_ratio",
                         (double) computed_similarities
                                 / (nodes.size() * (nodes.size() - 1) / 2));
+                PutCacheCounters(data);
                 callback.call(data);
             }
 
-            if (c <= (delta * nodes.size() * k)) {
+            if (c <= threshold) {
                 break;
             }
 
@@ -110,21 +132,230 @@ public class ThreadedNNDescent<T> extends NNDescent<T> {
         executor.shutdown();
 
         // Clear local state
-        Graph<T> n = this.neighborlists;
+        Graph<T> graph = toGraph(nodes, neighborlists);
+        this.executor = null;
         this.neighborlists = null;
         this.new_lists = null;
         this.new_lists_2 = null;
         this.nodes = null;
         this.old_lists = null;
         this.old_lists_2 = null;
+        this.locks = null;
+        this.buckets = null;
+        this.pair_cache = null;
+
+        return graph;
+    }
+
+    /**
+     * Sampling is performed in parallel: each thread processes a slice of
+     * the nodes, with its own random generator.
+     *
+     * @param neighborlists
+     * @param old_lists
+     * @param new_lists
+     */
+    @Override
+    protected final void SampleLists(
+            final IntNeighborList[] neighborlists,
+            final BoundedIntLists old_lists,
+            final BoundedIntLists new_lists) {
+
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < cores; t++) {
+            final int slice = t;
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    Random rand = new Random();
+                    int end = SliceEnd(slice, neighborlists.length);
+                    for (int v = SliceStart(slice, neighborlists.length);
+                            v < end; v++) {
+                        PickFalses(neighborlists[v], old_lists, v);
+                        PickTruesAndMark(
+                                neighborlists[v], new_lists, v, rand);
+                    }
+                    return null;
+                }
+            });
+        }
+        InvokeAll(tasks);
+    }
+
+    /**
+     * Reverse is performed in two parallel passes. First, each thread scans
+     * the lists of its slice of nodes, and puts every (target, source) pair
+     * in a bucket according to the partition of the target. Then each thread
+     * merges the buckets of one partition into the (reservoir sampled)
+     * reversed lists, using its own random generator.
+     *
+     * @param lists
+     * @param reversed
+     */
+    @Override
+    protected final void Reverse(
+            final BoundedIntLists lists,
+            final BoundedIntLists reversed) {
+
+        final int n = lists.count();
+
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < cores; t++) {
+            final int slice = t;
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    IntArrayList[] my_buckets = buckets[slice];
+                    for (IntArrayList bucket : my_buckets) {
+                        bucket.clear();
+                    }
+
+                    int end = SliceEnd(slice, n);
+                    for (int node = SliceStart(slice, n); node < end; node++) {
+                        reversed.clear(node);
+
+                        for (int i = 0; i < lists.size(node); i++) {
+                            int target = lists.get(node, i);
+                            IntArrayList bucket =
+                                    my_buckets[Partition(target, n)];
+                            bucket.add(target);
+                            bucket.add(node);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        InvokeAll(tasks);
+
+        tasks.clear();
+        for (int p = 0; p < cores; p++) {
+            final int partition = p;
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    Random rand = new Random();
+                    for (int t = 0; t < cores; t++) {
+                        IntArrayList bucket = buckets[t][partition];
+                        for (int i = 0; i < bucket.size(); i += 2) {
+                            reversed.offer(
+                                    bucket.get(i), bucket.get(i + 1), rand);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        InvokeAll(tasks);
+    }
+
+    /**
+     * Neighborlists are shared between threads: the lock of the stripe of
+     * owner is held while the neighborlist is modified.
+     *
+     * @param neighborlists
+     * @param owner
+     * @param node
+     * @param similarity
+     * @return
+     */
+    @Override
+    protected final int UpdateNL(
+            final IntNeighborList[] neighborlists,
+            final int owner,
+            final int node,
+            final double similarity) {
+
+        synchronized (locks[owner & locks_mask]) {
+            return neighborlists[owner].offer(node, similarity) ? 1 : 0;
+        }
+    }
+
+    /**
+     * The threshold is read while holding the lock of the stripe of owner.
+     *
+     * @param neighborlists
+     * @param owner
+     * @return
+     */
+    @Override
+    protected final double Threshold(
+            final IntNeighborList[] neighborlists, final int owner) {
+
+        synchronized (locks[owner & locks_mask]) {
+            return neighborlists[owner].threshold();
+        }
+    }
+
+    /**
+     * Create at least count locks (the number of locks is a power of 2).
+     *
+     * @param count
+     * @return
+     */
+    private Object[] NewLocks(final int count) {
+        int size = 1;
+        while (size < count) {
+            size <<= 1;
+        }
 
-        return n;
+        Object[] new_locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            new_locks[i] = new Object();
+        }
+        return new_locks;
     }
 
     /**
+     * Run the tasks on the executor, and wait for all of them to complete.
      *
+     * @param tasks
+     * @return the results of the tasks, in the same order as the tasks
      */
-    class NNThread implements Callable<Integer> {
+    private <R> List<R> InvokeAll(final List<Callable<R>> tasks) {
+        ArrayList<R> results = new ArrayList<R>(tasks.size());
+        try {
+            for (Future<R> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(ThreadedNNDescent.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        } catch (ExecutionException ex) {
+            Logger.getLogger(ThreadedNNDescent.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+        return results;
+    }
+
+    /**
+     * First node of this slice.
+     */
+    private int SliceStart(final int slice, final int n) {
+        return (int) ((long) slice * n / cores);
+    }
+
+    /**
+     * Last node (excluded) of this slice.
+     */
+    private int SliceEnd(final int slice, final int n) {
+        if (slice == (cores - 1)) {
+            return n;
+        }
+        return (int) ((long) (slice + 1) * n / cores);
+    }
+
+    /**
+     * Partition of a node, used to merge the buckets of the reverse phase.
+     */
+    private int Partition(final int node, final int n) {
+        return (int) ((long) node * cores / n);
+    }
+
+    /**
+     *
+     */
+    class NNThread implements Callable<LocalJoinStats> {
 
         private final int slice;
 
@@ -133,62 +364,22 @@ public class ThreadedNNDescent<T> extends NNDescent<T> {
         }
 
         @Override
-        public Integer call() {
-            int c = 0;
+        public LocalJoinStats call() {
+            LocalJoinStats stats = new LocalJoinStats();
             // for v ∈ V do
-            int start = slice * nodes.size() / cores;
-            int end = (slice + 1) * nodes.size() / cores;
+            int start = SliceStart(slice, nodes.size());
+            int end = SliceEnd(slice, nodes.size());
 
-            // Last slice should go to the end...
-            if (slice == (cores - 1)) {
-                end = nodes.size();
-            }
-
-            for (int i = start; i < end; i++) {
-                Node v = nodes.get(i);
+            for (int v = start; v < end; v++) {
                 // old[v]←− old[v] ∪ Sample(old′[v], ρK)
                 // new[v]←− new[v] ∪ Sample(new′[v], ρK)
-                old_lists.put(v,
-                        Union(
-                                old_lists.get(v),
-                                Sample(old_lists_2.get(v), (int) (rho * k))));
-                new_lists.put(v,
-                        Union(
-                                new_lists.get(v),
-                                Sample(new_lists_2.get(v), (int) (rho * k))));
-
-                // for u1,u2 ∈ new[v], u1 < u2 do
-                for (int j = 0; j < new_lists.get(v).size(); j++) {
-                    Node u1 = (Node) new_lists.get(v).get(j);
-
-                    for (int k = j + 1; k < new_lists.get(u1).size(); k++) {
-                        Node u2 = (Node) new_lists.get(u1).get(k);
-                        //int u2_i = Find(u2);
-
-                        // l←− σ(u1,u2)
-                        // c←− c+UpdateNN(B[u1], u2, l, true)
-                        // c←− c+UpdateNN(B[u2], u1, l, true)
-                        double s = Similarity(u1, u2);
-                        c += UpdateNL(neighborlists.get(u1), u2, s);
-                        c += UpdateNL(neighborlists.get(u2), u1, s);
-                    }
+                Union(old_lists, old_lists_2, v);
+                Union(new_lists, new_lists_2, v);
 
-                    // or u1 ∈ new[v], u2 ∈ old[v] do
-                    for (int k = 0; k < old_lists.get(v).size(); k++) {
-                        Node u2 = (Node) old_lists.get(v).get(k);
-
-                        if (u1.equals(u2)) {
-                            continue;
-                        }
-
-                        //int u2_i = Find(u2);
-                        double s = Similarity(u1, u2);
-                        c += UpdateNL(neighborlists.get(u1), u2, s);
-                        c += UpdateNL(neighborlists.get(u2), u1, s);
-                    }
-                }
+                LocalJoin(
+                        nodes, neighborlists, old_lists, new_lists, v, stats);
             }
-            return c;
+            return stats;
         }
     }
 }
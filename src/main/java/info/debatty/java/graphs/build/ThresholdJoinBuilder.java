@@ -0,0 +1,454 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Neighbor;
+import info.debatty.java.graphs.NeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.similarity.JaccardSimilarity;
+import info.debatty.java.util.IntArrayList;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact similarity join for sets (of tokens, shingles, ...): the resulting
+ * graph contains an edge between every pair of nodes whose Jaccard
+ * similarity is at least threshold. Hence, unlike k-nn graphs, the degree
+ * of the nodes is not bounded (k is not used by the join, it is only set on
+ * the resulting graph).
+ *
+ * The join is based on the PPJoin algorithm (Xiao et al., "Efficient
+ * similarity joins for near duplicate detection"):
+ * - tokens are replaced by their rank in increasing order of frequency, and
+ *   sets are sorted by size;
+ * - prefix filtering: two sets can only reach the threshold if their
+ *   prefixes (rarest tokens) share at least one token, hence only prefixes
+ *   are stored in an inverted index;
+ * - length filtering: sets that are too small are skipped;
+ * - positional filtering: candidates whose remaining tokens cannot reach
+ *   the required overlap are discarded.
+ * The remaining candidates are verified by merging the sorted sets.
+ *
+ * The inverted index is built once, then the sets are probed in parallel
+ * (using the executor, if any): each thread picks chunks of sets and uses its
+ * own counters. If a thread fails, or the join is interrupted, computeGraph
+ * throws an exception instead of returning an incomplete graph.
+ *
+ * @author Thibault Debatty
+ * @param <E> The type of elements in the sets
+ */
+public class ThresholdJoinBuilder<E> extends GraphBuilder<Set<E>> {
+
+    // Number of sets probed by a thread before picking the next chunk
+    private static final int CHUNK_SIZE = 256;
+
+    private double threshold = 0.5;
+    private transient ExecutorService executor = null;
+
+    /**
+     * The similarity (used for search in the resulting graph) is the Jaccard
+     * similarity.
+     */
+    public ThresholdJoinBuilder() {
+        similarity = new JaccardSimilarity<E>();
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Minimum Jaccard similarity of the edges. In ]0, 1]. Default is 0.5.
+     *
+     * @param threshold
+     */
+    public void setThreshold(final double threshold) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new InvalidParameterException("0 < threshold <= 1");
+        }
+        this.threshold = threshold;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Executor used to probe the sets in parallel. The executor is not shut
+     * down by the builder. Default = null = use a new thread pool with one
+     * thread per available processor.
+     *
+     * @param executor
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    protected final Graph<Set<E>> _computeGraph(
+            final List<Node<Set<E>>> nodes) {
+
+        // Sets, ordered by size, with tokens ordered by frequency
+        final int n = nodes.size();
+        final int[] order = sortBySize(nodes);
+        final int[][] records = tokenize(nodes, order);
+
+        // Inverted index of the (shorter) indexing prefix of each record:
+        // for each token, the (record, position) pairs, by increasing record
+        final IntArrayList[] index = buildIndex(records);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        final AtomicInteger next_chunk = new AtomicInteger();
+        ArrayList<Callable<JoinResult>> tasks =
+                new ArrayList<Callable<JoinResult>>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(new Callable<JoinResult>() {
+
+                public JoinResult call() {
+                    JoinResult result = new JoinResult(n);
+                    int chunk;
+                    while ((chunk = next_chunk.getAndIncrement()) * CHUNK_SIZE
+                            < n) {
+                        int end = Math.min(n, (chunk + 1) * CHUNK_SIZE);
+                        for (int x = chunk * CHUNK_SIZE; x < end; x++) {
+                            probe(records, index, x, result);
+                        }
+                    }
+                    return result;
+                }
+            });
+        }
+
+        ExecutorService pool = executor;
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        // The join is exact: if a task fails, fail instead of returning a
+        // graph with missing edges
+        ArrayList<JoinResult> results = new ArrayList<JoinResult>();
+        try {
+            for (Future<JoinResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while computing the join", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            if (executor == null) {
+                pool.shutdown();
+            }
+        }
+
+        // Build the neighborlists, with a capacity equal to the degree
+        int[] degrees = new int[n];
+        for (JoinResult result : results) {
+            computed_similarities += result.verified;
+            for (int i = 0; i < result.pairs.size(); i += 3) {
+                degrees[result.pairs.get(i)]++;
+                degrees[result.pairs.get(i + 1)]++;
+            }
+        }
+
+        NeighborList[] neighborlists = new NeighborList[n];
+        for (int r = 0; r < n; r++) {
+            neighborlists[r] = new NeighborList(Math.max(1, degrees[r]));
+        }
+
+        for (JoinResult result : results) {
+            for (int i = 0; i < result.pairs.size(); i += 3) {
+                int x = result.pairs.get(i);
+                int y = result.pairs.get(i + 1);
+                int overlap = result.pairs.get(i + 2);
+                double sim = (double) overlap
+                        / (records[x].length + records[y].length - overlap);
+                neighborlists[x].add(new Neighbor(nodes.get(order[y]), sim));
+                neighborlists[y].add(new Neighbor(nodes.get(order[x]), sim));
+            }
+        }
+
+        Graph<Set<E>> graph = new Graph<Set<E>>(k);
+        for (int r = 0; r < n; r++) {
+            graph.put(nodes.get(order[r]), neighborlists[r]);
+        }
+        return graph;
+    }
+
+    /**
+     * Find all records y &lt; x (in size order) similar to record x, using
+     * the prefix of x to probe the index.
+     *
+     * @param records
+     * @param index
+     * @param x
+     * @param result
+     */
+    private void probe(
+            final int[][] records,
+            final IntArrayList[] index,
+            final int x,
+            final JoinResult result) {
+
+        int[] record = records[x];
+        int size = record.length;
+        if (size == 0) {
+            return;
+        }
+
+        int min_size = (int) Math.ceil(threshold * size - 1E-9);
+        int prefix = size - min_size + 1;
+        int[] overlaps = result.overlaps;
+        IntArrayList candidates = result.candidates;
+
+        for (int i = 0; i < prefix; i++) {
+            IntArrayList postings = index[record[i]];
+            for (int p = 0; p < postings.size(); p += 2) {
+                int y = postings.get(p);
+                if (y >= x) {
+                    // Postings are sorted by record
+                    break;
+                }
+
+                int y_size = records[y].length;
+                if (y_size < min_size || overlaps[y] < 0) {
+                    // Length filter, or already pruned
+                    continue;
+                }
+
+                // Positional filter: overlap found so far + maximum
+                // overlap of the remaining tokens
+                int j = postings.get(p + 1);
+                int required = RequiredOverlap(size, y_size);
+                int bound = overlaps[y] + 1
+                        + Math.min(size - i - 1, y_size - j - 1);
+                if (bound < required) {
+                    // Keep track of y, to reset its counter afterwards
+                    if (overlaps[y] == 0) {
+                        candidates.add(y);
+                    }
+                    overlaps[y] = -1;
+                    continue;
+                }
+
+                if (overlaps[y] == 0) {
+                    candidates.add(y);
+                }
+                overlaps[y]++;
+            }
+        }
+
+        // Verify the candidates, and reset the counters
+        for (int c = 0; c < candidates.size(); c++) {
+            int y = candidates.get(c);
+            if (overlaps[y] > 0) {
+                result.verified++;
+                int overlap = Overlap(record, records[y]);
+                if (overlap >= RequiredOverlap(size, records[y].length)) {
+                    result.pairs.add(x);
+                    result.pairs.add(y);
+                    result.pairs.add(overlap);
+                }
+            }
+            overlaps[y] = 0;
+        }
+        candidates.clear();
+    }
+
+    /**
+     *
+     * @return the minimum overlap such that the Jaccard similarity between
+     * sets of these sizes is at least threshold
+     */
+    private int RequiredOverlap(final int size1, final int size2) {
+        // o / (s1 + s2 - o) >= t <=> o >= t / (1 + t) * (s1 + s2)
+        // (with a small tolerance for rounding errors)
+        return (int) Math.ceil(
+                threshold / (1 + threshold) * (size1 + size2) - 1E-9);
+    }
+
+    /**
+     *
+     * @return the number of common tokens of two sorted records
+     */
+    private static int Overlap(final int[] record1, final int[] record2) {
+        int overlap = 0;
+        int i = 0;
+        int j = 0;
+        while (i < record1.length && j < record2.length) {
+            if (record1[i] == record2[j]) {
+                overlap++;
+                i++;
+                j++;
+            } else if (record1[i] < record2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return overlap;
+    }
+
+    /**
+     *
+     * @return the positions of the nodes, sorted by size of their set
+     */
+    private int[] sortBySize(final List<Node<Set<E>>> nodes) {
+        Integer[] sorted = new Integer[nodes.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+
+            public int compare(final Integer i1, final Integer i2) {
+                int s1 = nodes.get(i1).value.size();
+                int s2 = nodes.get(i2).value.size();
+                return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+            }
+        });
+
+        int[] order = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            order[i] = sorted[i];
+        }
+        return order;
+    }
+
+    /**
+     * Replace each token by its rank in increasing order of frequency, and
+     * sort the tokens of each set (rarest first).
+     *
+     * @param nodes
+     * @param order
+     * @return the records (sorted arrays of token ranks), in size order
+     */
+    private int[][] tokenize(
+            final List<Node<Set<E>>> nodes, final int[] order) {
+
+        final HashMap<E, int[]> frequencies = new HashMap<E, int[]>();
+        for (Node<Set<E>> node : nodes) {
+            for (E token : node.value) {
+                int[] frequency = frequencies.get(token);
+                if (frequency == null) {
+                    frequency = new int[2];
+                    frequencies.put(token, frequency);
+                }
+                frequency[0]++;
+            }
+        }
+
+        // Rank tokens by frequency
+        ArrayList<int[]> counts = new ArrayList<int[]>(frequencies.values());
+        Collections.sort(counts, new Comparator<int[]>() {
+
+            public int compare(final int[] f1, final int[] f2) {
+                return f1[0] < f2[0] ? -1 : (f1[0] == f2[0] ? 0 : 1);
+            }
+        });
+        for (int rank = 0; rank < counts.size(); rank++) {
+            counts.get(rank)[1] = rank;
+        }
+
+        int[][] records = new int[order.length][];
+        for (int r = 0; r < order.length; r++) {
+            Set<E> set = nodes.get(order[r]).value;
+            int[] record = new int[set.size()];
+            int i = 0;
+            for (E token : set) {
+                record[i++] = frequencies.get(token)[1];
+            }
+            Arrays.sort(record);
+            records[r] = record;
+        }
+        return records;
+    }
+
+    /**
+     * Index the (shorter) indexing prefix of each record. The records are
+     * sorted by size, hence a record y is only probed by records x that are
+     * at least as large.
+     *
+     * @param records
+     * @return
+     */
+    private IntArrayList[] buildIndex(final int[][] records) {
+        int tokens = 0;
+        for (int[] record : records) {
+            if (record.length > 0) {
+                tokens = Math.max(tokens, record[record.length - 1] + 1);
+            }
+        }
+
+        IntArrayList[] index = new IntArrayList[tokens];
+        for (int t = 0; t < tokens; t++) {
+            index[t] = new IntArrayList();
+        }
+
+        for (int y = 0; y < records.length; y++) {
+            int size = records[y].length;
+            int prefix = size - RequiredOverlap(size, size) + 1;
+            for (int j = 0; j < prefix && j < size; j++) {
+                index[records[y][j]].add(y);
+                index[records[y][j]].add(j);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Pairs found by a thread, with its scratch buffers.
+     */
+    private static class JoinResult {
+        // (x, y, overlap) triples
+        private final IntArrayList pairs = new IntArrayList();
+        private final IntArrayList candidates = new IntArrayList();
+        private final int[] overlaps;
+        private int verified;
+
+        JoinResult(final int n) {
+            overlaps = new int[n];
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BatchSimilarity;
+import java.util.List;
+
+/**
+ * Cosine similarity between dense double[] vectors. In batch mode, the norm
+ * of the query vector is computed only once. Use {@link DenseVector} and
+ * {@link DenseVectorCosine} to also avoid recomputing the norms of the other
+ * vectors.
+ *
+ * @author Thibault Debatty
+ */
+public class CosineSimilarity implements BatchSimilarity<double[]> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(
+            final double[] value1, final double[] value2) {
+        return VectorKernels.cosine(
+                VectorKernels.dot(value1, value2),
+                VectorKernels.norm(value1),
+                VectorKernels.norm(value2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void similarities(
+            final double[] value, final List<double[]> values,
+            final double[] result) {
+        double norm = VectorKernels.norm(value);
+        for (int i = 0; i < values.size(); i++) {
+            double[] other = values.get(i);
+            result[i] = VectorKernels.cosine(
+                    VectorKernels.dot(value, other),
+                    norm,
+                    VectorKernels.norm(other));
+        }
+    }
+}
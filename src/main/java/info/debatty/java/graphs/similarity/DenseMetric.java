@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BatchSimilarity;
+import java.util.List;
+
+/**
+ * Similarities between dense float[] vectors, that can be computed from the
+ * dot product of the vectors and their norms. This allows builders like
+ * {@link info.debatty.java.graphs.build.DenseBrute} to compute dot products
+ * for a whole tile of vectors at once, then convert them with
+ * {@link #fromDot(double, double, double)}.
+ *
+ * @author Thibault Debatty
+ */
+public enum DenseMetric implements BatchSimilarity<float[]> {
+
+    /**
+     * Dot product.
+     */
+    DOT {
+        @Override
+        public double fromDot(
+                final double dot, final double norm1, final double norm2) {
+            return dot;
+        }
+    },
+
+    /**
+     * Cosine similarity.
+     */
+    COSINE {
+        @Override
+        public double fromDot(
+                final double dot, final double norm1, final double norm2) {
+            return VectorKernels.cosine(dot, norm1, norm2);
+        }
+    },
+
+    /**
+     * 1 / (1 + euclidean distance).
+     */
+    L2 {
+        @Override
+        public double fromDot(
+                final double dot, final double norm1, final double norm2) {
+            return L2Similarity.fromSquaredDistance(
+                    norm1 * norm1 + norm2 * norm2 - 2 * dot);
+        }
+
+        @Override
+        public double similarity(final float[] value1, final float[] value2) {
+            return L2Similarity.fromSquaredDistance(
+                    VectorKernels.squaredDistance(value1, value2));
+        }
+    };
+
+    /**
+     * Convert the dot product of two vectors to a similarity.
+     *
+     * @param dot
+     * @param norm1 euclidean norm of the first vector
+     * @param norm2 euclidean norm of the second vector
+     * @return the similarity between the vectors
+     */
+    public abstract double fromDot(double dot, double norm1, double norm2);
+
+    /**
+     * {@inheritDoc}
+     */
+    public double similarity(final float[] value1, final float[] value2) {
+        return fromDot(
+                VectorKernels.dot(value1, value2),
+                VectorKernels.norm(value1),
+                VectorKernels.norm(value2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void similarities(
+            final float[] value, final List<float[]> values,
+            final double[] result) {
+        double norm = VectorKernels.norm(value);
+        for (int i = 0; i < values.size(); i++) {
+            float[] other = values.get(i);
+            result[i] = fromDot(
+                    VectorKernels.dot(value, other),
+                    norm,
+                    VectorKernels.norm(other));
+        }
+    }
+}
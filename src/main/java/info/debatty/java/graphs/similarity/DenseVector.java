@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A dense double[] vector with its precomputed euclidean norm, to be used
+ * with {@link DenseVectorCosine} and {@link DenseVectorL2}.
+ *
+ * The values array is not copied, and should not be modified after the
+ * vector is created.
+ *
+ * @author Thibault Debatty
+ */
+public class DenseVector implements Serializable {
+
+    private final double[] values;
+    private final double norm;
+
+    /**
+     *
+     * @param values
+     */
+    public DenseVector(final double[] values) {
+        this.values = values;
+        this.norm = VectorKernels.norm(values);
+    }
+
+    /**
+     *
+     * @return the values of this vector
+     */
+    public final double[] getValues() {
+        return values;
+    }
+
+    /**
+     *
+     * @return the euclidean norm of this vector
+     */
+    public final double getNorm() {
+        return norm;
+    }
+
+    /**
+     *
+     * @return the dimension of this vector
+     */
+    public final int size() {
+        return values.length;
+    }
+
+    @Override
+    public final String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BatchSimilarity;
+import java.util.List;
+
+/**
+ * Cosine similarity between dense vectors with precomputed norms: each
+ * similarity costs a single dot product.
+ *
+ * @author Thibault Debatty
+ */
+public class DenseVectorCosine implements BatchSimilarity<DenseVector> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(
+            final DenseVector value1, final DenseVector value2) {
+        return VectorKernels.cosine(
+                VectorKernels.dot(value1.getValues(), value2.getValues()),
+                value1.getNorm(),
+                value2.getNorm());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void similarities(
+            final DenseVector value, final List<DenseVector> values,
+            final double[] result) {
+        double[] vector = value.getValues();
+        double norm = value.getNorm();
+        for (int i = 0; i < values.size(); i++) {
+            DenseVector other = values.get(i);
+            result[i] = VectorKernels.cosine(
+                    VectorKernels.dot(vector, other.getValues()),
+                    norm,
+                    other.getNorm());
+        }
+    }
+}
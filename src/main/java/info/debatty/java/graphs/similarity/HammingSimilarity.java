@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BatchSimilarity;
+import java.util.List;
+
+/**
+ * Similarity between bit vectors packed in long[] arrays (for example
+ * SimHash signatures): the fraction of identical bits.
+ *
+ * @author Thibault Debatty
+ */
+public class HammingSimilarity implements BatchSimilarity<long[]> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(final long[] value1, final long[] value2) {
+        return 1.0 - (double) VectorKernels.hamming(value1, value2)
+                / (Long.SIZE * value1.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void similarities(
+            final long[] value, final List<long[]> values,
+            final double[] result) {
+        double bits = Long.SIZE * value.length;
+        for (int i = 0; i < values.size(); i++) {
+            result[i] = 1.0
+                    - VectorKernels.hamming(value, values.get(i)) / bits;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.SimilarityInterface;
+import java.util.Set;
+
+/**
+ * Jaccard similarity between sets (of tokens, shingles, ...):
+ * |A ∩ B| / |A ∪ B|. The similarity of two empty sets is 0.
+ *
+ * @author Thibault Debatty
+ * @param <E> The type of elements in the sets
+ */
+public class JaccardSimilarity<E> implements SimilarityInterface<Set<E>> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(final Set<E> value1, final Set<E> value2) {
+        Set<E> small = value1;
+        Set<E> large = value2;
+        if (small.size() > large.size()) {
+            small = value2;
+            large = value1;
+        }
+
+        int intersection = 0;
+        for (E element : small) {
+            if (large.contains(element)) {
+                intersection++;
+            }
+        }
+
+        int union = value1.size() + value2.size() - intersection;
+        if (union == 0) {
+            return 0;
+        }
+        return (double) intersection / union;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BatchSimilarity;
+import info.debatty.java.graphs.BoundedSimilarity;
+import info.debatty.java.graphs.MetricSimilarity;
+import java.util.List;
+
+/**
+ * Similarity based on the euclidean distance between dense double[] vectors:
+ * 1 / (1 + distance). With a threshold, the squared distance is computed by
+ * partial sums, which stop as soon as the threshold cannot be reached.
+ *
+ * @author Thibault Debatty
+ */
+public class L2Similarity implements
+        BatchSimilarity<double[]>,
+        BoundedSimilarity<double[]>,
+        MetricSimilarity<double[]> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(
+            final double[] value1, final double[] value2) {
+        return fromSquaredDistance(
+                VectorKernels.squaredDistance(value1, value2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(
+            final double[] value1, final double[] value2,
+            final double threshold) {
+        if (threshold <= 0) {
+            return similarity(value1, value2);
+        }
+
+        // similarity > threshold <=> distance < 1 / threshold - 1
+        double max_distance = 1.0 / threshold - 1.0;
+        return fromSquaredDistance(VectorKernels.squaredDistance(
+                value1, value2, max_distance * max_distance));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void similarities(
+            final double[] value, final List<double[]> values,
+            final double[] result) {
+        for (int i = 0; i < values.size(); i++) {
+            result[i] = fromSquaredDistance(
+                    VectorKernels.squaredDistance(value, values.get(i)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double distance(
+            final double[] value1, final double[] value2) {
+        return Math.sqrt(VectorKernels.squaredDistance(value1, value2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double toSimilarity(final double distance) {
+        return 1.0 / (1.0 + distance);
+    }
+
+    static double fromSquaredDistance(final double squared_distance) {
+        // rounding errors may produce a slightly negative value when the
+        // distance is computed from precomputed norms
+        if (squared_distance <= 0) {
+            return 1.0;
+        }
+        return 1.0 / (1.0 + Math.sqrt(squared_distance));
+    }
+}
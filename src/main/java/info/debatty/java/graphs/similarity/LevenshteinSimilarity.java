@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.BoundedSimilarity;
+import info.debatty.java.graphs.MetricSimilarity;
+
+/**
+ * Similarity based on the Levenshtein (edit) distance between strings:
+ * 1 / (1 + distance).
+ *
+ * With a threshold, only a band of the dynamic programming matrix is
+ * computed (the cells at most max_distance away from the diagonal), and the
+ * computation stops as soon as a whole row exceeds max_distance. The cost is
+ * then O(max_distance * length) instead of O(length²).
+ *
+ * @author Thibault Debatty
+ */
+public class LevenshteinSimilarity implements
+        BoundedSimilarity<String>,
+        MetricSimilarity<String> {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(final String value1, final String value2) {
+        return toSimilarity(distance(value1, value2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double similarity(
+            final String value1, final String value2, final double threshold) {
+
+        int max_distance = Math.max(value1.length(), value2.length());
+        if (threshold > 0) {
+            // similarity > threshold <=> distance < 1 / threshold - 1
+            double bound = Math.ceil(1.0 / threshold - 1.0) - 1;
+            if (bound < max_distance) {
+                max_distance = Math.max(-1, (int) bound);
+            }
+        }
+        return toSimilarity(distance(value1, value2, max_distance));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double distance(final String value1, final String value2) {
+        return distance(
+                value1, value2, Math.max(value1.length(), value2.length()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final double toSimilarity(final double distance) {
+        return 1.0 / (1.0 + distance);
+    }
+
+    /**
+     * Banded Levenshtein distance.
+     *
+     * @param value1
+     * @param value2
+     * @param max_distance
+     * @return the edit distance between value1 and value2, or
+     * max_distance + 1 if the distance is larger than max_distance
+     */
+    public static int distance(
+            final String value1, final String value2, final int max_distance) {
+
+        // s1 is the shortest string
+        String s1 = value1;
+        String s2 = value2;
+        if (s1.length() > s2.length()) {
+            s1 = value2;
+            s2 = value1;
+        }
+
+        int n1 = s1.length();
+        int n2 = s2.length();
+        int infinity = max_distance + 1;
+        if (n2 - n1 > max_distance) {
+            return infinity;
+        }
+
+        int[] previous = new int[n1 + 1];
+        int[] current = new int[n1 + 1];
+        for (int i = 0; i <= n1; i++) {
+            previous[i] = Math.min(i, infinity);
+        }
+
+        for (int j = 1; j <= n2; j++) {
+            char c2 = s2.charAt(j - 1);
+            int first = Math.max(1, j - max_distance);
+            int last = Math.min(n1, j + max_distance);
+
+            current[0] = Math.min(j, infinity);
+            int row_min = current[0];
+            if (first > 1) {
+                current[first - 1] = infinity;
+                row_min = infinity;
+            }
+
+            for (int i = first; i <= last; i++) {
+                int cost = s1.charAt(i - 1) == c2 ? 0 : 1;
+                int value = Math.min(
+                        previous[i - 1] + cost,
+                        Math.min(previous[i], current[i - 1]) + 1);
+                if (value > infinity) {
+                    value = infinity;
+                }
+                current[i] = value;
+                if (value < row_min) {
+                    row_min = value;
+                }
+            }
+
+            if (last < n1) {
+                current[last + 1] = infinity;
+            }
+
+            if (row_min > max_distance) {
+                return infinity;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return Math.min(previous[n1], infinity);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+/**
+ * Scalar kernels for dense vectors. Loops are unrolled with independent
+ * accumulators, which lets the JIT compiler pipeline (and auto-vectorize)
+ * the floating point operations.
+ *
+ * @author Thibault Debatty
+ */
+public final class VectorKernels {
+
+    // Number of dimensions between two checks of the bound
+    private static final int CHUNK = 16;
+
+    private VectorKernels() {
+    }
+
+    /**
+     *
+     * @param a
+     * @param b
+     * @return the dot product of a and b
+     */
+    public static double dot(final double[] a, final double[] b) {
+        int length = a.length;
+        int limit = length & ~3;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < limit; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (int i = limit; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     *
+     * @param a
+     * @param b
+     * @return the dot product of a and b
+     */
+    public static double dot(final float[] a, final float[] b) {
+        int length = a.length;
+        int limit = length & ~3;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < limit; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (int i = limit; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     *
+     * @param a
+     * @param b
+     * @return the squared euclidean distance between a and b
+     */
+    public static double squaredDistance(final double[] a, final double[] b) {
+        int length = a.length;
+        int limit = length & ~3;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < limit; i += 4) {
+            double d0 = a[i] - b[i];
+            double d1 = a[i + 1] - b[i + 1];
+            double d2 = a[i + 2] - b[i + 2];
+            double d3 = a[i + 3] - b[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (int i = limit; i < length; i++) {
+            double d = a[i] - b[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     *
+     * @param a
+     * @param b
+     * @return the squared euclidean distance between a and b
+     */
+    public static double squaredDistance(final float[] a, final float[] b) {
+        int length = a.length;
+        int limit = length & ~3;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < limit; i += 4) {
+            float d0 = a[i] - b[i];
+            float d1 = a[i + 1] - b[i + 1];
+            float d2 = a[i + 2] - b[i + 2];
+            float d3 = a[i + 3] - b[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (int i = limit; i < length; i++) {
+            float d = a[i] - b[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Squared euclidean distance, computed by chunks of 16 dimensions: the
+     * computation stops as soon as the partial sum exceeds bound.
+     *
+     * @param a
+     * @param b
+     * @param bound
+     * @return the squared euclidean distance between a and b, or a partial
+     * sum &gt; bound
+     */
+    public static double squaredDistance(
+            final double[] a, final double[] b, final double bound) {
+        int length = a.length;
+        double sum = 0;
+        for (int start = 0; start < length; start += CHUNK) {
+            int end = Math.min(start + CHUNK, length);
+            double s0 = 0, s1 = 0;
+            int i = start;
+            for (; i + 1 < end; i += 2) {
+                double d0 = a[i] - b[i];
+                double d1 = a[i + 1] - b[i + 1];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+            }
+            if (i < end) {
+                double d = a[i] - b[i];
+                s0 += d * d;
+            }
+            sum += s0 + s1;
+            if (sum > bound) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     *
+     * @param a
+     * @return the euclidean norm of a
+     */
+    public static double norm(final double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     *
+     * @param a
+     * @return the euclidean norm of a
+     */
+    public static double norm(final float[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     *
+     * @param a
+     * @param b
+     * @return the number of different bits between a and b
+     */
+    public static int hamming(final long[] a, final long[] b) {
+        int length = a.length;
+        int limit = length & ~3;
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for (int i = 0; i < limit; i += 4) {
+            s0 += Long.bitCount(a[i] ^ b[i]);
+            s1 += Long.bitCount(a[i + 1] ^ b[i + 1]);
+            s2 += Long.bitCount(a[i + 2] ^ b[i + 2]);
+            s3 += Long.bitCount(a[i + 3] ^ b[i + 3]);
+        }
+        for (int i = limit; i < length; i++) {
+            s0 += Long.bitCount(a[i] ^ b[i]);
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * Cosine similarity, using precomputed norms.
+     *
+     * @param dot
+     * @param norm1
+     * @param norm2
+     * @return dot / (norm1 * norm2), or 0 if a norm is 0
+     */
+    static double cosine(
+            final double dot, final double norm1, final double norm2) {
+        if (norm1 == 0 || norm2 == 0) {
+            return 0;
+        }
+        return dot / (norm1 * norm2);
+    }
+}
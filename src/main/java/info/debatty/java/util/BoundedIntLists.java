@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A fixed number of lists of ints, each with the same bounded capacity,
+ * stored in flat arrays. Lists are cleared and refilled without allocating
+ * memory.
+ *
+ * count * capacity may exceed the maximum size of a Java array, so the lists
+ * are split into chunks of at most CHUNK_SIZE values.
+ *
+ * Each list also counts the values that were offered to it, so it can be
+ * used as a reservoir sample of a larger stream of values (see
+ * {@link #offer(int, int, Random)}).
+ *
+ * @author Thibault Debatty
+ */
+public class BoundedIntLists implements Serializable {
+
+    /**
+     * Maximum number of values stored in a single array.
+     */
+    static final int CHUNK_SIZE = 1 << 26;
+
+    private final int[][] values;
+    private final int[] sizes;
+    private final int[] seen;
+    private final int capacity;
+    private final int lists_per_chunk;
+
+    /**
+     *
+     * @param count number of lists
+     * @param capacity maximum size of each list
+     */
+    public BoundedIntLists(final int count, final int capacity) {
+        this(count, capacity, CHUNK_SIZE);
+    }
+
+    /**
+     *
+     * @param count number of lists
+     * @param capacity maximum size of each list
+     * @param chunk_size maximum number of values stored in a single array
+     */
+    BoundedIntLists(
+            final int count, final int capacity, final int chunk_size) {
+
+        this.lists_per_chunk = Math.max(1, chunk_size / Math.max(1, capacity));
+        int chunks = (int) (((long) count + lists_per_chunk - 1)
+                / lists_per_chunk);
+        this.values = new int[chunks][];
+        for (int c = 0; c < chunks; c++) {
+            int lists = Math.min(lists_per_chunk, count - c * lists_per_chunk);
+            this.values[c] = new int[lists * capacity];
+        }
+
+        this.sizes = new int[count];
+        this.seen = new int[count];
+        this.capacity = capacity;
+    }
+
+    /**
+     *
+     * @param list
+     * @return the array that holds this list
+     */
+    private int[] chunk(final int list) {
+        return values[list / lists_per_chunk];
+    }
+
+    /**
+     *
+     * @param list
+     * @return the position of the first value of this list in its chunk
+     */
+    private int start(final int list) {
+        return (list % lists_per_chunk) * capacity;
+    }
+
+    /**
+     *
+     * @return the number of lists
+     */
+    public final int count() {
+        return sizes.length;
+    }
+
+    /**
+     *
+     * @return the maximum size of each list
+     */
+    public final int capacity() {
+        return capacity;
+    }
+
+    /**
+     *
+     * @param list
+     * @return the number of values in this list
+     */
+    public final int size(final int list) {
+        return sizes[list];
+    }
+
+    /**
+     *
+     * @param list
+     * @param i position in the list (0 .. size(list) - 1)
+     * @return
+     */
+    public final int get(final int list, final int i) {
+        return chunk(list)[start(list) + i];
+    }
+
+    /**
+     * Append a value at the end of the list, if the list is not full.
+     *
+     * @param list
+     * @param value
+     * @return true if the value was added
+     */
+    public final boolean add(final int list, final int value) {
+        seen[list]++;
+        if (sizes[list] == capacity) {
+            return false;
+        }
+        chunk(list)[start(list) + sizes[list]] = value;
+        sizes[list]++;
+        return true;
+    }
+
+    /**
+     * Append the value if the list does not contain it yet, and if the list is
+     * not full. Lists are small, so a linear scan is faster than hashing.
+     *
+     * @param list
+     * @param value
+     * @return true if the value was added
+     */
+    public final boolean addIfAbsent(final int list, final int value) {
+        if (contains(list, value)) {
+            return false;
+        }
+        return add(list, value);
+    }
+
+    /**
+     * Offer a value to the reservoir sample of this list: each of the values
+     * offered since the list was cleared has the same probability to be kept.
+     *
+     * @param list
+     * @param value
+     * @param rand
+     */
+    public final void offer(final int list, final int value, final Random rand) {
+        seen[list]++;
+        if (sizes[list] < capacity) {
+            chunk(list)[start(list) + sizes[list]] = value;
+            sizes[list]++;
+            return;
+        }
+
+        int position = rand.nextInt(seen[list]);
+        if (position < capacity) {
+            chunk(list)[start(list) + position] = value;
+        }
+    }
+
+    /**
+     *
+     * @param list
+     * @param value
+     * @return true if the list contains this value
+     */
+    public final boolean contains(final int list, final int value) {
+        int[] chunk = chunk(list);
+        int start = start(list);
+        int end = start + sizes[list];
+        for (int i = start; i < end; i++) {
+            if (chunk[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all values of this list.
+     *
+     * @param list
+     */
+    public final void clear(final int list) {
+        sizes[list] = 0;
+        seen[list] = 0;
+    }
+}
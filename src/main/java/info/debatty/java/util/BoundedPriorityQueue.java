@@ -46,6 +46,14 @@ public class BoundedPriorityQueue<E> extends PriorityQueue<E> {
             throw new ClassCastException();
         }
 
+        if (this.size() >= capacity
+                && ((Comparable) element).compareTo(this.peek()) <= 0) {
+            // The queue is full, and element is not larger than the smallest
+            // element already in the queue => reject it before scanning
+            // the queue
+            return false;
+        }
+
         if (this.contains(element)) {
             return false;
         }
@@ -54,11 +62,15 @@ public class BoundedPriorityQueue<E> extends PriorityQueue<E> {
             return super.add(element);
         }
 
-        if (((Comparable) element).compareTo(this.peek()) > 0) {
-            this.poll();
-            return super.add(element);
-        }
+        this.poll();
+        return super.add(element);
+    }
 
-        return false;
+    /**
+     *
+     * @return the maximum capacity of the queue
+     */
+    public final int getCapacity() {
+        return capacity;
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. Clearing the list keeps the underlying
+ * array, so a list can be reused without allocating memory.
+ *
+ * @author Thibault Debatty
+ */
+public class IntArrayList implements Serializable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] values;
+    private int size;
+
+    /**
+     * Create a list with default initial capacity.
+     */
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a list with given initial capacity.
+     * @param capacity
+     */
+    public IntArrayList(final int capacity) {
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     *
+     * @return the number of values in the list
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @param i
+     * @return the value at position i
+     */
+    public final int get(final int i) {
+        return values[i];
+    }
+
+    /**
+     * Append a value at the end of the list.
+     * @param value
+     */
+    public final void add(final int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+        }
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     *
+     * @param value
+     * @return true if the list contains this value
+     */
+    public final boolean contains(final int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the value at position i, and replace it by the last value of the
+     * list (the order of values is not preserved).
+     *
+     * @param i
+     */
+    public final void removeAt(final int i) {
+        size--;
+        values[i] = values[size];
+    }
+
+    /**
+     * Remove all values (the underlying array is kept).
+     */
+    public final void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of similarities between pairs of ids (ids must be positive).
+ * The similarity of (a, b) is the similarity of (b, a).
+ *
+ * The cache is a set-associative open addressing table: the pair is hashed
+ * to a set of 8 consecutive slots, stored in primitive arrays. When the set
+ * is full, a slot is evicted using the clock algorithm (an approximation of
+ * LRU): every hit marks the slot as referenced, and the clock hand of the
+ * set skips (and clears) referenced slots.
+ *
+ * The cache can be shared between threads: sets are protected by a fixed
+ * pool of striped locks. Hits, misses and evictions are counted per lock,
+ * under the lock.
+ *
+ * @author Thibault Debatty
+ */
+public class PairCache {
+
+    private static final int WAYS = 8;
+    private static final int LOCKS = 256;
+    private static final long EMPTY = -1L;
+
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] referenced;
+    private final int[] hands;
+    private final int set_mask;
+
+    private final Object[] locks;
+    private final long[] hits;
+    private final long[] misses;
+    private final long[] evictions;
+
+    /**
+     *
+     * @param capacity maximum number of pairs in the cache (rounded up to a
+     * power of 2, at least 8)
+     */
+    public PairCache(final int capacity) {
+        int sets = 1;
+        while (sets * WAYS < capacity) {
+            sets <<= 1;
+        }
+
+        keys = new long[sets * WAYS];
+        Arrays.fill(keys, EMPTY);
+        values = new double[sets * WAYS];
+        referenced = new boolean[sets * WAYS];
+        hands = new int[sets];
+        set_mask = sets - 1;
+
+        locks = new Object[LOCKS];
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        hits = new long[LOCKS];
+        misses = new long[LOCKS];
+        evictions = new long[LOCKS];
+    }
+
+    /**
+     *
+     * @return the maximum number of pairs in the cache
+     */
+    public final int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the cached similarity of this pair, and count a hit or a miss.
+     *
+     * @param a
+     * @param b
+     * @return the cached similarity, or Double.NaN if the pair is not in the
+     * cache
+     */
+    public final double get(final int a, final int b) {
+        long key = key(a, b);
+        int set = set(key);
+        int lock = set & (LOCKS - 1);
+        int first = set * WAYS;
+
+        synchronized (locks[lock]) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (keys[slot] == key) {
+                    referenced[slot] = true;
+                    hits[lock]++;
+                    return values[slot];
+                }
+            }
+            misses[lock]++;
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Store the similarity of this pair, possibly evicting another pair.
+     * NaN values are not stored.
+     *
+     * @param a
+     * @param b
+     * @param value
+     */
+    public final void put(final int a, final int b, final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        long key = key(a, b);
+        int set = set(key);
+        int lock = set & (LOCKS - 1);
+        int first = set * WAYS;
+
+        synchronized (locks[lock]) {
+            int free = -1;
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (keys[slot] == key) {
+                    // Inserted meanwhile by another thread
+                    values[slot] = value;
+                    return;
+                }
+                if (free == -1 && keys[slot] == EMPTY) {
+                    free = slot;
+                }
+            }
+
+            if (free == -1) {
+                free = evict(set);
+                evictions[lock]++;
+            }
+
+            keys[free] = key;
+            values[free] = value;
+            referenced[free] = false;
+        }
+    }
+
+    /**
+     *
+     * @return the number of hits since the cache was created
+     */
+    public final long getHits() {
+        return sum(hits);
+    }
+
+    /**
+     *
+     * @return the number of misses since the cache was created
+     */
+    public final long getMisses() {
+        return sum(misses);
+    }
+
+    /**
+     *
+     * @return the number of evicted pairs since the cache was created
+     */
+    public final long getEvictions() {
+        return sum(evictions);
+    }
+
+    /**
+     * Advance the clock hand of this set until a slot that was not
+     * referenced since the last pass is found.
+     *
+     * @param set
+     * @return the evicted slot
+     */
+    private int evict(final int set) {
+        int first = set * WAYS;
+        int hand = hands[set];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (hand + 1) & (WAYS - 1);
+        return first + hand;
+    }
+
+    private long sum(final long[] counters) {
+        long sum = 0;
+        for (int i = 0; i < LOCKS; i++) {
+            synchronized (locks[i]) {
+                sum += counters[i];
+            }
+        }
+        return sum;
+    }
+
+    private static long key(final int a, final int b) {
+        if (a < b) {
+            return ((long) a << 32) | b;
+        }
+        return ((long) b << 32) | a;
+    }
+
+    private int set(final long key) {
+        // 64-bit finalizer of MurmurHash3
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & set_mask;
+    }
+}
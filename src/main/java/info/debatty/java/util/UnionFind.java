@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+/**
+ * Union-find (disjoint set) structure over the ints 0 .. size - 1, with path
+ * compression.
+ *
+ * @author Thibault Debatty
+ */
+public class UnionFind {
+
+    private final int[] parents;
+
+    /**
+     * Create a structure where each int is in its own set.
+     * @param size
+     */
+    public UnionFind(final int size) {
+        this.parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+    }
+
+    /**
+     *
+     * @param i
+     * @return the root of the set containing i
+     */
+    public final int find(final int i) {
+        int root = i;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+
+        // Path compression
+        int current = i;
+        while (parents[current] != root) {
+            int next = parents[current];
+            parents[current] = root;
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merge the sets containing i and j.
+     * @param i
+     * @param j
+     */
+    public final void union(final int i, final int j) {
+        int root_i = find(i);
+        int root_j = find(j);
+        if (root_i != root_j) {
+            parents[root_j] = root_i;
+        }
+    }
+
+    /**
+     * Number the sets from 0 to (number of sets - 1).
+     *
+     * @param labels will contain the number of the set of each int
+     * @return the number of sets
+     */
+    public final int label(final int[] labels) {
+        int count = 0;
+        for (int i = 0; i < parents.length; i++) {
+            if (find(i) == i) {
+                labels[i] = count;
+                count++;
+            }
+        }
+
+        for (int i = 0; i < parents.length; i++) {
+            labels[i] = labels[find(i)];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.GraphBuilder;
+import info.debatty.java.graphs.similarity.L2Similarity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class BeamSearchTest extends TestCase {
+
+    private static final int N = 4000;
+    private static final int CLUSTERS = 40;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    private static final double SPEEDUP = 10;
+
+    /**
+     * On clustered data, beam search should find most of the true nearest
+     * neighbors, within the same budget as the greedy search.
+     *
+     * @throws Exception
+     */
+    public void testClusteredRecall() throws Exception {
+        System.out.println("Beam search on clustered data");
+        Random rand = new Random();
+        Graph<double[]> graph = buildGraph(rand);
+
+        // Queries are taken from the graph's clusters
+        List<double[]> queries = new ArrayList<double[]>();
+        for (int i = 0; i < QUERIES; i++) {
+            double[] value = graph.getRegistry().get(
+                    rand.nextInt(N)).value.clone();
+            value[0] += rand.nextGaussian();
+            value[1] += rand.nextGaussian();
+            queries.add(value);
+        }
+
+        int greedy = recall(graph, queries, new GreedySearch<double[]>());
+        int beam = recall(graph, queries, new BeamSearch<double[]>());
+        System.out.printf(
+                "Recall: greedy %.3f, beam %.3f\n",
+                1.0 * greedy / (QUERIES * K),
+                1.0 * beam / (QUERIES * K));
+        assertTrue(beam > 0.8 * QUERIES * K);
+    }
+
+    /**
+     * Beam search must respect the similarity budget, and report it in the
+     * statistics.
+     */
+    public void testBudget() {
+        System.out.println("Beam search budget");
+        Random rand = new Random();
+        Graph<double[]> graph = buildGraph(rand);
+        graph.setSearchStrategy(new BeamSearch<double[]>(16));
+
+        int max_similarities = (int) (N / SPEEDUP);
+        for (int i = 0; i < QUERIES; i++) {
+            double[] query = randomPoint(rand);
+            StatisticsContainer stats = new StatisticsContainer();
+            NeighborList result = graph.fastSearch(query, K, SPEEDUP, stats);
+            assertEquals(K, result.size());
+            for (Neighbor neighbor : result) {
+                assertEquals(
+                        graph.getSimilarity().similarity(
+                                query, (double[]) neighbor.node.value),
+                        neighbor.similarity,
+                        1E-12);
+            }
+
+            // The last expanded node may exceed the budget by its degree
+            assertTrue(stats.getSearchSimilarities() >= max_similarities);
+            assertTrue(stats.getSearchSimilarities() <= max_similarities + K);
+            assertTrue(stats.getSearchRestarts() >= 1);
+        }
+    }
+
+    /**
+     * Nodes without neighbor list (cross partition edges) must be skipped.
+     */
+    public void testNullNeighborLists() {
+        System.out.println("Beam search with null neighbor lists");
+        Random rand = new Random();
+        Graph<double[]> graph = new Graph<double[]>(K);
+        graph.setSimilarity(new L2Similarity());
+        for (int i = 0; i < 200; i++) {
+            graph.put(
+                    new Node<double[]>(String.valueOf(i), randomPoint(rand)),
+                    null);
+        }
+
+        graph.setSearchStrategy(new BeamSearch<double[]>());
+        StatisticsContainer stats = new StatisticsContainer();
+        NeighborList result = graph.fastSearch(
+                randomPoint(rand), K, 4, stats);
+        assertEquals(K, result.size());
+        assertTrue(stats.getSearchCrossPartitionRestarts() > 0);
+    }
+
+    private int recall(
+            final Graph<double[]> graph,
+            final List<double[]> queries,
+            final SearchStrategy<double[]> strategy) throws Exception {
+
+        GraphSearcher<double[]> searcher = new GraphSearcher<double[]>(graph);
+        searcher.setSpeedup(SPEEDUP);
+        searcher.setStrategy(strategy);
+
+        int correct = 0;
+        long start = System.nanoTime();
+        for (double[] query : queries) {
+            correct += searcher.search(query, K).countCommons(
+                    graph.searchExhaustive(query, K));
+        }
+        System.out.println(strategy.getClass().getSimpleName() + " : "
+                + searcher.getStatistics().getSearchSimilarities()
+                + " similarities, "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        return correct;
+    }
+
+    private Graph<double[]> buildGraph(final Random rand) {
+        List<Node<double[]>> nodes = new ArrayList<Node<double[]>>();
+        double[][] centers = new double[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = randomPoint(rand);
+        }
+
+        while (nodes.size() < N) {
+            double[] center = centers[rand.nextInt(CLUSTERS)];
+            double[] value = new double[center.length];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = center[i] + rand.nextGaussian();
+            }
+            nodes.add(new Node<double[]>(String.valueOf(nodes.size()), value));
+        }
+
+        GraphBuilder<double[]> builder = new Brute<double[]>();
+        builder.setK(K);
+        builder.setSimilarity(new L2Similarity());
+        return builder.computeGraph(nodes);
+    }
+
+    private double[] randomPoint(final Random rand) {
+        return new double[]{100 * rand.nextDouble(), 100 * rand.nextDouble()};
+    }
+}
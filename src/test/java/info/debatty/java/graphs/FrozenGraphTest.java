@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.GraphBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class FrozenGraphTest extends TestCase {
+
+    private static final SimilarityInterface<Integer> SIMILARITY =
+            new SimilarityInterface<Integer>() {
+
+        public double similarity(final Integer value1, final Integer value2) {
+            return 1.0 / (1.0 + Math.abs(value1 - value2));
+        }
+    };
+
+    private Graph<Integer> buildGraph(final List<Node<Integer>> nodes,
+            final int k) {
+        GraphBuilder<Integer> builder = new Brute<Integer>();
+        builder.setK(k);
+        builder.setSimilarity(SIMILARITY);
+        return builder.computeGraph(nodes);
+    }
+
+    /**
+     * Test of freeze method, of class Graph.
+     */
+    public final void testFreeze() {
+        System.out.println("Freeze");
+
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        Random rand = new Random();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), rand.nextInt()));
+        }
+        Graph<Integer> graph = buildGraph(nodes, 10);
+        FrozenGraph<Integer> frozen = graph.freeze();
+
+        assertEquals(graph.size(), frozen.size());
+        assertEquals(10 * graph.size(), frozen.countEdges());
+        for (Node<Integer> node : nodes) {
+            assertEquals(10, frozen.get(node).countCommonIds(graph.get(node)));
+        }
+    }
+
+    /**
+     * Test of connectedComponents method, of class FrozenGraph.
+     */
+    public final void testConnectedComponents() {
+        System.out.println("Frozen connected components");
+
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), i));
+            nodes.add(new Node<Integer>(
+                    String.valueOf(1000000 + i), 1000000 + i));
+        }
+
+        FrozenGraph<Integer> frozen = buildGraph(nodes, 10).freeze();
+        ArrayList<FrozenGraph<Integer>> components =
+                frozen.connectedComponents();
+        assertEquals(2, components.size());
+        assertEquals(1000, components.get(0).size());
+        assertEquals(10000, components.get(0).countEdges());
+
+        // Each node is only found in its own component
+        for (Node<Integer> node : nodes) {
+            int found = 0;
+            for (FrozenGraph<Integer> component : components) {
+                int id = component.indexOf(node);
+                if (id != -1) {
+                    assertEquals(node, component.getNode(id));
+                    found++;
+                }
+            }
+            assertEquals(1, found);
+        }
+        assertEquals(-1, frozen.indexOf(new Node<Integer>("unknown", 0)));
+
+        // Remove all edges
+        assertEquals(2000, frozen.prune(1.1).connectedComponents().size());
+    }
+
+    /**
+     * Test of stronglyConnectedComponents method, of class FrozenGraph.
+     */
+    public final void testStronglyConnectedComponents() {
+        System.out.println("Frozen strongly connected components");
+
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        int[] values = new int[] {1, 2, 3, 7, 8, 9};
+        for (int value : values) {
+            nodes.add(new Node<Integer>(String.valueOf(value), value));
+        }
+
+        FrozenGraph<Integer> frozen = buildGraph(nodes, 2).freeze();
+        ArrayList<FrozenGraph<Integer>> components =
+                frozen.stronglyConnectedComponents();
+        assertEquals(2, components.size());
+        assertEquals(3, components.get(0).size());
+        assertEquals(3, components.get(1).size());
+    }
+
+    /**
+     * Test of prune method, of class FrozenGraph.
+     */
+    public final void testPrune() {
+        System.out.println("Frozen prune");
+
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), i));
+        }
+
+        // Only the edges to direct neighbors have similarity 0.5
+        FrozenGraph<Integer> pruned = buildGraph(nodes, 4).freeze().prune(0.4);
+        assertEquals(2 * 99, pruned.countEdges());
+        assertEquals(1, pruned.degree(pruned.indexOf(nodes.get(0))));
+    }
+
+    /**
+     * Test of Dijkstra on a frozen graph.
+     *
+     * @throws Exception if no path is found between the two nodes
+     */
+    public final void testDijkstra() throws Exception {
+        System.out.println("Frozen Dijkstra");
+
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), i));
+        }
+
+        FrozenGraph<Integer> frozen = buildGraph(nodes, 10).freeze();
+        Dijkstra dijkstra = new Dijkstra(frozen, nodes.get(0));
+        assertEquals(200, dijkstra.getPath(nodes.get(999)).size());
+        assertEquals(199, dijkstra.getLargestDistance());
+    }
+
+    /**
+     * Test of fastSearch method, of class FrozenGraph.
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public final void testFastSearch()
+            throws InterruptedException, ExecutionException {
+        System.out.println("Frozen fast search");
+
+        Random rand = new Random();
+        List<Node<Integer>> nodes = new ArrayList<Node<Integer>>();
+        for (int i = 0; i < 4000; i++) {
+            nodes.add(new Node<Integer>(
+                    String.valueOf(i), rand.nextInt(100000)));
+        }
+
+        Graph<Integer> graph = buildGraph(nodes, 10);
+        FrozenGraph<Integer> frozen = graph.freeze();
+
+        int correct = 0;
+        for (int i = 0; i < 100; i++) {
+            int query = rand.nextInt(100000);
+            NeighborList approximate_result = frozen.fastSearch(
+                    query, 1, 30, Graph.DEFAULT_SEARCH_RANDOM_JUMPS,
+                    Graph.DEFAULT_SEARCH_EXPANSION,
+                    new StatisticsContainer());
+            NeighborList exhaustive_result = graph.searchExhaustive(query, 1);
+            correct += approximate_result.countCommons(exhaustive_result);
+        }
+
+        System.out.println("Found " + correct + " correct results!");
+        assertTrue(correct > 50);
+    }
+}
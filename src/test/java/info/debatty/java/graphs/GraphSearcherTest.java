@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.GraphBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class GraphSearcherTest extends TestCase {
+
+    private static final int N = 4000;
+    private static final int QUERIES = 500;
+    private static final int K = 10;
+    private static final double SPEEDUP = 10;
+
+    private static final SimilarityInterface<Double> SIMILARITY =
+            new SimilarityInterface<Double>() {
+
+        public double similarity(final Double value1, final Double value2) {
+            return 1.0 / (1 + Math.abs(value1 - value2));
+        }
+    };
+
+    /**
+     * Concurrent searches must return valid results, with the same quality
+     * as a single thread, and statistics of all threads must be merged.
+     *
+     * @throws Exception
+     */
+    public void testConcurrentSearch() throws Exception {
+        System.out.println("Concurrent search");
+        final Graph<Double> graph = buildGraph();
+        final GraphSearcher<Double> searcher =
+                new GraphSearcher<Double>(graph);
+        searcher.setSpeedup(SPEEDUP);
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(new Callable<Integer>() {
+
+                public Integer call() throws Exception {
+                    Random rand = new Random();
+                    int correct = 0;
+                    for (int i = 0; i < QUERIES; i++) {
+                        double query = 400.0 * rand.nextDouble();
+                        NeighborList result = searcher.search(query, K);
+                        assertEquals(K, result.size());
+                        for (Neighbor neighbor : result) {
+                            assertEquals(
+                                    SIMILARITY.similarity(
+                                            query,
+                                            (Double) neighbor.node.value),
+                                    neighbor.similarity);
+                        }
+                        correct += result.countCommons(
+                                graph.searchExhaustive(query, 1));
+                    }
+                    return correct;
+                }
+            }));
+        }
+
+        int correct = 0;
+        for (Future<Integer> result : results) {
+            correct += result.get();
+        }
+        pool.shutdown();
+
+        System.out.println("Found " + correct + " correct results");
+        assertTrue(correct > 0.5 * threads * QUERIES);
+
+        // Each query computes at least N / SPEEDUP similarities, and stops
+        // after at most one step (random jumps + neighbors) in excess
+        StatisticsContainer stats = searcher.getStatistics();
+        System.out.println(stats);
+        int max_similarities = (int) (N / SPEEDUP);
+        assertTrue(stats.getSearchSimilarities()
+                >= threads * QUERIES * max_similarities);
+        assertTrue(stats.getSearchSimilarities()
+                <= threads * QUERIES * (max_similarities + K + 3));
+    }
+
+    /**
+     * Throughput with 1 thread, and with all available cores. As timing is
+     * not reliable on shared test machines, the speedup is only reported.
+     *
+     * @throws Exception
+     */
+    public void testThroughput() throws Exception {
+        System.out.println("Search throughput");
+        Graph<Double> graph = buildGraph();
+        GraphSearcher<Double> searcher = new GraphSearcher<Double>(graph);
+        searcher.setSpeedup(SPEEDUP);
+
+        double single = throughput(searcher, 1);
+        int cores = Runtime.getRuntime().availableProcessors();
+        double multi = throughput(searcher, cores);
+        System.out.printf(
+                "1 thread: %.0f q/s, %d threads: %.0f q/s (x %.2f)\n",
+                single, cores, multi, multi / single);
+        assertTrue(multi > 0);
+    }
+
+    private double throughput(
+            final GraphSearcher<Double> searcher, final int threads)
+            throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(new Callable<Object>() {
+
+                public Object call() {
+                    Random rand = new Random();
+                    for (int i = 0; i < QUERIES; i++) {
+                        searcher.search(400.0 * rand.nextDouble(), K);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Future<Object> future : pool.invokeAll(tasks)) {
+            future.get();
+        }
+        long time = System.nanoTime() - start;
+        pool.shutdown();
+        return 1E9 * threads * QUERIES / time;
+    }
+
+    private Graph<Double> buildGraph() {
+        Random rand = new Random();
+        List<Node<Double>> data = new ArrayList<Node<Double>>();
+        while (data.size() < N) {
+            data.add(new Node<Double>(
+                    String.valueOf(data.size()),
+                    400.0 * rand.nextDouble()));
+        }
+
+        GraphBuilder<Double> builder = new Brute<Double>();
+        builder.setK(K);
+        builder.setSimilarity(SIMILARITY);
+        return builder.computeGraph(data);
+    }
+}
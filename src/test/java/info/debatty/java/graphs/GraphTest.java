@@ -30,6 +30,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import junit.framework.TestCase;
 
 /**
@@ -201,6 +203,124 @@ public class GraphTest extends TestCase {
         assertTrue(correct > 50);
     }
 
+    /**
+     * The visited buffers are reused between searches: results must stay
+     * consistent while the graph grows and node ids are reassigned.
+     */
+    public void testSearchScratchReuse() {
+        System.out.println("Search scratch reuse");
+        System.out.println("====================");
+
+        SimilarityInterface<Double> similarity = new SimilarityInterface<Double>() {
+
+            public double similarity(Double value1, Double value2) {
+                return 1.0 / (1 + Math.abs(value1 - value2));
+            }
+        };
+
+        Random rand = new Random();
+        List<Node<Double>> data = new ArrayList<Node<Double>>();
+        for (int i = 0; i < 500; i++) {
+            data.add(new Node<Double>(String.valueOf(i), 400.0 * rand.nextDouble()));
+        }
+
+        Graph<Double> graph = new Graph<Double>();
+        graph.setK(10);
+        graph.setSimilarity(similarity);
+        for (Node<Double> node : data) {
+            graph.add(node);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            if (i % 2 == 0) {
+                Node<Double> node = new Node<Double>(
+                        String.valueOf(data.size() + i),
+                        400.0 * rand.nextDouble());
+                graph.fastAdd(node);
+                data.add(node);
+            } else {
+                Node<Double> node = data.remove(rand.nextInt(data.size()));
+                graph.fastRemove(node);
+            }
+
+            double query = 400.0 * rand.nextDouble();
+            NeighborList result = graph.fastSearch(query, 10, 2);
+            assertEquals(10, result.size());
+            for (Neighbor neighbor : result) {
+                assertTrue(graph.containsKey(neighbor.node));
+                assertEquals(
+                        similarity.similarity(
+                                query, (Double) neighbor.node.value),
+                        neighbor.similarity);
+            }
+        }
+    }
+
+    /**
+     * Test of fastSearchBatch: results must be in the order of the queries,
+     * and statistics of all threads must be aggregated.
+     *
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public void testFastSearchBatch()
+            throws InterruptedException, ExecutionException {
+        System.out.println("Fast search batch");
+        System.out.println("=================");
+
+        int n = 2000;
+        double speedup = 8;
+        SimilarityInterface<Double> similarity = new SimilarityInterface<Double>() {
+
+            public double similarity(Double value1, Double value2) {
+                return 1.0 / (1 + Math.abs(value1 - value2));
+            }
+        };
+
+        Random rand = new Random();
+        List<Node<Double>> data = new ArrayList<Node<Double>>();
+        for (int i = 0; i < n; i++) {
+            data.add(new Node<Double>(String.valueOf(i), 400.0 * rand.nextDouble()));
+        }
+
+        GraphBuilder builder = new Brute<Double>();
+        builder.setK(10);
+        builder.setSimilarity(similarity);
+        Graph<Double> graph = builder.computeGraph(data);
+
+        List<Double> queries = new ArrayList<Double>();
+        for (int i = 0; i < 1000; i++) {
+            queries.add(400.0 * rand.nextDouble());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        StatisticsContainer stats = new StatisticsContainer();
+        List<NeighborList> results = graph.fastSearchBatch(
+                queries, 5, speedup, executor, stats);
+        executor.shutdown();
+
+        assertEquals(queries.size(), results.size());
+        int correct = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            double query = queries.get(i);
+            NeighborList result = results.get(i);
+            assertEquals(5, result.size());
+            for (Neighbor neighbor : result) {
+                assertEquals(
+                        similarity.similarity(
+                                query, (Double) neighbor.node.value),
+                        neighbor.similarity);
+            }
+            correct += result.countCommons(graph.searchExhaustive(query, 1));
+        }
+
+        System.out.println(stats);
+        System.out.println("Found " + correct + " correct results!");
+        assertTrue(correct > 500);
+        assertTrue(stats.getSearchSimilarities()
+                >= queries.size() * (int) (n / speedup));
+    }
+
     public final void testAdd() {
         System.out.println("Test graph.add()");
         System.out.println("================");
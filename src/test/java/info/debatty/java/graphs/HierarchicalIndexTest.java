@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.GraphBuilder;
+import info.debatty.java.graphs.similarity.L2Similarity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class HierarchicalIndexTest extends TestCase {
+
+    private static final int CLUSTERS = 50;
+    // Overlapping clusters
+    private static final double SIGMA = 5;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    private static final double SPEEDUP = 5;
+
+    /**
+     * The index should find most of the true neighbors, computing less
+     * similarities than the budget.
+     *
+     * @throws Exception
+     */
+    public void testSearch() throws Exception {
+        System.out.println("Hierarchical index search");
+        Random rand = new Random();
+        int n = 8000;
+        Graph<double[]> graph = buildGraph(rand, n);
+
+        HierarchicalIndex<double[]> index = new HierarchicalIndex<double[]>();
+        index.build(graph);
+        System.out.println("Layers: " + index.getLayerCount());
+        assertTrue(index.getLayerCount() >= 1);
+        assertTrue(index.getLayer(index.getLayerCount() - 1).size()
+                <= index.getTopSize());
+        checkLayers(graph, index);
+
+        graph.setSearchStrategy(index);
+        StatisticsContainer stats = new StatisticsContainer();
+        double recall = recall(graph, rand, stats);
+        System.out.println(stats);
+        System.out.println("Recall: " + recall);
+        assertTrue(recall > 0.9);
+        assertTrue(stats.getSearchSimilarities() < QUERIES * n / SPEEDUP);
+    }
+
+    /**
+     * fastAdd and fastRemove must keep the layers consistent with the graph.
+     *
+     * @throws Exception
+     */
+    public void testOnlineUpdates() throws Exception {
+        System.out.println("Hierarchical index online updates");
+        Random rand = new Random();
+        int n = 3000;
+        Graph<double[]> graph = buildGraph(rand, n);
+
+        HierarchicalIndex<double[]> index = new HierarchicalIndex<double[]>();
+        index.setRatio(8);
+        index.build(graph);
+        graph.setSearchStrategy(index);
+
+        List<Node<double[]>> nodes = new ArrayList<Node<double[]>>();
+        for (Node<double[]> node : graph.getNodes()) {
+            nodes.add(node);
+        }
+
+        List<Node<double[]>> added = new ArrayList<Node<double[]>>();
+        for (int i = 0; i < 1000; i++) {
+            double[] value = nodes.get(rand.nextInt(nodes.size())).value;
+            Node<double[]> node = new Node<double[]>(
+                    "new-" + i,
+                    new double[]{
+                        value[0] + 0.1 * rand.nextGaussian(),
+                        value[1] + 0.1 * rand.nextGaussian()});
+            graph.fastAdd(node);
+            nodes.add(node);
+            added.add(node);
+        }
+
+        // Nodes inserted online in the layers are linked, and can be found
+        int in_layers = 0;
+        int found = 0;
+        for (Node<double[]> node : added) {
+            if (!index.getLayer(0).containsKey(node)) {
+                continue;
+            }
+            in_layers++;
+            for (int l = 0; l < index.getLayerCount(); l++) {
+                Graph<double[]> layer = index.getLayer(l);
+                if (layer.containsKey(node) && layer.size() > 1) {
+                    assertTrue(layer.get(node).size() > 0);
+                }
+            }
+
+            NeighborList result = graph.fastSearch(
+                    node.value, K, SPEEDUP, new StatisticsContainer());
+            if (result.containsNode(node)) {
+                found++;
+            }
+        }
+        System.out.println(
+                "Found " + found + " / " + in_layers + " inserted nodes");
+        assertTrue(in_layers > 0);
+        assertTrue(found > 0.9 * in_layers);
+
+        for (int i = 0; i < 500; i++) {
+            Node<double[]> node = nodes.remove(rand.nextInt(nodes.size()));
+            graph.fastRemove(node);
+            for (int l = 0; l < index.getLayerCount(); l++) {
+                assertFalse(index.getLayer(l).containsKey(node));
+            }
+        }
+
+        assertEquals(n + 500, graph.size());
+        checkLayers(graph, index);
+
+        // A copy does not share the index of the graph
+        Graph<double[]> copy = new Graph<double[]>(graph);
+        assertTrue(copy.getSearchStrategy() instanceof GreedySearch);
+        Node<double[]> layer_node = index.getLayer(0).first();
+        copy.fastRemove(layer_node);
+        assertTrue(index.getLayer(0).containsKey(layer_node));
+
+        double recall = recall(graph, rand, new StatisticsContainer());
+        System.out.println("Recall after updates: " + recall);
+        assertTrue(recall > 0.8);
+    }
+
+    /**
+     * Each layer must be a subset of the layer below.
+     */
+    private void checkLayers(
+            final Graph<double[]> graph,
+            final HierarchicalIndex<double[]> index) {
+
+        Graph<double[]> below = graph;
+        for (int l = 0; l < index.getLayerCount(); l++) {
+            Graph<double[]> layer = index.getLayer(l);
+            System.out.println("Layer " + l + " : " + layer.size());
+            assertTrue(layer.size() > 0);
+            assertTrue(layer.size() < below.size());
+            for (Node<double[]> node : layer.getNodes()) {
+                assertTrue(below.containsKey(node));
+                for (Neighbor neighbor : layer.get(node)) {
+                    assertTrue(layer.containsKey(neighbor.node));
+                }
+            }
+            below = layer;
+        }
+    }
+
+    private double recall(
+            final Graph<double[]> graph,
+            final Random rand,
+            final StatisticsContainer stats) throws Exception {
+
+        int correct = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            double[] query = randomPoint(rand);
+            // The budget of a search is based on the counters of stats
+            StatisticsContainer query_stats = new StatisticsContainer();
+            NeighborList result = graph.fastSearch(
+                    query, K, SPEEDUP, query_stats);
+            stats.add(query_stats);
+            assertEquals(K, result.size());
+            correct += result.countCommons(graph.searchExhaustive(query, K));
+        }
+        return 1.0 * correct / (QUERIES * K);
+    }
+
+    private Graph<double[]> buildGraph(final Random rand, final int n) {
+        List<Node<double[]>> nodes = new ArrayList<Node<double[]>>();
+        double[][] centers = new double[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = randomPoint(rand);
+        }
+
+        while (nodes.size() < n) {
+            double[] center = centers[rand.nextInt(CLUSTERS)];
+            nodes.add(new Node<double[]>(
+                    String.valueOf(nodes.size()),
+                    new double[]{
+                        center[0] + SIGMA * rand.nextGaussian(),
+                        center[1] + SIGMA * rand.nextGaussian()}));
+        }
+
+        GraphBuilder<double[]> builder = new Brute<double[]>();
+        builder.setK(K);
+        builder.setSimilarity(new L2Similarity());
+        return builder.computeGraph(nodes);
+    }
+
+    private double[] randomPoint(final Random rand) {
+        return new double[]{100 * rand.nextDouble(), 100 * rand.nextDouble()};
+    }
+}
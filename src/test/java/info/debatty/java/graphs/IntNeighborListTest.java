@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class IntNeighborListTest extends TestCase {
+
+    /**
+     * Test of offer method, of class IntNeighborList.
+     */
+    public final void testOffer() {
+        System.out.println("offer");
+        IntNeighborList instance = new IntNeighborList(4);
+        assertTrue(instance.offer(1, 0.1));
+        assertTrue(instance.offer(4, 0.4));
+        assertTrue(instance.offer(5, 0.5));
+        assertTrue(instance.offer(6, 0.6));
+        assertEquals(Double.valueOf(0.1), instance.threshold());
+
+        // Already in the list
+        assertFalse(instance.offer(6, 0.6));
+
+        // Lower than the smallest similarity
+        assertFalse(instance.offer(0, 0.0));
+
+        assertTrue(instance.offer(2, 0.2));
+        assertEquals(4, instance.size());
+        assertEquals(Double.valueOf(0.2), instance.threshold());
+        assertFalse(instance.contains(1));
+        assertTrue(instance.contains(2));
+    }
+
+    /**
+     * Test of addAll method, of class IntNeighborList.
+     */
+    public final void testAddAll() {
+        System.out.println("addAll");
+        IntNeighborList nl1 = new IntNeighborList(3);
+        nl1.offer(1, 0.1);
+        nl1.offer(2, 0.2);
+        nl1.offer(3, 0.3, false);
+
+        IntNeighborList nl2 = new IntNeighborList(3);
+        nl2.offer(4, 0.4);
+        nl2.offer(3, 0.3);
+
+        assertEquals(2, nl2.addAll(nl1));
+        assertEquals(3, nl2.size());
+        assertFalse(nl2.contains(1));
+        for (int i = 0; i < nl2.size(); i++) {
+            if (nl2.getId(i) == 3) {
+                assertTrue(nl2.isNew(i));
+            }
+        }
+    }
+
+    /**
+     * Test that new flags follow the neighbors when the heap is reordered.
+     */
+    public final void testNewFlags() {
+        System.out.println("new flags");
+        IntNeighborList instance = new IntNeighborList(100);
+        for (int i = 0; i < 100; i++) {
+            // Offer in decreasing order, so every neighbor moves in the heap
+            instance.offer(i, 1.0 / (i + 1), i % 3 == 0);
+        }
+
+        for (int i = 0; i < instance.size(); i++) {
+            assertEquals(instance.getId(i) % 3 == 0, instance.isNew(i));
+        }
+
+        instance.setNew(70, false);
+        assertFalse(instance.isNew(70));
+        instance.setNew(70, true);
+        assertTrue(instance.isNew(70));
+    }
+}
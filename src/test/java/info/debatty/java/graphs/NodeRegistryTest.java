@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class NodeRegistryTest extends TestCase {
+
+    /**
+     * Test of register and remove methods, of class NodeRegistry.
+     */
+    public final void testRegisterRemove() {
+        System.out.println("register and remove");
+        NodeRegistry<Integer> instance = new NodeRegistry<Integer>();
+        Node<Integer> n0 = new Node<Integer>("0", 0);
+        Node<Integer> n1 = new Node<Integer>("1", 1);
+        Node<Integer> n2 = new Node<Integer>("2", 2);
+
+        assertEquals(0, instance.register(n0));
+        assertEquals(1, instance.register(n1));
+        assertEquals(2, instance.register(n2));
+        assertEquals(1, instance.register(n1));
+        assertEquals(3, instance.size());
+
+        // A different instance with the same id is the same node
+        assertEquals(1, instance.indexOf(new Node<Integer>("1", 1)));
+        assertEquals(-1, instance.indexOf(new Node<Integer>("3", 3)));
+
+        // The last node takes the id of the removed node
+        assertEquals(0, instance.remove(n0));
+        assertEquals(2, instance.size());
+        assertEquals(-1, instance.indexOf(n0));
+        assertEquals(0, instance.indexOf(n2));
+        assertEquals(n2, instance.get(0));
+        assertEquals(-1, instance.remove(n0));
+    }
+
+    /**
+     * Test that a graph registers its nodes in insertion order.
+     */
+    public final void testGraphRegistry() {
+        System.out.println("graph registry");
+        Graph<Integer> graph = new Graph<Integer>();
+        for (int i = 0; i < 10; i++) {
+            graph.put(new Node<Integer>(String.valueOf(i), i),
+                    new NeighborList(2));
+        }
+
+        NodeRegistry<Integer> registry = graph.getRegistry();
+        assertEquals(10, registry.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), registry.get(i).id);
+        }
+
+        // Remove and put the same number of nodes using the map
+        Node<Integer> n3 = registry.get(3);
+        graph.getHashMap().remove(n3);
+        graph.getHashMap().put(new Node<Integer>("10", 10), null);
+        assertEquals(10, registry.size());
+        assertEquals(-1, registry.indexOf(n3));
+        assertEquals(3, registry.indexOf(new Node<Integer>("9", 9)));
+        assertEquals(9, registry.indexOf(new Node<Integer>("10", 10)));
+    }
+
+    /**
+     * The id kept in a neighbor must be checked.
+     */
+    public final void testNeighborIndexOf() {
+        System.out.println("indexOf neighbor");
+        NodeRegistry<Integer> instance = new NodeRegistry<Integer>();
+        Node<Integer> n0 = new Node<Integer>("0", 0);
+        Node<Integer> n1 = new Node<Integer>("1", 1);
+        Node<Integer> n2 = new Node<Integer>("2", 2);
+        instance.register(n0);
+        instance.register(n1);
+        instance.register(n2);
+
+        Neighbor neighbor = new Neighbor(n2, 1.0);
+        assertEquals(2, instance.indexOf(neighbor));
+        assertEquals(2, instance.indexOf(neighbor));
+
+        // n2 takes the id of n0
+        instance.remove(n0);
+        assertEquals(0, instance.indexOf(neighbor));
+
+        // Another registry, in which the same node has another id
+        NodeRegistry<Integer> other = new NodeRegistry<Integer>();
+        other.register(n1);
+        other.register(n2);
+        assertEquals(1, other.indexOf(neighbor));
+        assertEquals(0, instance.indexOf(neighbor));
+
+        instance.remove(n2);
+        assertEquals(-1, instance.indexOf(neighbor));
+    }
+}
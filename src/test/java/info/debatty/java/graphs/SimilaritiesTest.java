@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs;
+
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.NNDescent;
+import info.debatty.java.graphs.build.ThreadedBrute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class SimilaritiesTest extends TestCase {
+
+    /**
+     * Batch similarity that counts the batch calls.
+     */
+    private static class CountingSimilarity
+            implements BatchSimilarity<Integer> {
+
+        private int batches = 0;
+        // Values compared to themselves (same instance)
+        private int self_pairs = 0;
+
+        public double similarity(final Integer value1, final Integer value2) {
+            return 1.0 / (1.0 + Math.abs(value1 - value2));
+        }
+
+        public synchronized void similarities(
+                final Integer value,
+                final List<Integer> values,
+                final double[] result) {
+            batches++;
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == value) {
+                    self_pairs++;
+                }
+                result[i] = similarity(value, values.get(i));
+            }
+        }
+    }
+
+    private ArrayList<Node<Integer>> nodes(final int n) {
+        Random rand = new Random();
+        ArrayList<Node<Integer>> nodes = new ArrayList<Node<Integer>>(n);
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), rand.nextInt()));
+        }
+        return nodes;
+    }
+
+    /**
+     * Builders use the batch similarity, and get the same graph.
+     */
+    public final void testBuilders() {
+        System.out.println("batch similarity in builders");
+        ArrayList<Node<Integer>> nodes = nodes(1000);
+        CountingSimilarity batch_similarity = new CountingSimilarity();
+
+        Brute<Integer> brute = new Brute<Integer>();
+        brute.setSimilarity(batch_similarity);
+        Graph<Integer> batch_graph = brute.computeGraph(nodes);
+        assertTrue(batch_similarity.batches > 0);
+
+        Brute<Integer> pairwise = new Brute<Integer>();
+        pairwise.setSimilarity(new SimilarityInterface<Integer>() {
+
+            public double similarity(
+                    final Integer value1, final Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 - value2));
+            }
+        });
+        Graph<Integer> graph = pairwise.computeGraph(nodes);
+
+        ThreadedBrute<Integer> threaded = new ThreadedBrute<Integer>();
+        threaded.setSimilarity(batch_similarity);
+        Graph<Integer> threaded_graph = threaded.computeGraph(nodes);
+
+        for (Node<Integer> node : nodes) {
+            assertEquals(10, graph.get(node).countCommons(
+                    batch_graph.get(node)));
+            assertEquals(10, graph.get(node).countCommons(
+                    threaded_graph.get(node)));
+        }
+        assertEquals(brute.getComputedSimilarities(),
+                pairwise.getComputedSimilarities());
+
+        batch_similarity.batches = 0;
+        NNDescent<Integer> nndes = new NNDescent<Integer>();
+        nndes.setSimilarity(batch_similarity);
+        nndes.setMaxIterations(5);
+        Graph<Integer> nndes_graph = nndes.computeGraph(nodes);
+        assertTrue(batch_similarity.batches > 0);
+
+        // Like the pairwise local join, a node is never compared to itself
+        assertEquals(0, batch_similarity.self_pairs);
+
+        int correct = 0;
+        for (Node<Integer> node : nodes) {
+            correct += graph.get(node).countCommons(nndes_graph.get(node));
+        }
+        assertTrue(correct > 0.8 * 10 * nodes.size());
+    }
+
+    /**
+     * Search algorithms use the batch similarity.
+     */
+    public final void testSearch() throws Exception {
+        System.out.println("batch similarity in search");
+        ArrayList<Node<Integer>> nodes = nodes(1000);
+        CountingSimilarity batch_similarity = new CountingSimilarity();
+
+        Brute<Integer> brute = new Brute<Integer>();
+        brute.setSimilarity(batch_similarity);
+        Graph<Integer> graph = brute.computeGraph(nodes);
+
+        Integer query = nodes.get(0).value + 1;
+        batch_similarity.batches = 0;
+        NeighborList exact = graph.searchExhaustive(query, 10);
+        assertTrue(batch_similarity.batches > 0);
+        assertTrue(exact.containsNode(nodes.get(0)));
+
+        batch_similarity.batches = 0;
+        graph.fastSearch(query, 10);
+        assertTrue(batch_similarity.batches > 0);
+
+        // Every similarity computed in a batch is recorded in the result
+        // (only the starting node of each track is not)
+        graph.setSearchStrategy(
+                new GreedySearch<Integer>(2, Double.POSITIVE_INFINITY));
+        StatisticsContainer stats = new StatisticsContainer();
+        NeighborList all = graph.fastSearch(query, 300, 4, stats);
+        assertTrue(all.size() >= stats.getSearchSimilarities()
+                - stats.getSearchRestarts());
+    }
+}
@@ -23,10 +23,13 @@
  */
 package info.debatty.java.graphs.build;
 
+import info.debatty.java.graphs.CallbackInterface;
 import info.debatty.java.graphs.Graph;
 import info.debatty.java.graphs.Node;
 import info.debatty.java.graphs.SimilarityInterface;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -82,4 +85,82 @@ public class BruteTest extends TestCase {
         assertEquals(other_node.id, "10");
 
     }
+
+    public void testFilterSimilarity() {
+        System.out.println("filter similarity");
+
+        int count = 1000;
+        int k = 10;
+        Random rand = new Random();
+        ArrayList<Node<Integer>> nodes = new ArrayList<Node<Integer>>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(new Node<Integer>(
+                    String.valueOf(i), rand.nextInt(100 * count)));
+        }
+
+        SimilarityInterface<Integer> similarity =
+                new SimilarityInterface<Integer>() {
+
+            public double similarity(Integer value1, Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 - value2));
+            }
+        };
+
+        // Cheap (approximate) similarity
+        SimilarityInterface<Integer> filter =
+                new SimilarityInterface<Integer>() {
+
+            public double similarity(Integer value1, Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 / 100 - value2 / 100));
+            }
+        };
+
+        Brute<Integer> builder = new Brute<Integer>();
+        builder.setK(k);
+        builder.setSimilarity(similarity);
+        Graph<Integer> exact_graph = builder.computeGraph(nodes);
+        assertEquals(0, builder.getComputedFilterSimilarities());
+
+        builder.setFilterSimilarity(filter);
+        builder.setCandidatesMultiplier(3);
+        final int[] filter_callbacks = new int[1];
+        builder.setCallback(new CallbackInterface() {
+
+            public void call(final HashMap<String, Object> data) {
+                assertEquals("filter", data.get("phase"));
+                assertNull(data.get("computed_similarities"));
+                assertNotNull(data.get("computed_filter_similarities"));
+                filter_callbacks[0]++;
+            }
+        });
+        Graph<Integer> graph = builder.computeGraph(nodes);
+        assertEquals(k, graph.getK());
+        assertEquals(count * (count - 1) / 2,
+                builder.getComputedFilterSimilarities());
+        assertEquals(count * 3 * k, builder.getComputedSimilarities());
+        assertTrue(filter_callbacks[0] > 0);
+
+        // The filter pass does not modify the builder
+        assertEquals(k, builder.getK());
+        assertSame(similarity, builder.getSimilarity());
+        builder.setCallback(null);
+
+        NNDescent<Integer> nndes = new NNDescent<Integer>();
+        nndes.setK(k);
+        nndes.setSimilarity(similarity);
+        nndes.setFilterSimilarity(filter);
+        Graph<Integer> nndes_graph = nndes.computeGraph(nodes);
+        assertTrue(nndes.getComputedFilterSimilarities() > 0);
+
+        int correct = 0;
+        int nndes_correct = 0;
+        for (Node<Integer> node : nodes) {
+            assertEquals(k, graph.get(node).size());
+            correct += exact_graph.get(node).countCommons(graph.get(node));
+            nndes_correct += exact_graph.get(node).countCommons(
+                    nndes_graph.get(node));
+        }
+        assertTrue(correct > 0.95 * count * k);
+        assertTrue(nndes_correct > 0.8 * count * k);
+    }
 }
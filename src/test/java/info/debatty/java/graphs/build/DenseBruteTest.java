@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.similarity.DenseMetric;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class DenseBruteTest extends TestCase {
+
+    /**
+     * Same graph as Brute, for all metrics, with a number of vectors and
+     * blocks that are not multiples of the tile size.
+     */
+    public void testComputeGraph() {
+        System.out.println("DenseBrute");
+
+        int count = 1003;
+        int dim = 13;
+        int k = 10;
+
+        Random rand = new Random();
+        ArrayList<Node<float[]>> nodes = new ArrayList<Node<float[]>>(count);
+        for (int i = 0; i < count; i++) {
+            float[] value = new float[dim];
+            for (int d = 0; d < dim; d++) {
+                value[d] = (float) rand.nextGaussian();
+            }
+            nodes.add(new Node<float[]>(String.valueOf(i), value));
+        }
+
+        for (DenseMetric metric : DenseMetric.values()) {
+            DenseBrute dense_builder = new DenseBrute();
+            dense_builder.setK(k);
+            dense_builder.setSimilarity(metric);
+            dense_builder.setBlockSize(101);
+            Graph<float[]> dense_graph = dense_builder.computeGraph(nodes);
+            assertEquals(count * (count - 1) / 2,
+                    dense_builder.getComputedSimilarities());
+
+            Brute<float[]> builder = new Brute<float[]>();
+            builder.setK(k);
+            builder.setSimilarity(metric);
+            Graph<float[]> graph = builder.computeGraph(nodes);
+
+            int correct_edges = 0;
+            for (Node<float[]> node : nodes) {
+                correct_edges += graph.get(node).countCommonIds(
+                        dense_graph.get(node));
+                assertEquals(
+                        graph.get(node).peek().similarity,
+                        dense_graph.get(node).peek().similarity,
+                        1E-4);
+            }
+
+            // Similarities are computed with a different precision, hence
+            // near ties may be resolved differently
+            assertTrue(correct_edges >= 0.99 * count * k);
+        }
+    }
+
+    public void testSimilarity() {
+        try {
+            new DenseBrute().setSimilarity(null);
+            fail("DenseBrute requires a DenseMetric");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import info.debatty.java.graphs.similarity.CosineSimilarity;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class LSHGraphBuilderTest extends TestCase {
+
+    private static final int CLUSTERS = 100;
+    private static final int CLUSTER_SIZE = 20;
+    private static final int K = 10;
+
+    /**
+     * MinHash on sets of tokens.
+     */
+    public void testMinHash() {
+        System.out.println("LSH with MinHash");
+
+        Random rand = new Random();
+        ArrayList<Node<Set<Integer>>> nodes =
+                new ArrayList<Node<Set<Integer>>>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            ArrayList<Integer> base = new ArrayList<Integer>();
+            for (int i = 0; i < 50; i++) {
+                base.add(rand.nextInt(100000));
+            }
+
+            for (int i = 0; i < CLUSTER_SIZE; i++) {
+                ArrayList<Integer> tokens = new ArrayList<Integer>(base);
+                for (int j = 0; j < 5; j++) {
+                    tokens.set(rand.nextInt(tokens.size()),
+                            rand.nextInt(100000));
+                }
+                nodes.add(new Node<Set<Integer>>(
+                        String.valueOf(nodes.size()),
+                        new HashSet<Integer>(tokens)));
+            }
+        }
+
+        SimilarityInterface<Set<Integer>> jaccard =
+                new SimilarityInterface<Set<Integer>>() {
+
+            public double similarity(
+                    final Set<Integer> value1, final Set<Integer> value2) {
+                int intersection = 0;
+                for (Integer token : value1) {
+                    if (value2.contains(token)) {
+                        intersection++;
+                    }
+                }
+                return (double) intersection
+                        / (value1.size() + value2.size() - intersection);
+            }
+        };
+
+        LSHGraphBuilder<Set<Integer>> builder =
+                new LSHGraphBuilder<Set<Integer>>();
+        builder.setK(K);
+        builder.setSimilarity(jaccard);
+        builder.setSignatureFunction(new MinHash<Integer>(16));
+        check(nodes, builder);
+    }
+
+    /**
+     * SimHash (random hyperplanes) on vectors.
+     */
+    public void testSimHash() {
+        System.out.println("LSH with SimHash");
+
+        int dimension = 20;
+        Random rand = new Random();
+        ArrayList<Node<double[]>> nodes = new ArrayList<Node<double[]>>();
+        for (int c = 0; c < CLUSTERS; c++) {
+            double[] center = new double[dimension];
+            for (int d = 0; d < dimension; d++) {
+                center[d] = rand.nextGaussian();
+            }
+
+            for (int i = 0; i < CLUSTER_SIZE; i++) {
+                double[] value = new double[dimension];
+                for (int d = 0; d < dimension; d++) {
+                    value[d] = center[d] + 0.05 * rand.nextGaussian();
+                }
+                nodes.add(new Node<double[]>(
+                        String.valueOf(nodes.size()), value));
+            }
+        }
+
+        LSHGraphBuilder<double[]> builder = new LSHGraphBuilder<double[]>();
+        builder.setK(K);
+        builder.setSimilarity(new CosineSimilarity());
+        builder.setSignatureFunction(new SimHash(64, dimension));
+        check(nodes, builder);
+    }
+
+    private <T> void check(
+            final List<Node<T>> nodes, final LSHGraphBuilder<T> builder) {
+
+        Graph<T> graph = builder.computeGraph(nodes);
+
+        Brute<T> brute = new Brute<T>();
+        brute.setK(K);
+        brute.setSimilarity(builder.similarity);
+        Graph<T> exact_graph = brute.computeGraph(nodes);
+
+        int correct = 0;
+        for (Node<T> node : nodes) {
+            correct += exact_graph.get(node).countCommons(graph.get(node));
+        }
+        System.out.println("Correct edges: " + correct
+                + ", computed similarities: "
+                + builder.getComputedSimilarities());
+        assertTrue(correct > 0.9 * nodes.size() * K);
+        assertTrue(builder.getComputedSimilarities()
+                < brute.getComputedSimilarities() / 4);
+    }
+}
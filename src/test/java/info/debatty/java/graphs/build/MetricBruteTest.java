@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.MetricSimilarity;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.similarity.L2Similarity;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class MetricBruteTest extends TestCase {
+
+    public void testComputeGraph() {
+        System.out.println("MetricBrute");
+
+        int count = 3000;
+        int k = 10;
+
+        Random rand = new Random();
+        ArrayList<Node<double[]>> nodes = new ArrayList<Node<double[]>>(count);
+        for (int i = 0; i < count; i++) {
+            double[] value = new double[3];
+            for (int d = 0; d < value.length; d++) {
+                value[d] = rand.nextGaussian();
+            }
+            nodes.add(new Node<double[]>(String.valueOf(i), value));
+        }
+
+        MetricBrute<double[]> metric_builder = new MetricBrute<double[]>();
+        metric_builder.setK(k);
+        metric_builder.setSimilarity(new L2Similarity());
+        Graph<double[]> metric_graph = metric_builder.computeGraph(nodes);
+
+        Brute<double[]> builder = new Brute<double[]>();
+        builder.setK(k);
+        builder.setSimilarity(new L2Similarity());
+        Graph<double[]> graph = builder.computeGraph(nodes);
+
+        int correct_edges = 0;
+        for (Node<double[]> node : nodes) {
+            correct_edges += graph.get(node).countCommons(
+                    metric_graph.get(node));
+        }
+        assertEquals(count * k, correct_edges);
+
+        System.out.println("Computed similarities: "
+                + metric_builder.getComputedSimilarities());
+        assertTrue(metric_builder.getComputedSimilarities()
+                < builder.getComputedSimilarities() / 4);
+    }
+
+    /**
+     * Many equal distances, and less nodes than pivots.
+     */
+    public void testTies() {
+        System.out.println("MetricBrute ties");
+
+        MetricSimilarity<Integer> similarity =
+                new MetricSimilarity<Integer>() {
+
+            public double distance(final Integer value1, final Integer value2) {
+                return Math.abs(value1 - value2);
+            }
+
+            public double toSimilarity(final double distance) {
+                return 1.0 / (1.0 + distance);
+            }
+
+            public double similarity(
+                    final Integer value1, final Integer value2) {
+                return toSimilarity(distance(value1, value2));
+            }
+        };
+
+        Random rand = new Random();
+        for (int count : new int[] {5, 1000}) {
+            ArrayList<Node<Integer>> nodes =
+                    new ArrayList<Node<Integer>>(count);
+            for (int i = 0; i < count; i++) {
+                nodes.add(new Node<Integer>(
+                        String.valueOf(i), rand.nextInt(50)));
+            }
+
+            MetricBrute<Integer> metric_builder = new MetricBrute<Integer>();
+            metric_builder.setPivots(16);
+            metric_builder.setSimilarity(similarity);
+            Graph<Integer> metric_graph = metric_builder.computeGraph(nodes);
+
+            Brute<Integer> builder = new Brute<Integer>();
+            builder.setSimilarity(similarity);
+            Graph<Integer> graph = builder.computeGraph(nodes);
+
+            int correct_edges = 0;
+            for (Node<Integer> node : nodes) {
+                correct_edges += graph.get(node).countCommons(
+                        metric_graph.get(node));
+                assertEquals(graph.get(node).size(),
+                        metric_graph.get(node).size());
+            }
+            assertEquals(count * Math.min(10, count - 1), correct_edges);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.CallbackInterface;
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import info.debatty.java.stringsimilarity.JaroWinkler;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class NNCTPHTest extends TestCase {
+
+    private static final SimilarityInterface<String> SIMILARITY =
+            new SimilarityInterface<String>() {
+
+        public double similarity(String value1, String value2) {
+            JaroWinkler jw = new JaroWinkler();
+            return jw.similarity(value1, value2);
+        }
+    };
+
+    /**
+     * Partitions processed in parallel (in batches) must give the same
+     * result as partitions processed one at a time.
+     */
+    public void testParallelPartitions() {
+        System.out.println("parallel partitions");
+        List<Node<String>> nodes = GraphBuilder.readFile(
+                getClass().getClassLoader()
+                        .getResource("726-unique-spams").getFile());
+
+        NNCTPH sequential = new NNCTPH();
+        sequential.setK(10);
+        sequential.setNPartitions(20);
+        sequential.setSimilarity(SIMILARITY);
+        // All partitions are "large" => processed one at a time
+        sequential.setLargePartitionSize(0);
+        Graph<String> sequential_graph = sequential.computeGraph(nodes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NNCTPH parallel = new NNCTPH();
+        parallel.setK(10);
+        parallel.setNPartitions(20);
+        parallel.setSimilarity(SIMILARITY);
+        parallel.setBatchSize(50);
+        parallel.setExecutor(executor);
+        Graph<String> parallel_graph = parallel.computeGraph(nodes);
+        executor.shutdown();
+
+        assertEquals(nodes.size(), parallel_graph.size());
+        assertEquals(
+                sequential.getComputedSimilarities(),
+                parallel.getComputedSimilarities());
+
+        int commons = 0;
+        int edges = 0;
+        for (Node<String> node : nodes) {
+            commons += parallel_graph.get(node).countCommons(
+                    sequential_graph.get(node));
+            edges += sequential_graph.get(node).size();
+        }
+        // Neighbors with the same similarity may be merged in another order
+        assertTrue(commons >= 0.99 * edges);
+    }
+
+    /**
+     * Oversized buckets are split, and every node is still in a partition.
+     */
+    public void testMaxPartitionSize() {
+        System.out.println("max partition size");
+        List<Node<String>> nodes = GraphBuilder.readFile(
+                getClass().getClassLoader()
+                        .getResource("726-unique-spams").getFile());
+
+        final HashMap<String, Object> stats = new HashMap<String, Object>();
+        NNCTPH builder = new NNCTPH();
+        builder.setNPartitions(4);
+        builder.setSimilarity(SIMILARITY);
+        builder.setMaxPartitionSize(100);
+        builder.setCallback(new CallbackInterface() {
+
+            public void call(HashMap<String, Object> data) {
+                if ("Partitioning".equals(data.get("step"))) {
+                    stats.putAll(data);
+                }
+            }
+        });
+
+        List<Node<String>>[] partitioning =
+                builder.splitPartitions(builder._partition(nodes));
+        assertTrue(stats.containsKey("largest-partition"));
+
+        HashSet<Node<String>> partitioned = new HashSet<Node<String>>();
+        for (List<Node<String>> partition : partitioning) {
+            if (partition != null) {
+                assertTrue(partition.size() <= 100);
+                partitioned.addAll(partition);
+            }
+        }
+        assertEquals(nodes.size(), partitioned.size());
+    }
+}
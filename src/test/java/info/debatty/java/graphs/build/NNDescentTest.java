@@ -23,10 +23,12 @@
  */
 package info.debatty.java.graphs.build;
 
+import info.debatty.java.graphs.CallbackInterface;
 import info.debatty.java.graphs.Graph;
 import info.debatty.java.graphs.Node;
 import info.debatty.java.graphs.SimilarityInterface;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Random;
 import static junit.framework.Assert.assertEquals;
 import junit.framework.TestCase;
@@ -98,4 +100,120 @@ public class NNDescentTest extends TestCase {
 
     }
 
+    public void testRefineGraph() {
+        System.out.println("refineGraph");
+
+        int n = 2000;
+        int k = 10;
+
+        Random rand = new Random();
+        ArrayList<Node<Integer>> nodes = new ArrayList<Node<Integer>>(n);
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), rand.nextInt()));
+        }
+
+        SimilarityInterface<Integer> sim = new SimilarityInterface<Integer>() {
+
+            public double similarity(Integer value1, Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 - value2));
+            }
+        };
+
+        NNDescent<Integer> nndes = new NNDescent<Integer>();
+        nndes.setK(k);
+        nndes.setSimilarity(sim);
+        nndes.setDelta(0.1);
+        nndes.setMaxIterations(10);
+        nndes.setRho(0.6);
+        Graph<Integer> graph = nndes.computeGraph(nodes);
+        int full_similarities = nndes.getComputedSimilarities();
+
+        // Remove 5% of the nodes, and add 5% new nodes
+        ArrayList<Node<Integer>> removed = new ArrayList<Node<Integer>>();
+        ArrayList<Node<Integer>> added = new ArrayList<Node<Integer>>();
+        for (int i = 0; i < n / 20; i++) {
+            removed.add(nodes.remove(rand.nextInt(nodes.size())));
+        }
+        for (int i = 0; i < n / 20; i++) {
+            Node<Integer> node = new Node<Integer>(
+                    String.valueOf(n + i), rand.nextInt());
+            added.add(node);
+            nodes.add(node);
+        }
+
+        Graph<Integer> refined = nndes.refineGraph(graph, added, removed);
+        assertEquals(n, refined.size());
+        assertTrue(nndes.getComputedSimilarities() < full_similarities);
+
+        Brute brute = new Brute();
+        brute.setK(k);
+        brute.setSimilarity(sim);
+        Graph exact_graph = brute.computeGraph(nodes);
+
+        int correct = 0;
+        for (Node<Integer> node : nodes) {
+            for (Node<Integer> removed_node : removed) {
+                assertFalse(refined.get(node).containsNode(removed_node));
+            }
+            correct += refined.get(node).countCommons(exact_graph.get(node));
+        }
+        System.out.println("found " + correct + " correct edges");
+        System.out.println("" + 100.0 * correct / (n * k) + "%");
+        assertTrue((1.0 * correct / (n * k)) > 0.8);
+    }
+
+    public void testPairCache() {
+        System.out.println("pair cache");
+
+        int n = 2000;
+        int k = 10;
+
+        Random rand = new Random();
+        ArrayList<Node<Integer>> nodes = new ArrayList<Node<Integer>>(n);
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), rand.nextInt()));
+        }
+
+        SimilarityInterface<Integer> sim = new SimilarityInterface<Integer>() {
+
+            public double similarity(Integer value1, Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 - value2));
+            }
+        };
+
+        final HashMap<String, Object> last_data = new HashMap<String, Object>();
+        NNDescent<Integer> nndes = new ThreadedNNDescent<Integer>();
+        nndes.setK(k);
+        nndes.setSimilarity(sim);
+        nndes.setDelta(0.1);
+        nndes.setMaxIterations(10);
+        nndes.setRho(0.6);
+        nndes.setPairCacheSize(100000);
+        nndes.setCallback(new CallbackInterface() {
+
+            public void call(HashMap<String, Object> data) {
+                last_data.putAll(data);
+            }
+        });
+        Graph<Integer> graph = nndes.computeGraph(nodes);
+
+        long hits = (Long) last_data.get("cache_hits");
+        long misses = (Long) last_data.get("cache_misses");
+        assertTrue(hits > 0);
+        // Only misses are computed during the local joins (plus the k
+        // random neighbors of each node)
+        assertEquals(misses + n * k, nndes.getComputedSimilarities());
+
+        Brute brute = new Brute();
+        brute.setK(k);
+        brute.setSimilarity(sim);
+        Graph exact_graph = brute.computeGraph(nodes);
+
+        int correct = 0;
+        for (Node<Integer> node : nodes) {
+            correct += graph.get(node).countCommons(exact_graph.get(node));
+        }
+        System.out.println("cache hits: " + hits + ", misses: " + misses);
+        assertTrue((1.0 * correct / (n * k)) > 0.8);
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.IntNeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class RandomProjectionForestTest extends TestCase {
+
+    private static final SimilarityInterface<double[]> SIMILARITY =
+            new SimilarityInterface<double[]>() {
+
+        public double similarity(double[] value1, double[] value2) {
+            double sum = 0;
+            for (int i = 0; i < value1.length; i++) {
+                sum += (value1[i] - value2[i]) * (value1[i] - value2[i]);
+            }
+            return 1.0 / (1.0 + Math.sqrt(sum));
+        }
+    };
+
+    private ArrayList<Node<double[]>> nodes(int n) {
+        Random rand = new Random();
+        ArrayList<Node<double[]>> nodes = new ArrayList<Node<double[]>>(n);
+        for (int i = 0; i < n; i++) {
+            double[] value = new double[3];
+            for (int d = 0; d < value.length; d++) {
+                value[d] = rand.nextGaussian();
+            }
+            nodes.add(new Node<double[]>(String.valueOf(i), value));
+        }
+        return nodes;
+    }
+
+    /**
+     * Test of initialize method, of class RandomProjectionForest.
+     */
+    public void testInitialize() {
+        System.out.println("initialize");
+        int n = 2000;
+        int k = 10;
+        ArrayList<Node<double[]>> nodes = nodes(n);
+
+        IntNeighborList[] neighborlists = new IntNeighborList[n];
+        for (int i = 0; i < n; i++) {
+            neighborlists[i] = new IntNeighborList(k);
+        }
+
+        RandomProjectionForest forest = new RandomProjectionForest();
+        int computed = forest.initialize(nodes, SIMILARITY, neighborlists);
+        assertTrue(computed < n * (n - 1) / 20);
+
+        Brute<double[]> brute = new Brute<double[]>();
+        brute.setK(k);
+        brute.setSimilarity(SIMILARITY);
+        Graph<double[]> exact_graph = brute.computeGraph(nodes);
+
+        int correct = 0;
+        for (int i = 0; i < n; i++) {
+            assertFalse(neighborlists[i].contains(i));
+            correct += neighborlists[i].toNeighborList(nodes)
+                    .countCommons(exact_graph.get(nodes.get(i)));
+        }
+        System.out.println("" + 100.0 * correct / (n * k) + "%");
+        assertTrue((1.0 * correct / (n * k)) > 0.5);
+    }
+
+    /**
+     * Test of NNDescent, initialized with a RandomProjectionForest.
+     */
+    public void testNNDescent() {
+        System.out.println("NNDescent with random projection forest");
+        int n = 2000;
+        int k = 10;
+        ArrayList<Node<double[]>> nodes = nodes(n);
+
+        NNDescent<double[]> nndes = new NNDescent<double[]>();
+        nndes.setK(k);
+        nndes.setSimilarity(SIMILARITY);
+        nndes.setInitializer(new RandomProjectionForest());
+        Graph<double[]> graph = nndes.computeGraph(nodes);
+
+        Brute<double[]> brute = new Brute<double[]>();
+        brute.setK(k);
+        brute.setSimilarity(SIMILARITY);
+        Graph<double[]> exact_graph = brute.computeGraph(nodes);
+
+        int correct = 0;
+        for (Node<double[]> node : nodes) {
+            correct += graph.get(node).countCommons(exact_graph.get(node));
+        }
+        System.out.println("" + 100.0 * correct / (n * k) + "%");
+        assertTrue((1.0 * correct / (n * k)) > 0.9);
+    }
+}
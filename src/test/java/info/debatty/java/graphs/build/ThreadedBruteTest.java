@@ -100,4 +100,43 @@ public class ThreadedBruteTest extends TestCase {
         assertEquals(count * k, correct_edges);
     }
 
+    public void testBlockSize() {
+        System.out.println("block size");
+
+        int count = 500;
+        int k = 10;
+
+        Random r = new Random();
+        ArrayList<Node<Integer>> nodes = new ArrayList<Node<Integer>>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(new Node<Integer>(String.valueOf(i), r.nextInt(100 * count)));
+        }
+        SimilarityInterface<Integer> similarity =
+                new SimilarityInterface<Integer>() {
+
+            public double similarity(Integer value1, Integer value2) {
+                return 1.0 / (1.0 + Math.abs(value1 - value2));
+            }
+        };
+
+        // Blocks that do not divide the number of nodes
+        ThreadedBrute<Integer> threaded_builder = new ThreadedBrute<Integer>();
+        threaded_builder.setK(k);
+        threaded_builder.setSimilarity(similarity);
+        threaded_builder.setBlockSize(7);
+        Graph<Integer> threaded_graph = threaded_builder.computeGraph(nodes);
+        assertEquals(count * (count - 1) / 2,
+                threaded_builder.getComputedSimilarities());
+
+        Brute builder = new Brute<Integer>();
+        builder.setK(k);
+        builder.setSimilarity(similarity);
+        Graph<Integer> graph = builder.computeGraph(nodes);
+
+        int correct_edges = 0;
+        for (Node n : nodes) {
+            correct_edges += graph.get(n).countCommons(threaded_graph.get(n));
+        }
+        assertEquals(count * k, correct_edges);
+    }
 }
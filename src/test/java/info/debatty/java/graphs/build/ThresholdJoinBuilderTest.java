@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.build;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Neighbor;
+import info.debatty.java.graphs.NeighborList;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.similarity.JaccardSimilarity;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class ThresholdJoinBuilderTest extends TestCase {
+
+    private static final int SHINGLE = 3;
+
+    /**
+     * The join on shingles of the spams must return exactly the pairs
+     * whose Jaccard similarity is above the threshold.
+     */
+    public void testSpams() {
+        System.out.println("Threshold join on spams");
+        List<Node<String>> spams = GraphBuilder.readFile(
+                getClass().getClassLoader()
+                        .getResource("726-unique-spams").getFile());
+
+        ArrayList<Node<Set<String>>> nodes =
+                new ArrayList<Node<Set<String>>>();
+        for (Node<String> spam : spams) {
+            Set<String> shingles = new HashSet<String>();
+            for (int i = 0; i <= spam.value.length() - SHINGLE; i++) {
+                shingles.add(spam.value.substring(i, i + SHINGLE));
+            }
+            nodes.add(new Node<Set<String>>(spam.id, shingles));
+        }
+
+        for (double threshold : new double[]{0.3, 0.5, 0.8}) {
+            checkJoin(nodes, threshold);
+        }
+    }
+
+    /**
+     * Random sets with many near duplicates (and some empty sets).
+     */
+    public void testRandomSets() {
+        System.out.println("Threshold join on random sets");
+        ArrayList<Node<Set<Integer>>> nodes = randomSets(new Random(123));
+
+        for (double threshold : new double[]{0.2, 0.5, 0.7, 1.0}) {
+            checkJoin(nodes, threshold);
+        }
+    }
+
+    /**
+     * The join must use the executor of the builder (without shutting it
+     * down), and produce the same graph as with the default pool.
+     */
+    public void testExecutor() {
+        System.out.println("Threshold join with executor");
+        ArrayList<Node<Set<Integer>>> nodes = randomSets(new Random(123));
+
+        ThresholdJoinBuilder<Integer> builder =
+                new ThresholdJoinBuilder<Integer>();
+        Graph<Set<Integer>> expected = builder.computeGraph(nodes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        builder.setExecutor(executor);
+        Graph<Set<Integer>> graph = builder.computeGraph(nodes);
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+
+        for (Node<Set<Integer>> node : nodes) {
+            assertEquals(expected.get(node).size(), graph.get(node).size());
+            for (Neighbor neighbor : expected.get(node)) {
+                assertTrue(graph.get(node).contains(neighbor));
+            }
+        }
+    }
+
+    /**
+     * If a task of the join fails, computeGraph must fail instead of
+     * returning an incomplete graph.
+     */
+    public void testFailure() {
+        System.out.println("Threshold join with failing tasks");
+        ArrayList<Node<Set<Integer>>> nodes = randomSets(new Random(123));
+
+        ExecutorService executor = new ThreadPoolExecutor(
+                2, 2, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(
+                    final Callable<T> callable) {
+                return new FutureTask<T>(new Callable<T>() {
+
+                    public T call() {
+                        throw new IllegalStateException("failed task");
+                    }
+                });
+            }
+        };
+
+        ThresholdJoinBuilder<Integer> builder =
+                new ThresholdJoinBuilder<Integer>();
+        builder.setExecutor(executor);
+        try {
+            builder.computeGraph(nodes);
+            fail("computeGraph must fail if a task fails");
+        } catch (IllegalStateException ex) {
+            assertEquals("failed task", ex.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private ArrayList<Node<Set<Integer>>> randomSets(final Random rand) {
+        ArrayList<Node<Set<Integer>>> nodes =
+                new ArrayList<Node<Set<Integer>>>();
+        for (int c = 0; c < 50; c++) {
+            ArrayList<Integer> base = new ArrayList<Integer>();
+            int size = 1 + rand.nextInt(30);
+            for (int j = 0; j < size; j++) {
+                base.add(c * 10 + rand.nextInt(100));
+            }
+            for (int i = 0; i < 10; i++) {
+                // Copy of the base set, with a few modified elements
+                Set<Integer> set = new HashSet<Integer>();
+                for (Integer element : base) {
+                    if (rand.nextInt(5) == 0) {
+                        set.add(c * 10 + rand.nextInt(100));
+                    } else {
+                        set.add(element);
+                    }
+                }
+                nodes.add(new Node<Set<Integer>>(
+                        String.valueOf(nodes.size()), set));
+            }
+        }
+        nodes.add(new Node<Set<Integer>>("empty", new HashSet<Integer>()));
+        return nodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> void checkJoin(
+            final List<Node<Set<E>>> nodes, final double threshold) {
+
+        ThresholdJoinBuilder<E> builder = new ThresholdJoinBuilder<E>();
+        builder.setThreshold(threshold);
+        Graph<Set<E>> graph = builder.computeGraph(nodes);
+        assertEquals(nodes.size(), graph.size());
+
+        JaccardSimilarity<E> jaccard = new JaccardSimilarity<E>();
+        int expected_edges = 0;
+        for (Node<Set<E>> node : nodes) {
+            NeighborList nl = graph.get(node);
+            HashSet<String> found = new HashSet<String>();
+            for (Neighbor neighbor : nl) {
+                found.add(neighbor.node.id);
+                assertEquals(
+                        jaccard.similarity(node.value,
+                                (Set<E>) neighbor.node.value),
+                        neighbor.similarity, 1E-9);
+            }
+
+            for (Node<Set<E>> other : nodes) {
+                if (other == node) {
+                    continue;
+                }
+                if (jaccard.similarity(node.value, other.value)
+                        >= threshold - 1E-9) {
+                    expected_edges++;
+                    assertTrue(found.contains(other.id));
+                }
+            }
+            assertEquals(
+                    (int) count(nodes, node, jaccard, threshold), nl.size());
+        }
+
+        System.out.println(threshold + " : " + expected_edges / 2
+                + " pairs, " + builder.getComputedSimilarities()
+                + " verified");
+        assertTrue(builder.getComputedSimilarities()
+                < nodes.size() * (nodes.size() - 1) / 2);
+    }
+
+    private <E> int count(
+            final List<Node<Set<E>>> nodes,
+            final Node<Set<E>> node,
+            final JaccardSimilarity<E> jaccard,
+            final double threshold) {
+        int count = 0;
+        for (Node<Set<E>> other : nodes) {
+            if (other != node
+                    && jaccard.similarity(node.value, other.value)
+                    >= threshold - 1E-9) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
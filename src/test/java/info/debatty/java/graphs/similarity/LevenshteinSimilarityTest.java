@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Neighbor;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.SimilarityInterface;
+import info.debatty.java.graphs.build.Brute;
+import info.debatty.java.graphs.build.NNDescent;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class LevenshteinSimilarityTest extends TestCase {
+
+    private static String randomString(final Random rand, final int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + rand.nextInt(4)));
+        }
+        return builder.toString();
+    }
+
+    private static int fullDistance(final String s1, final String s2) {
+        int[][] d = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= s2.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost,
+                        Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[s1.length()][s2.length()];
+    }
+
+    /**
+     * The banded distance is exact when it is lower than or equal to the
+     * bound.
+     */
+    public final void testDistance() {
+        System.out.println("banded levenshtein");
+        Random rand = new Random(1234);
+        for (int round = 0; round < 2000; round++) {
+            String s1 = randomString(rand, rand.nextInt(20));
+            String s2 = randomString(rand, rand.nextInt(20));
+            int expected = fullDistance(s1, s2);
+            int max_distance = rand.nextInt(20);
+
+            int distance = LevenshteinSimilarity.distance(s1, s2, max_distance);
+            if (expected <= max_distance) {
+                assertEquals(expected, distance);
+            } else {
+                assertEquals(max_distance + 1, distance);
+            }
+        }
+    }
+
+    /**
+     * With a threshold, the result is exact if it is higher than the
+     * threshold, and lower than or equal to the threshold otherwise.
+     */
+    public final void testThreshold() {
+        System.out.println("levenshtein threshold");
+        LevenshteinSimilarity similarity = new LevenshteinSimilarity();
+        Random rand = new Random(1234);
+        for (int round = 0; round < 2000; round++) {
+            String s1 = randomString(rand, rand.nextInt(20));
+            String s2 = randomString(rand, rand.nextInt(20));
+            double expected = similarity.similarity(s1, s2);
+            double threshold = rand.nextDouble();
+
+            double bounded = similarity.similarity(s1, s2, threshold);
+            if (expected > threshold) {
+                assertEquals(expected, bounded);
+            } else {
+                assertTrue(bounded <= threshold);
+            }
+        }
+        assertEquals(0.25, similarity.similarity("abc", "def",
+                Double.NEGATIVE_INFINITY));
+    }
+
+    /**
+     * Builders using the bounded similarity produce the same graph.
+     */
+    public final void testBuilders() throws Exception {
+        System.out.println("bounded similarity in builders");
+        Random rand = new Random();
+        ArrayList<Node<String>> nodes = new ArrayList<Node<String>>();
+        for (int i = 0; i < 600; i++) {
+            nodes.add(new Node<String>(
+                    String.valueOf(i), randomString(rand, 30)));
+        }
+
+        final LevenshteinSimilarity levenshtein = new LevenshteinSimilarity();
+        SimilarityInterface<String> unbounded =
+                new SimilarityInterface<String>() {
+
+            public double similarity(
+                    final String value1, final String value2) {
+                return levenshtein.similarity(value1, value2);
+            }
+        };
+
+        Brute<String> brute = new Brute<String>();
+        brute.setSimilarity(unbounded);
+        Graph<String> exact_graph = brute.computeGraph(nodes);
+
+        Brute<String> bounded_brute = new Brute<String>();
+        bounded_brute.setSimilarity(levenshtein);
+        Graph<String> graph = bounded_brute.computeGraph(nodes);
+
+        NNDescent<String> nndes = new NNDescent<String>();
+        nndes.setSimilarity(levenshtein);
+        nndes.setMaxIterations(10);
+        Graph<String> approximate_graph = nndes.computeGraph(nodes);
+
+        int correct = 0;
+        for (Node<String> node : nodes) {
+            assertEquals(10, exact_graph.get(node).countCommons(
+                    graph.get(node)));
+            correct += exact_graph.get(node).countCommons(
+                    approximate_graph.get(node));
+
+            // Similarities in the graph are exact
+            for (Neighbor neighbor
+                    : approximate_graph.get(node)) {
+                assertEquals(
+                        levenshtein.similarity(
+                                node.value, (String) neighbor.node.value),
+                        neighbor.similarity);
+            }
+        }
+        assertTrue(correct > 0.8 * 10 * nodes.size());
+
+        // Search
+        String query = randomString(rand, 30);
+        assertEquals(10, exact_graph.searchExhaustive(query, 10).countCommons(
+                graph.searchExhaustive(query, 10)));
+        graph.fastSearch(query, 10);
+    }
+}
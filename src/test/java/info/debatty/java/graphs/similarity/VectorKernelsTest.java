@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.graphs.similarity;
+
+import info.debatty.java.graphs.Graph;
+import info.debatty.java.graphs.Node;
+import info.debatty.java.graphs.build.Brute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class VectorKernelsTest extends TestCase {
+
+    private static final double EPSILON = 1E-9;
+
+    private static double[] vector(final Random rand, final int dim) {
+        double[] vector = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            vector[i] = rand.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * Unrolled kernels give the same result as naive loops, for all
+     * remainders of the unrolling.
+     */
+    public final void testKernels() {
+        System.out.println("vector kernels");
+        Random rand = new Random(1234);
+        for (int dim = 0; dim < 11; dim++) {
+            double[] a = vector(rand, dim);
+            double[] b = vector(rand, dim);
+            float[] fa = new float[dim];
+            float[] fb = new float[dim];
+            long[] la = new long[dim];
+            long[] lb = new long[dim];
+            double dot = 0;
+            double squared = 0;
+            int hamming = 0;
+            for (int i = 0; i < dim; i++) {
+                fa[i] = (float) a[i];
+                fb[i] = (float) b[i];
+                la[i] = rand.nextLong();
+                lb[i] = rand.nextLong();
+                dot += a[i] * b[i];
+                squared += (a[i] - b[i]) * (a[i] - b[i]);
+                hamming += Long.bitCount(la[i] ^ lb[i]);
+            }
+
+            assertEquals(dot, VectorKernels.dot(a, b), EPSILON);
+            assertEquals(squared, VectorKernels.squaredDistance(a, b), EPSILON);
+            assertEquals(dot, VectorKernels.dot(fa, fb), 1E-4);
+            assertEquals(squared, VectorKernels.squaredDistance(fa, fb), 1E-4);
+            assertEquals(hamming, VectorKernels.hamming(la, lb));
+
+            // Partial sums stop above the bound
+            double bound = squared * rand.nextDouble() * 2;
+            double partial = VectorKernels.squaredDistance(a, b, bound);
+            if (squared <= bound) {
+                assertEquals(squared, partial, EPSILON);
+            } else {
+                assertTrue(partial > bound);
+            }
+        }
+    }
+
+    /**
+     * Batch and precomputed-norm variants agree with the pairwise
+     * similarities.
+     */
+    public final void testSimilarities() {
+        System.out.println("vector similarities");
+        Random rand = new Random(1234);
+        double[] query = vector(rand, 13);
+        List<double[]> values = new ArrayList<double[]>();
+        List<DenseVector> dense_values = new ArrayList<DenseVector>();
+        for (int i = 0; i < 20; i++) {
+            double[] value = vector(rand, 13);
+            values.add(value);
+            dense_values.add(new DenseVector(value));
+        }
+        values.add(query);
+        dense_values.add(new DenseVector(query));
+        DenseVector dense_query = new DenseVector(query);
+
+        CosineSimilarity cosine = new CosineSimilarity();
+        L2Similarity l2 = new L2Similarity();
+        DenseVectorCosine dense_cosine = new DenseVectorCosine();
+        DenseVectorL2 dense_l2 = new DenseVectorL2();
+
+        double[] cosines = new double[values.size()];
+        double[] distances = new double[values.size()];
+        double[] dense_cosines = new double[values.size()];
+        double[] dense_distances = new double[values.size()];
+        cosine.similarities(query, values, cosines);
+        l2.similarities(query, values, distances);
+        dense_cosine.similarities(dense_query, dense_values, dense_cosines);
+        dense_l2.similarities(dense_query, dense_values, dense_distances);
+
+        for (int i = 0; i < values.size(); i++) {
+            double c = cosine.similarity(query, values.get(i));
+            double d = l2.similarity(query, values.get(i));
+            assertEquals(c, cosines[i], EPSILON);
+            assertEquals(c, dense_cosines[i], EPSILON);
+            assertEquals(c, dense_cosine.similarity(
+                    dense_query, dense_values.get(i)), EPSILON);
+            assertEquals(d, distances[i], EPSILON);
+            assertEquals(d, dense_distances[i], 1E-6);
+        }
+        assertEquals(1.0, cosines[values.size() - 1], EPSILON);
+        assertEquals(1.0, dense_distances[values.size() - 1], EPSILON);
+
+        HammingSimilarity hamming = new HammingSimilarity();
+        long[] bits = new long[] {0xFFFFFFFFL, 0};
+        assertEquals(1.0, hamming.similarity(bits, bits), EPSILON);
+        assertEquals(0.75, hamming.similarity(bits, new long[2]), EPSILON);
+        double[] result = new double[1];
+        hamming.similarities(bits, Arrays.asList(new long[2]), result);
+        assertEquals(0.75, result[0], EPSILON);
+    }
+
+    /**
+     * Builders use the precomputed norms.
+     */
+    public final void testBuilder() {
+        System.out.println("dense vectors in builder");
+        Random rand = new Random();
+        ArrayList<Node<DenseVector>> nodes =
+                new ArrayList<Node<DenseVector>>();
+        ArrayList<Node<double[]>> raw_nodes = new ArrayList<Node<double[]>>();
+        for (int i = 0; i < 500; i++) {
+            double[] value = vector(rand, 16);
+            nodes.add(new Node<DenseVector>(
+                    String.valueOf(i), new DenseVector(value)));
+            raw_nodes.add(new Node<double[]>(String.valueOf(i), value));
+        }
+
+        Brute<DenseVector> brute = new Brute<DenseVector>();
+        brute.setSimilarity(new DenseVectorCosine());
+        Graph<DenseVector> graph = brute.computeGraph(nodes);
+
+        Brute<double[]> raw_brute = new Brute<double[]>();
+        raw_brute.setSimilarity(new CosineSimilarity());
+        Graph<double[]> raw_graph = raw_brute.computeGraph(raw_nodes);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(
+                    raw_graph.get(raw_nodes.get(i)).peek().similarity,
+                    graph.get(nodes.get(i)).peek().similarity,
+                    EPSILON);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class BoundedIntListsTest extends TestCase {
+
+    /**
+     * Test of add and addIfAbsent methods, of class BoundedIntLists.
+     */
+    public final void testAdd() {
+        System.out.println("add");
+        BoundedIntLists instance = new BoundedIntLists(3, 2);
+        assertTrue(instance.add(1, 5));
+        assertFalse(instance.addIfAbsent(1, 5));
+        assertTrue(instance.addIfAbsent(1, 6));
+        assertFalse(instance.add(1, 7));
+
+        assertEquals(0, instance.size(0));
+        assertEquals(2, instance.size(1));
+        assertEquals(6, instance.get(1, 1));
+        assertTrue(instance.contains(1, 5));
+        assertFalse(instance.contains(2, 5));
+
+        instance.clear(1);
+        assertEquals(0, instance.size(1));
+    }
+
+    /**
+     * Lists stored in several chunks must not overlap.
+     */
+    public final void testChunks() {
+        System.out.println("chunks");
+        // 3 lists per chunk, the last chunk holds a single list
+        BoundedIntLists instance = new BoundedIntLists(10, 4, 12);
+        for (int list = 0; list < 10; list++) {
+            for (int i = 0; i < 5; i++) {
+                instance.add(list, list * 100 + i);
+            }
+        }
+
+        for (int list = 0; list < 10; list++) {
+            assertEquals(4, instance.size(list));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(list * 100 + i, instance.get(list, i));
+            }
+            assertTrue(instance.contains(list, list * 100 + 3));
+            assertFalse(instance.contains(list, list * 100 + 4));
+        }
+    }
+
+    /**
+     * Test of offer method, of class BoundedIntLists.
+     */
+    public final void testOffer() {
+        System.out.println("offer");
+        BoundedIntLists instance = new BoundedIntLists(1, 10);
+        Random rand = new Random();
+        for (int i = 0; i < 1000; i++) {
+            instance.offer(0, i, rand);
+        }
+
+        assertEquals(10, instance.size(0));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(instance.get(0, i) < 1000);
+        }
+
+        // Values offered at the end of the stream also have a chance to be
+        // kept in the sample
+        int late = 0;
+        for (int round = 0; round < 100; round++) {
+            instance.clear(0);
+            for (int i = 0; i < 100; i++) {
+                instance.offer(0, i, rand);
+            }
+            for (int i = 0; i < 10; i++) {
+                if (instance.get(0, i) >= 50) {
+                    late++;
+                }
+            }
+        }
+        assertTrue(late > 0);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Thibault Debatty.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package info.debatty.java.util;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Thibault Debatty
+ */
+public class PairCacheTest extends TestCase {
+
+    /**
+     * Test of get and put methods, of class PairCache.
+     */
+    public final void testGetPut() {
+        System.out.println("get and put");
+        PairCache instance = new PairCache(100);
+        assertTrue(Double.isNaN(instance.get(3, 7)));
+        instance.put(3, 7, 0.5);
+        assertEquals(0.5, instance.get(3, 7));
+        assertEquals(0.5, instance.get(7, 3));
+        instance.put(7, 3, 0.25);
+        assertEquals(0.25, instance.get(3, 7));
+
+        assertEquals(3, instance.getHits());
+        assertEquals(1, instance.getMisses());
+        assertEquals(0, instance.getEvictions());
+    }
+
+    /**
+     * Test eviction, of class PairCache.
+     */
+    public final void testEviction() {
+        System.out.println("eviction");
+        PairCache instance = new PairCache(64);
+        int pairs = 10 * instance.capacity();
+        for (int i = 0; i < pairs; i++) {
+            instance.put(i, i + 1, i);
+        }
+        assertEquals(pairs - instance.capacity(), instance.getEvictions());
+
+        int cached = 0;
+        for (int i = 0; i < pairs; i++) {
+            double value = instance.get(i, i + 1);
+            if (!Double.isNaN(value)) {
+                assertEquals((double) i, value);
+                cached++;
+            }
+        }
+        assertTrue(cached <= instance.capacity());
+        assertEquals(cached, instance.getHits());
+    }
+}